@@ -1,4 +1,6 @@
 import core.Game;
+import core.Tournament;
+import core.TournamentResults;
 import players.*;
 import players.mcts.MCTSParams;
 import players.mcts.MCTSPlayer;
@@ -7,6 +9,7 @@ import players.rhea.utils.Constants;
 import players.rhea.utils.RHEAParams;
 import utils.*;
 
+import java.io.File;
 import java.util.*;
 
 import static utils.Types.VISUALS;
@@ -27,6 +30,9 @@ public class Run {
         System.out.println("\t\t 3 SimplePlayer");
         System.out.println("\t\t 4 RHEA 200 itereations, shift buffer, pop size 1, random init, length: 12");
         System.out.println("\t\t 5 MCTS 200 iterations, length: 12");
+        System.out.println("\t [arg index = 8] (Optional) Games played in parallel. \"1\" (default) to play them sequentially, \"0\" for one per processor.");
+        System.out.println("\t [arg index = 9] (Optional) Results journal file. Games already in it are not played again, so an interrupted run can be resumed. \"-\" for none.");
+        System.out.println("\t [arg index = 10] (Optional) Stop as soon as it's known if the agent in arg index 4 (player 0) is better or worse than the agent in arg index 5 (player 1): \"sprt\" (probability ratio test) or \"ci\" (confidence interval, 5% chance of a wrong decision).");
     }
 
     public static void main(String[] args) {
@@ -35,14 +41,25 @@ public class Run {
         if(args.length == 0)
             args = new String[]{"0", "1", "1", "-1", "2", "3", "4", "5"};
 
-        if(args.length != 8) {
+        if(args.length < 8 || args.length > 11) {
             printHelp();
             return;
         }
 
         try {
 
-            Random rnd = new Random();
+            // With a journal, the same seeds are drawn when the run is resumed
+            String journal = args.length >= 10 && !args[9].equals("-") ? args[9] : null;
+            SequentialTest stoppingRule = null;
+            if (args.length == 11) {
+                if (args[10].equals("sprt"))
+                    stoppingRule = SequentialTest.sprt(0, 1, 0.1, 0.05, 0.05);
+                else if (args[10].equals("ci"))
+                    stoppingRule = SequentialTest.confidenceInterval(0, 1, 0.05, 10);
+                else
+                    throw new IllegalArgumentException("Invalid stopping rule: " + args[10]);
+            }
+            Random rnd = journal != null ? new Random(String.join("-", Arrays.copyOf(args, 8)).hashCode()) : new Random();
 
             // Create players
             ArrayList<Player> players = new ArrayList<>();
@@ -57,23 +74,7 @@ public class Run {
             int N = Integer.parseInt(args[2]);
             Types.DEFAULT_VISION_RANGE = Integer.parseInt(args[3]);
 
-            long seeds[];
-
-            if (S == -1)
-            {
-                //Special case, these seeds are fixed for the experiments in the paper:
-                seeds = new long[] {93988, 19067, 64416, 83884, 55636, 27599, 44350, 87872, 40815,
-                        11772, 58367, 17546, 75375, 75772, 58237, 30464, 27180, 23643, 67054, 19508};
-            }else
-            {
-                if(S <= 0)
-                    S = 1;
-
-                //Otherwise, all seeds are random
-                seeds = new long[S];
-                for(int i = 0; i < S; i++)
-                    seeds[i] = rnd.nextInt(100000);
-            }
+            long seeds[] = createSeeds(S, rnd);
 
             long seed = 0;
 
@@ -81,50 +82,9 @@ public class Run {
 
             for(int i = 4; i <= 7; ++i) {
                 int agentType = Integer.parseInt(args[i]);
-                Player p = null;
-
-
-                switch(agentType) {
-                    case 0:
-                        p = new DoNothingPlayer(playerID++);
-                        playerStr[i-4] = "DoNothing";
-                        break;
-                    case 1:
-                        p = new RandomPlayer(seed, playerID++);
-                        playerStr[i-4] = "Random";
-                        break;
-                    case 2:
-                        p = new OSLAPlayer(seed, playerID++);
-                        playerStr[i-4] = "OSLA";
-                        break;
-                    case 3:
-                        p = new SimplePlayer(seed, playerID++);
-                        playerStr[i-4] = "RuleBased";
-                        break;
-                    case 4:
-                        RHEAParams rheaParams = new RHEAParams();
-                        rheaParams.budget_type = Constants.ITERATION_BUDGET;
-                        rheaParams.iteration_budget = 200;
-                        rheaParams.individual_length = 12;
-                        rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
-                        rheaParams.mutation_rate = 0.5;
-
-                        p = new RHEAPlayer(seed, playerID++, rheaParams);
-                        playerStr[i-4] = "RHEA";
-                        break;
-                    case 5:
-                        MCTSParams mctsParams = new MCTSParams();
-                        mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
-                        mctsParams.num_iterations = 200;
-                        mctsParams.rollout_depth = 12;
-
-                        mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
-                        p = new MCTSPlayer(seed, playerID++, mctsParams);
-                        playerStr[i-4] = "MCTS";
-                        break;
-                    default:
-                        System.out.println("WARNING: Invalid agent ID: " + agentType );
-                }
+                Player p = createPlayer(agentType, seed, playerID++);
+                if (p != null)
+                    playerStr[i-4] = AGENT_NAMES[agentType];
 
                 players.add(p);
             }
@@ -136,11 +96,8 @@ public class Run {
                     gameIdStr+="-";
             }
 
-            Game game = new Game(seeds[0], boardSize, gMode, gameIdStr);
-
             // Make sure we have exactly NUM_PLAYERS players
             assert players.size() == Types.NUM_PLAYERS;
-            game.setPlayers(players);
 
             System.out.print(gameIdStr + " [");
             for(int i = 0; i < playerStr.length; ++i) {
@@ -151,13 +108,96 @@ public class Run {
             }
             System.out.println("]");
 
-            runGames(game, seeds, N, false);
+            // Game k is played with player seed 'playerSeed + k', printed at the start of its line
+            int nWorkers = args.length >= 9 ? Integer.parseInt(args[8]) : 1;
+            Tournament tournament = new Tournament(players, gMode, boardSize, gameIdStr, nWorkers);
+            if (journal != null) {
+                File journalFile = new File(journal);
+                TournamentResults played = Tournament.readJournal(journalFile, gameIdStr, players.size());
+                if (played.getNumGames() > 0) {
+                    System.out.println("Resuming, results of the games already played:");
+                    played.print(System.out, players);
+                }
+                tournament.setJournal(journalFile);
+            }
+            tournament.setStoppingRule(stoppingRule);
+            tournament.run(seeds, N, System.currentTimeMillis());
         } catch(Exception e) {
             e.printStackTrace();
             printHelp();
         }
     }
 
+    // Names of the agent types, by the ID used in the arguments.
+    static final String[] AGENT_NAMES = {"DoNothing", "Random", "OSLA", "RuleBased", "RHEA", "MCTS"};
+
+    /**
+     * Creates the level generation seeds of a run.
+     * @param S - number of seeds, "-1" for the ones from the paper (20).
+     * @param rnd - random generator for the seeds.
+     * @return the seeds.
+     */
+    static long[] createSeeds(int S, Random rnd) {
+        long seeds[];
+
+        if (S == -1)
+        {
+            //Special case, these seeds are fixed for the experiments in the paper:
+            seeds = new long[] {93988, 19067, 64416, 83884, 55636, 27599, 44350, 87872, 40815,
+                    11772, 58367, 17546, 75375, 75772, 58237, 30464, 27180, 23643, 67054, 19508};
+        }else
+        {
+            if(S <= 0)
+                S = 1;
+
+            //Otherwise, all seeds are random
+            seeds = new long[S];
+            for(int i = 0; i < S; i++)
+                seeds[i] = rnd.nextInt(100000);
+        }
+        return seeds;
+    }
+
+    /**
+     * Creates a player of one of the agent types of the arguments (see printHelp()).
+     * @param agentType - ID of the agent type.
+     * @param seed - random seed for the player.
+     * @param playerID - ID of the player.
+     * @return the player, or null if the agent type is not valid.
+     */
+    static Player createPlayer(int agentType, long seed, int playerID) {
+        switch(agentType) {
+            case 0:
+                return new DoNothingPlayer(playerID);
+            case 1:
+                return new RandomPlayer(seed, playerID);
+            case 2:
+                return new OSLAPlayer(seed, playerID);
+            case 3:
+                return new SimplePlayer(seed, playerID);
+            case 4:
+                RHEAParams rheaParams = new RHEAParams();
+                rheaParams.budget_type = Constants.ITERATION_BUDGET;
+                rheaParams.iteration_budget = 200;
+                rheaParams.individual_length = 12;
+                rheaParams.heurisic_type = Constants.CUSTOM_HEURISTIC;
+                rheaParams.mutation_rate = 0.5;
+
+                return new RHEAPlayer(seed, playerID, rheaParams);
+            case 5:
+                MCTSParams mctsParams = new MCTSParams();
+                mctsParams.stop_type = mctsParams.STOP_ITERATIONS;
+                mctsParams.num_iterations = 200;
+                mctsParams.rollout_depth = 12;
+
+                mctsParams.heuristic_method = mctsParams.CUSTOM_HEURISTIC;
+                return new MCTSPlayer(seed, playerID, mctsParams);
+            default:
+                System.out.println("WARNING: Invalid agent ID: " + agentType );
+                return null;
+        }
+    }
+
     /**
      * Runs 1 game.
      * @param g - game to run
@@ -179,69 +219,4 @@ public class Run {
 
         g.run(frame, wi, separateThreads);
     }
-
-    public static void runGames(Game g, long seeds[], int repetitions, boolean useSeparateThreads){
-        int numPlayers = g.getPlayers().size();
-        int[] winCount = new int[numPlayers];
-        int[] tieCount = new int[numPlayers];
-        int[] lossCount = new int[numPlayers];
-
-        int[] overtimeCount = new int[numPlayers];
-
-        int numSeeds = seeds.length;
-        int totalNgames = numSeeds * repetitions;
-
-        for(int s = 0; s<numSeeds; s++) {
-            long seed = seeds[s];
-
-            for (int i = 0; i < repetitions; i++) {
-                long playerSeed = System.currentTimeMillis();
-
-                System.out.print( playerSeed + ", " + seed + ", " + (s*repetitions + i) + "/" + totalNgames + ", ");
-
-                g.reset(seed);
-                EventsStatistics.REP = i;
-                GameLog.REP = i;
-
-                // Set random seed for players and reset them
-                ArrayList<Player> players = g.getPlayers();
-                for (int p = 0; p < g.nPlayers(); p++) {
-                    players.get(p).reset(playerSeed, p + Types.TILETYPE.AGENT0.getKey());
-                }
-                Types.RESULT[] results = g.run(useSeparateThreads);
-
-                for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
-                    switch (results[pIdx]) {
-                        case WIN:
-                            winCount[pIdx]++;
-                            break;
-                        case TIE:
-                            tieCount[pIdx]++;
-                            break;
-                        case LOSS:
-                            lossCount[pIdx]++;
-                            break;
-                    }
-                }
-
-                int[] overtimes = g.getPlayerOvertimes();
-                for(int j = 0; j < overtimes.length; ++j)
-                    overtimeCount[j] += overtimes[j];
-
-            }
-        }
-
-        //Done, show stats
-        System.out.println("N \tWin \tTie \tLoss \tPlayer (overtime average)");
-        for (int pIdx = 0; pIdx < numPlayers; pIdx++) {
-            String player = g.getPlayers().get(pIdx).getClass().toString().replaceFirst("class ", "");
-
-            double winPerc = winCount[pIdx] * 100.0 / (double)totalNgames;
-            double tiePerc = tieCount[pIdx] * 100.0 / (double)totalNgames;
-            double lossPerc = lossCount[pIdx] * 100.0 / (double)totalNgames;
-            double overtimesAvg = overtimeCount[pIdx] / (double)totalNgames;
-
-            System.out.println(totalNgames + "\t" + winPerc + "%\t" + tiePerc + "%\t" + lossPerc + "%\t" + player + " (" + overtimesAvg + ")" );
-        }
-    }
 }
@@ -0,0 +1,346 @@
+import core.Game;
+import core.TournamentResults;
+import players.Player;
+import utils.Types;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the games of a Run configuration in several worker processes, which may be in other machines.
+ * The coordinator keeps the queue of games to play and hands them to the workers connected to it, one at a time per
+ * worker thread, over a socket. Games are described by their seed, repetition, player seed, game mode, vision range
+ * and agents (as in Run), so workers need no other configuration. If a worker disconnects (e.g. its process dies),
+ * doesn't send the result of a game within a time limit (e.g. it hangs, or the network is partitioned), or sends an
+ * invalid result, the worker is dropped and the game is queued again for another worker. Workers that fail to play a
+ * game (e.g. a player throws) report it and go on with the next one, and the game is queued again as well. Games that
+ * fail MAX_ATTEMPTS times are given up, so that a game that can't be played doesn't take down every worker in turn,
+ * and are left out of the table of results.
+ * When all games are played, the coordinator prints a line per game in game order and the table of results, as
+ * Run does. Game k is played with player seed 'playerSeed + k', as in core.Tournament.
+ *
+ * Messages are lines of text:
+ *   - Coordinator to worker: "GAME k seed repetition playerSeed gameMode visionRange boardSize gameIdStr a0 a1 a2 a3",
+ *     or "DONE" when there are no games left.
+ *   - Worker to coordinator: "RESULT k r0 r1 r2 r3 o0 o1 o2 o3", with the result and overtimes of each player, or
+ *     "ERROR k message" if the game couldn't be played.
+ */
+public class RunDistributed {
+
+    // Time between checks for new games (queued again after a worker disconnected) or the end of the run, in ms.
+    private static final int POLL_MS = 200;
+
+    // Time a worker has to send the result of a game before it's given to another worker, in ms.
+    private static final int GAME_TIMEOUT_MS = 10 * 60 * 1000;
+
+    // Times a game is handed to workers before it's given up, if it fails or is lost with its worker every time.
+    static final int MAX_ATTEMPTS = 3;
+
+    private static void printHelp()
+    {
+        System.out.println("Usage: java RunDistributed coordinator [port] [Run args]");
+        System.out.println("       java RunDistributed worker [host] [port] [threads]");
+        System.out.println("\t Run args: arguments 0 to 7 of Run (game mode, seeds, repetitions, vision range, agents).");
+        System.out.println("\t threads: games played at the same time by the worker, \"0\" for one per processor.");
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length == 10 && args[0].equals("coordinator")) {
+                String[] runArgs = new String[8];
+                System.arraycopy(args, 2, runArgs, 0, 8);
+                new Coordinator(runArgs).run(Integer.parseInt(args[1]));
+            } else if (args.length == 4 && args[0].equals("worker")) {
+                int nThreads = Integer.parseInt(args[3]);
+                work(args[1], Integer.parseInt(args[2]),
+                        nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors());
+            } else {
+                printHelp();
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+            printHelp();
+        }
+    }
+
+    /**
+     * Coordinator of a run: hands games to workers and collects their results.
+     */
+    static class Coordinator {
+
+        // Players of the run, only used to name them in the table of results.
+        private final ArrayList<Player> players = new ArrayList<>();
+
+        // Description of each game, as sent to the workers.
+        private final String[] games;
+
+        // Line printed for each game, by game, once it's played or given up. Null for games not finished yet.
+        private final String[] lines;
+        private int nextLine = 0;
+
+        // Results of each game, by game. Null for games not played yet, or given up.
+        private final Types.RESULT[][] results;
+        private final int[][] overtimes;
+
+        // Times each game failed or was lost with its worker.
+        private final int[] attempts;
+
+        // Games waiting for a worker, and games not played yet.
+        private final LinkedBlockingDeque<Integer> queue = new LinkedBlockingDeque<>();
+        private final CountDownLatch remaining;
+
+        /**
+         * Creates the games of a run.
+         * @param runArgs - arguments 0 to 7 of Run.
+         */
+        Coordinator(String[] runArgs) {
+            Types.GAME_MODE gMode = Integer.parseInt(runArgs[0]) == 1 ? Types.GAME_MODE.TEAM : Types.GAME_MODE.FFA;
+            long[] seeds = Run.createSeeds(Integer.parseInt(runArgs[1]), new Random());
+            int repetitions = Integer.parseInt(runArgs[2]);
+            int visionRange = Integer.parseInt(runArgs[3]);
+            String gameIdStr = String.join("-", runArgs);
+
+            String agents = "";
+            for (int i = 4; i <= 7; ++i) {
+                int agentType = Integer.parseInt(runArgs[i]);
+                Player p = Run.createPlayer(agentType, 0, Types.TILETYPE.AGENT0.getKey() + i - 4);
+                if (p == null)
+                    throw new IllegalArgumentException("Invalid agent ID: " + agentType);
+                players.add(p);
+                agents += " " + agentType;
+            }
+
+            int totalNgames = seeds.length * repetitions;
+            long playerSeed = System.currentTimeMillis();
+            games = new String[totalNgames];
+            lines = new String[totalNgames];
+            results = new Types.RESULT[totalNgames][];
+            overtimes = new int[totalNgames][];
+            attempts = new int[totalNgames];
+            for (int k = 0; k < totalNgames; k++) {
+                games[k] = "GAME " + k + " " + seeds[k / repetitions] + " " + (k % repetitions) + " " +
+                        (playerSeed + k) + " " + gMode + " " + visionRange + " " + Types.BOARD_SIZE + " " +
+                        gameIdStr + agents;
+                queue.add(k);
+            }
+            remaining = new CountDownLatch(totalNgames);
+        }
+
+        /**
+         * Accepts workers until all games are played, and prints the results.
+         * @param port - port to listen to.
+         */
+        void run(int port) throws IOException, InterruptedException {
+            try (ServerSocket server = new ServerSocket(port)) {
+                Thread acceptor = new Thread(() -> {
+                    try {
+                        while (true) {
+                            Socket socket = server.accept();
+                            Thread handler = new Thread(() -> serve(socket));
+                            handler.setDaemon(true);
+                            handler.start();
+                        }
+                    } catch (IOException e) {
+                        // Server closed, all games played
+                    }
+                });
+                acceptor.setDaemon(true);
+                acceptor.start();
+
+                remaining.await();
+            }
+
+            TournamentResults tournamentResults = new TournamentResults(players.size());
+            for (int k = 0; k < games.length; k++) {
+                if (results[k] != null)
+                    tournamentResults.add(results[k], overtimes[k]);
+            }
+            tournamentResults.print(System.out, players);
+        }
+
+        /**
+         * Hands games to a worker until there are no games left or the worker disconnects.
+         * @param socket - connection with the worker.
+         */
+        private void serve(Socket socket) {
+            Integer k = null;
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+                 PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream()), true)) {
+                s.setSoTimeout(GAME_TIMEOUT_MS);  // Reads of results time out, see GAME_TIMEOUT_MS
+                while (true) {
+                    k = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    if (k == null) {
+                        if (remaining.getCount() == 0) {
+                            out.println("DONE");
+                            return;
+                        }
+                        continue;
+                    }
+
+                    out.println(games[k]);
+                    String line = in.readLine();
+                    if (line == null)
+                        throw new EOFException("Worker disconnected");
+                    if (line.startsWith("ERROR " + k + " "))
+                        fail(k, line);
+                    else
+                        record(k, line);
+                    k = null;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Lost worker " + socket.getRemoteSocketAddress() + " (" + e + ").");
+                if (k != null)
+                    fail(k, e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Records the result of a game sent by a worker, and prints the lines of the games played so far in order.
+         * @param k - game handed to the worker.
+         * @param line - result message.
+         */
+        private synchronized void record(int k, String line) {
+            String[] fields = line.split(" ");
+            if (!fields[0].equals("RESULT") || fields.length != 2 + 2 * players.size() ||
+                    !fields[1].equals(Integer.toString(k)))
+                throw new IllegalArgumentException("Invalid result for game " + k + ": " + line);
+
+            if (lines[k] != null)
+                return;  // Already played or given up
+
+            int n = players.size();
+            Types.RESULT[] gameResults = new Types.RESULT[n];
+            int[] gameOvertimes = new int[n];
+            for (int i = 0; i < n; i++) {
+                gameResults[i] = Types.RESULT.valueOf(fields[2 + i]);
+                gameOvertimes[i] = Integer.parseInt(fields[2 + n + i]);
+            }
+            results[k] = gameResults;
+            overtimes[k] = gameOvertimes;
+
+            finish(k, TournamentResults.format(gameResults, gameOvertimes));
+        }
+
+        /**
+         * Queues a game that a worker failed to play again, or gives it up if it failed MAX_ATTEMPTS times.
+         * @param k - game handed to the worker.
+         * @param reason - error message of the worker, or why the worker was lost.
+         */
+        private synchronized void fail(int k, String reason) {
+            if (lines[k] != null)
+                return;  // Already played or given up
+
+            attempts[k]++;
+            if (attempts[k] < MAX_ATTEMPTS) {
+                System.err.println("Game " + k + " failed (" + reason + "), queued again.");
+                queue.add(k);
+            } else {
+                System.err.println("Game " + k + " failed " + attempts[k] + " times (" + reason + "), given up.");
+                finish(k, "FAILED");
+            }
+        }
+
+        /**
+         * Marks a game as finished, and prints the lines of the games finished so far in order.
+         * @param k - game finished.
+         * @param outcome - results of the game, as printed.
+         */
+        private void finish(int k, String outcome) {
+            String[] game = games[k].split(" ");
+            lines[k] = game[4] + ", " + game[2] + ", " + k + "/" + games.length + ", " + outcome;
+            while (nextLine < lines.length && lines[nextLine] != null) {
+                System.out.println(lines[nextLine++]);
+            }
+            remaining.countDown();
+        }
+
+        /**
+         * @return results of each game, by game. Null for games not played, or given up.
+         */
+        Types.RESULT[][] getResults() {
+            return results;
+        }
+    }
+
+    /**
+     * Connects worker threads to a coordinator, which play games until the coordinator has no games left.
+     * @param host - host of the coordinator.
+     * @param port - port of the coordinator.
+     * @param nThreads - number of threads, each one playing a game at a time.
+     */
+    static void work(String host, int port, int nThreads) throws InterruptedException {
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            threads[t] = new Thread(() -> {
+                try (Socket socket = new Socket(host, port);
+                     BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                     PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
+                    String line;
+                    while ((line = in.readLine()) != null && !line.equals("DONE")) {
+                        String[] game = line.split(" ");
+                        String result;
+                        try {
+                            result = play(game);
+                        } catch (RuntimeException e) {
+                            // Report it and go on with the next game, the coordinator decides whether to retry it
+                            e.printStackTrace();
+                            result = "ERROR " + game[1] + " " + e.toString().replace('\n', ' ');
+                        }
+                        out.println(result);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Plays a game sent by the coordinator.
+     * @param game - fields of the game message.
+     * @return the result message.
+     */
+    private static String play(String[] game) {
+        int k = Integer.parseInt(game[1]);
+        long seed = Long.parseLong(game[2]);
+        int rep = Integer.parseInt(game[3]);
+        long playerSeed = Long.parseLong(game[4]);
+        Types.GAME_MODE gMode = Types.GAME_MODE.valueOf(game[5]);
+        Types.DEFAULT_VISION_RANGE = Integer.parseInt(game[6]);  // Same for all games of a run
+        int boardSize = Integer.parseInt(game[7]);
+        String gameIdStr = game[8];
+
+        ArrayList<Player> players = new ArrayList<>();
+        for (int i = 9; i < game.length; i++) {
+            players.add(Run.createPlayer(Integer.parseInt(game[i]), playerSeed,
+                    Types.TILETYPE.AGENT0.getKey() + i - 9));
+        }
+
+        Game g = new Game(seed, boardSize, gMode, gameIdStr);
+        g.setRepetition(rep);
+        g.setPlayers(players);
+        Types.RESULT[] results = g.run(false);
+
+        StringBuilder sb = new StringBuilder("RESULT ").append(k);
+        for (Types.RESULT r : results) {
+            sb.append(" ").append(r);
+        }
+        for (int o : g.getPlayerOvertimes()) {
+            sb.append(" ").append(o);
+        }
+        return sb.toString();
+    }
+}
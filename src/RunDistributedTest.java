@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+import utils.Types;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunDistributedTest {
+
+    // Run args of the coordinator: FFA, 1 random seed, 3 repetitions, full observability, random players.
+    private static final String[] RUN_ARGS = {"0", "1", "3", "-1", "1", "1", "1", "1"};
+
+    @Test
+    void gamesOfDroppedWorkersArePlayedByOthers() throws Exception {
+        int visionRange = Types.DEFAULT_VISION_RANGE;
+        try {
+            int port = freePort();
+            RunDistributed.Coordinator coordinator = new RunDistributed.Coordinator(RUN_ARGS);
+            Thread coordinatorThread = startCoordinator(coordinator, port);
+
+            // A worker that takes a game and dies in the middle of it
+            try (Socket socket = connect(port);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                assertTrue(in.readLine().startsWith("GAME "));
+            }
+
+            RunDistributed.work("localhost", port, 2);
+            coordinatorThread.join(60000);
+            assertFalse(coordinatorThread.isAlive(), "Coordinator didn't finish");
+
+            Types.RESULT[][] results = coordinator.getResults();
+            for (int k = 0; k < results.length; k++) {
+                assertNotNull(results[k], "Game " + k + " wasn't played");
+            }
+        } finally {
+            Types.DEFAULT_VISION_RANGE = visionRange;
+        }
+    }
+
+    @Test
+    void gamesThatKeepFailingAreGivenUp() throws Exception {
+        int port = freePort();
+        RunDistributed.Coordinator coordinator = new RunDistributed.Coordinator(RUN_ARGS);
+        Thread coordinatorThread = startCoordinator(coordinator, port);
+
+        // A worker that fails to play game 0 every time, and plays the others
+        int failures = 0;
+        try (Socket socket = connect(port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("DONE")) {
+                String k = line.split(" ")[1];
+                if (k.equals("0")) {
+                    out.println("ERROR 0 java.lang.RuntimeException: player failed");
+                    failures++;
+                } else {
+                    out.println("RESULT " + k + " WIN LOSS LOSS LOSS 0 0 0 0");
+                }
+            }
+            assertEquals("DONE", line);
+        }
+        coordinatorThread.join(60000);
+        assertFalse(coordinatorThread.isAlive(), "Coordinator didn't finish");
+
+        assertEquals(RunDistributed.MAX_ATTEMPTS, failures);
+        Types.RESULT[][] results = coordinator.getResults();
+        assertNull(results[0]);
+        assertNotNull(results[1]);
+        assertNotNull(results[2]);
+    }
+
+    @Test
+    void workersReportFailedGamesAndGoOn() throws Exception {
+        int visionRange = Types.DEFAULT_VISION_RANGE;
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread worker = new Thread(() -> {
+                try {
+                    RunDistributed.work("localhost", server.getLocalPort(), 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            worker.start();
+
+            try (Socket socket = server.accept();
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                 PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
+                // Invalid vision range, so the game throws while being set up
+                out.println("GAME 0 1 0 1 FFA x " + Types.BOARD_SIZE + " test 1 1 1 1");
+                assertTrue(in.readLine().startsWith("ERROR 0 java.lang.NumberFormatException"));
+
+                out.println("GAME 1 1 0 1 FFA -1 " + Types.BOARD_SIZE + " test 1 1 1 1");
+                assertTrue(in.readLine().startsWith("RESULT 1 "));
+                out.println("DONE");
+            }
+            worker.join(60000);
+            assertFalse(worker.isAlive(), "Worker didn't finish");
+        } finally {
+            Types.DEFAULT_VISION_RANGE = visionRange;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Thread startCoordinator(RunDistributed.Coordinator coordinator, int port) {
+        Thread thread = new Thread(() -> {
+            try {
+                coordinator.run(port);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Connects to the coordinator, waiting for it to listen.
+     */
+    private static Socket connect(int port) throws IOException, InterruptedException {
+        for (int i = 0; ; i++) {
+            try {
+                return new Socket("localhost", port);
+            } catch (IOException e) {
+                if (i == 50)
+                    throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+}
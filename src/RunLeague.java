@@ -0,0 +1,50 @@
+import core.League;
+import players.Player;
+import utils.Types;
+
+import java.io.File;
+
+/**
+ * Runs a league between agents of the types of Run, and prints the leaderboard (see core.League).
+ */
+public class RunLeague {
+
+    private static void printHelp()
+    {
+        System.out.println("Usage: java RunLeague [args]");
+        System.out.println("\t [arg index = 0] Ratings store file, kept between runs. \"-\" for none.");
+        System.out.println("\t [arg index = 1] Number of games to play.");
+        System.out.println("\t [arg index = 2] Games played in parallel. \"0\" for one per processor.");
+        System.out.println("\t [arg index = 3...] Agents (at least 4, all different), as in Run:");
+        for (int i = 0; i < Run.AGENT_NAMES.length; i++) {
+            System.out.println("\t\t " + i + " " + Run.AGENT_NAMES[i]);
+        }
+    }
+
+    public static void main(String[] args) {
+        if(args.length < 3 + Types.NUM_PLAYERS) {
+            printHelp();
+            return;
+        }
+
+        try {
+            League league = new League(Types.BOARD_SIZE, Integer.parseInt(args[2]), System.currentTimeMillis());
+            if (!args[0].equals("-"))
+                league.setStore(new File(args[0]));
+
+            for (int i = 3; i < args.length; i++) {
+                int agentType = Integer.parseInt(args[i]);
+                Player p = Run.createPlayer(agentType, 0, Types.TILETYPE.AGENT0.getKey());
+                if (p == null)
+                    throw new IllegalArgumentException("Invalid agent ID: " + agentType);
+                league.add(Run.AGENT_NAMES[agentType], p);
+            }
+
+            league.run(Integer.parseInt(args[1]));
+            league.printLeaderboard();
+        } catch(Exception e) {
+            e.printStackTrace();
+            printHelp();
+        }
+    }
+}
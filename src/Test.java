@@ -69,7 +69,9 @@ public class Test {
 
         /* Run with no visuals, N Times: */
 //        int N = 20;
-//        Run.runGames(game, new long[]{seed}, N, useSeparateThreads);
+//        Tournament tournament = new Tournament(players, gameMode, boardSize, "", 1);
+//        tournament.setSeparateThreads(useSeparateThreads);
+//        tournament.run(new long[]{seed}, N, seed);
 
     }
 
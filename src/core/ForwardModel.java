@@ -4,11 +4,15 @@ import objects.Avatar;
 import objects.Bomb;
 import objects.Flame;
 import objects.GameObject;
+import utils.Cell;
 import utils.EventsStatistics;
+import utils.GridIndex;
 import utils.LevelGenerator;
 import utils.Types;
 import utils.Vector2d;
+import utils.VisionMask;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import static utils.Types.*;
@@ -16,6 +20,28 @@ import static utils.Utils.*;
 
 public class ForwardModel {
 
+    // Types a kicked bomb can't move into on the tick it was kicked
+    private static final ArrayList<Types.TILETYPE> KICK_COLLISIONS = new ArrayList<>();
+    static {
+        KICK_COLLISIONS.add(Types.TILETYPE.RIGID);
+        KICK_COLLISIONS.add(Types.TILETYPE.WOOD);
+        KICK_COLLISIONS.addAll(Types.TILETYPE.getAgentTypes());
+    }
+
+    // Code used for null coordinates in snapshots, and cached values of the results.
+    private static final short SNAPSHOT_NULL_COORD = Short.MIN_VALUE;
+    private static final Types.RESULT[] RESULTS = Types.RESULT.values();
+
+    // Bytes taken in a snapshot by each agent, bomb and flame (see writeSnapshot()).
+    private static final int SNAPSHOT_OBJECT_BYTES = 12;
+    private static final int SNAPSHOT_AGENT_BYTES = SNAPSHOT_OBJECT_BYTES + 14;
+    private static final int SNAPSHOT_BOMB_BYTES = SNAPSHOT_OBJECT_BYTES + 12;
+    private static final int SNAPSHOT_FLAME_BYTES = SNAPSHOT_OBJECT_BYTES + 4;
+
+    // Directions in which blasts expand.
+    private static final Types.DIRECTIONS[] BLAST_DIRECTIONS = {Types.DIRECTIONS.RIGHT, Types.DIRECTIONS.LEFT,
+            Types.DIRECTIONS.DOWN, Types.DIRECTIONS.UP};
+
     // Board of the game, with all objects distributed in a 2D array of size 'this.size x this.size'
     private Types.TILETYPE[][] board;
 
@@ -54,6 +80,61 @@ public class ForwardModel {
     private EventsStatistics es;
     private boolean[] isAgentStuck;
 
+    // Copy-on-write: if true, the grids and the bomb and flame lists (and the objects in them) may be referenced by
+    // other models, so they must be copied before this model writes to them (see ensureOwnState()).
+    private boolean sharedState = false;
+
+    // If true, the shared bomb and flame objects hold the values of the model this one was copied from, which still
+    // need to be reset as done when reducing a model (see Utils._reduceHiddenList()) before they can be read.
+    private boolean resetSharedObjects = false;
+
+    // True if the bomb blast strength and life grids match the bombs list, so they can be shared with copies.
+    private boolean bombGridsSynced = false;
+
+    // Zobrist hash of the grids, updated on every write to them once it has been computed (see hash()).
+    // The packed contents of every cell as last hashed are kept, to take them out of the hash when the cell changes.
+    // Null if the hash of the grids has not been computed yet, or the grids were handed out (see handOutGrids()).
+    private long gridHash;
+    private PackedBoard hashedCells;
+
+    // Scratch buffers reused across calls to next(), so that ticking the model doesn't generate garbage.
+    // They hold no state between ticks and are never copied.
+    private final ArrayList<GameObject> deadFlames = new ArrayList<>();
+    private final BitSet deadFlameIndices = new BitSet();  // Indices of the dead flames in the flame list
+    private final ArrayList<GameObject> newFlames = new ArrayList<>();
+    private final ArrayList<GameObject> deadAgentsThisTick = new ArrayList<>();
+    private int[] occupancy;        // Objects per cell, indexed by 'y * size + x'
+    private GridIndex agentPositions, bombPositions, agentTargets;  // Agents and bombs by cell, for collisions
+    private int[] flameOccupancy;   // Flames per cell, indexed by 'y * size + x'
+    private int[] flameOwners;      // Owners of the flames per cell as bit masks of player indices, for logging
+    private int[] bombAtCell;       // Index of the first bomb per cell, indexed by 'y * size + x', -1 if none
+    private int[] nextBombAtCell = new int[16];  // Index of the next bomb on the same cell, by bomb index
+    private final BitSet pendingBombs = new BitSet();      // Bombs to explode in the current pass over the list
+    private final BitSet nextPassBombs = new BitSet();     // Bombs to explode in the next pass over the list
+    private final BitSet explodedBombs = new BitSet();
+    private PackedBoard snapshotCells;  // Grids packed for snapshots
+
+    // Dead bombs and flames, reused for new ones instead of allocating them. Objects are only recycled if
+    // recycleObjects is true: undo journals keep references to the objects of the model (see setRecycleObjects()).
+    // Never copied.
+    private final ArrayList<GameObject> bombPool = new ArrayList<>();
+    private final ArrayList<GameObject> flamePool = new ArrayList<>();
+    private boolean recycleObjects = true;
+
+    // Time to detonation per cell (see getTimeToDetonation()) as it was 'dangerAge' ticks ago, indexed by
+    // 'y * size + x'. Bombs only age between ticks, so the map is only recomputed after bombs are added, removed or
+    // moved, walls change or the grids are handed out (see handOutGrids()), which clear dangerValid. Never copied.
+    private int[] dangerTicks;
+    private int dangerAge;
+    private boolean dangerValid = false;
+    private int[] bombDetonation = new int[16];  // Time to detonation by bomb index, while computing the map
+    private final BitSet detonatedBombs = new BitSet();
+    private GridIndex dangerBombs;
+
+    // Cells in range of a bomb ignoring walls (see isInRangeOfBomb()), indexed by 'y * size + x'. Valid and never
+    // copied as the time to detonation map.
+    private BitSet bombRange;
+
     /**
      * Creates a forward model object.
      * @param size Size of the board.
@@ -116,6 +197,7 @@ public class ForwardModel {
         }
 
         if (range != -1) {
+            VisionMask vision = VisionMask.get(avatarPosition, range, size);
             for (int i = 0; i < this.agents.length; i++) {
                 GameObject a = this.agents[i];
 
@@ -123,7 +205,7 @@ public class ForwardModel {
                     a.setPositionNull();
                     a.setDesiredCoordinateNull();
                 }
-                else if (a.getPosition().custom_dist(avatarPosition) > range) {
+                else if (!vision.isVisible(a.getPosition())) {
                     // This agent's position is not observed
                     a.setPositionNull();
                     a.setDesiredCoordinateNull();
@@ -167,9 +249,9 @@ public class ForwardModel {
     /**
      * Executes "saveToTextFile" method of EventsStatistics class, only works for the true model.
      */
-    void saveEventsStatistics(String gameIdStr, long seed) {
+    void saveEventsStatistics(String gameIdStr, long seed, int rep) {
         if (trueModel && LOGGING_STATISTICS && es != null)
-            es.saveToTextFile(gameIdStr, seed);
+            es.saveToTextFile(gameIdStr, seed, rep);
     }
 
     /**
@@ -178,6 +260,10 @@ public class ForwardModel {
      * Generates the initial board of the game.
      */
     void init(long seed, int size, Types.GAME_MODE gameMode, int[][] intBoard, int[] alive) {
+        ensureOwnState();
+        bombGridsSynced = false;
+        hashedCells = null;
+        dangerValid = false;
         flames = new ArrayList<>();
         bombs = new ArrayList<>();
 
@@ -226,6 +312,14 @@ public class ForwardModel {
         }
     }
 
+    /**
+     * @return the events of the game recorded so far, null if this is not the true model or statistics are not
+     * logged.
+     */
+    EventsStatistics getEventsStatistics() {
+        return es;
+    }
+
     /**
      * Observation getters, package-level access only.
      */
@@ -245,6 +339,492 @@ public class ForwardModel {
         return aliveAgents;
     }
 
+    /**
+     * Packs the board, power-ups and bomb grids of this model into a compact flat representation.
+     * @param packed packed board to write into. If null or of a different size, a new one is created.
+     * @return the packed board with the grids of this model.
+     */
+    PackedBoard pack(PackedBoard packed) {
+        if (packed == null || packed.getSize() != size) {
+            packed = new PackedBoard(size);
+        }
+        packed.pack(board, powerups, bombBlastStrength, bombLife);
+        return packed;
+    }
+
+    /**
+     * Restores the board, power-ups and bomb grids of this model from a packed board of the same size.
+     * Bombs, flames and agents objects are not modified.
+     * @param packed packed board to read from.
+     */
+    void unpack(PackedBoard packed) {
+        ensureOwnState();
+        bombGridsSynced = false;
+        hashedCells = null;
+        dangerValid = false;
+        packed.unpack(board, powerups, bombBlastStrength, bombLife);
+    }
+
+    /**
+     * Enables or disables recycling dead bombs and flames for new ones. Must be disabled while undo journals record
+     * this model, as they keep references to the objects it removes.
+     * @param recycle true to recycle objects, false otherwise.
+     */
+    void setRecycleObjects(boolean recycle) {
+        recycleObjects = recycle;
+        if (!recycle) {
+            bombPool.clear();
+            flamePool.clear();
+        }
+    }
+
+    /**
+     * Records in a journal entry everything that a call to next() may modify in this model.
+     * @param entry entry to record into.
+     */
+    void saveUndo(UndoJournal.Entry entry) {
+        ensureOwnState();  // Objects are recorded by reference, they must not be shared
+        entry.modelTick = tick;
+        entry.grids = pack(entry.grids);
+        entry.gridHash = gridHash;
+        entry.gridHashed = hashedCells != null;
+
+        entry.bombs = UndoJournal.Entry.saveList(bombs, entry.bombs);
+        entry.flames = UndoJournal.Entry.saveList(flames, entry.flames);
+        entry.aliveAgents = UndoJournal.Entry.saveList(aliveAgents, entry.aliveAgents);
+        entry.nBombs = bombs.size();
+        entry.nFlames = flames.size();
+        entry.nAlive = aliveAgents.size();
+
+        entry.ensureObjectCapacity(agents.length + bombs.size() + flames.size());
+        int slot = 0;
+        for (GameObject agent : agents) {
+            entry.saveObject(slot++, agent);
+        }
+        for (int i = 0; i < bombs.size(); i++) {
+            entry.saveObject(slot++, bombs.get(i));
+        }
+        for (int i = 0; i < flames.size(); i++) {
+            entry.saveObject(slot++, flames.get(i));
+        }
+    }
+
+    /**
+     * Restores this model to the state recorded in a journal entry with saveUndo().
+     * Event statistics of the true model are not reverted.
+     * @param entry entry to restore from.
+     */
+    void restoreUndo(UndoJournal.Entry entry) {
+        tick = entry.modelTick;
+        dangerValid = false;
+        unpack(entry.grids);
+        if (entry.gridHashed) {
+            // The recorded grids are the packed cells that were hashed
+            hashedCells = entry.grids.copy();
+            gridHash = entry.gridHash;
+        }
+
+        UndoJournal.Entry.restoreList(bombs, entry.bombs, entry.nBombs);
+        UndoJournal.Entry.restoreList(flames, entry.flames, entry.nFlames);
+        UndoJournal.Entry.restoreList(aliveAgents, entry.aliveAgents, entry.nAlive);
+
+        int slot = 0;
+        for (GameObject agent : agents) {
+            entry.restoreObject(slot++, agent);
+        }
+        for (int i = 0; i < bombs.size(); i++) {
+            entry.restoreObject(slot++, bombs.get(i));
+        }
+        for (int i = 0; i < flames.size(); i++) {
+            entry.restoreObject(slot++, flames.get(i));
+        }
+    }
+
+    /**
+     * @return the number of bytes that writeSnapshot() takes to write this model.
+     */
+    int getSnapshotSize() {
+        return 16 + size * size * 4 + 1 + agents.length * SNAPSHOT_AGENT_BYTES + 1 + aliveAgents.size()
+                + bombs.size() * SNAPSHOT_BOMB_BYTES + flames.size() * SNAPSHOT_FLAME_BYTES;
+    }
+
+    /**
+     * Writes the full state of this model into a buffer, in a compact binary format: the packed grids (see
+     * PackedBoard) followed by the fields of the agents, bombs and flames, and the list of alive agents.
+     * Event statistics of the true model are not included.
+     * @param buffer buffer to write into, from its current position. Must have getSnapshotSize() bytes remaining.
+     */
+    void writeSnapshot(ByteBuffer buffer) {
+        if (resetSharedObjects) ensureOwnState();  // Shared objects may not be reset yet
+
+        buffer.putInt(size);
+        buffer.putInt(tick);
+        snapshotCells = pack(snapshotCells);
+        for (int cell : snapshotCells.getCells()) {
+            buffer.putInt(cell);
+        }
+
+        buffer.put((byte) agents.length);
+        for (GameObject agent : agents) {
+            Avatar a = (Avatar) agent;
+            writeObject(buffer, a);
+            buffer.putInt(a.getAmmo());
+            buffer.putInt(a.getBlastStrength());
+            buffer.putInt(a.getVisionRange());
+            buffer.put((byte) (a.canKick() ? 1 : 0));
+            buffer.put((byte) a.getWinner().ordinal());
+        }
+        buffer.put((byte) aliveAgents.size());
+        for (GameObject agent : aliveAgents) {
+            buffer.put((byte) (agent.getType().getKey() - Types.TILETYPE.AGENT0.getKey()));
+        }
+
+        buffer.putInt(bombs.size());
+        for (GameObject b : bombs) {
+            Bomb bomb = (Bomb) b;
+            writeObject(buffer, bomb);
+            buffer.putInt(bomb.getBlastStrength());
+            buffer.putInt(bomb.getPlayerIdx());
+            buffer.putShort((short) bomb.getVelocity().x);
+            buffer.putShort((short) bomb.getVelocity().y);
+        }
+
+        buffer.putInt(flames.size());
+        for (GameObject f : flames) {
+            writeObject(buffer, f);
+            buffer.putInt(((Flame) f).playerIdx);
+        }
+    }
+
+    /**
+     * Restores the state of this model from a snapshot written by writeSnapshot(), in place: grids, agents, bombs
+     * and flames of this model are reused when possible, so restoring a snapshot into a model of the same size
+     * doesn't allocate once bombs and flames have been recycled. Grids and objects shared with other models are
+     * never written to, new ones are created instead. Position vectors are replaced, not modified, when they change.
+     * @param buffer buffer to read from, from its current position.
+     * @param gameMode game mode of the snapshot.
+     */
+    void readSnapshot(ByteBuffer buffer, Types.GAME_MODE gameMode) {
+        int snapshotSize = buffer.getInt();
+        if (snapshotSize != size) {
+            size = snapshotSize;
+            board = null;
+            occupancy = null;  // Scratch buffers are created again for the new size
+            dangerTicks = null;
+        }
+        if (sharedState || board == null) {
+            board = new Types.TILETYPE[size][size];
+            powerups = new Types.TILETYPE[size][size];
+            bombBlastStrength = new int[size][size];
+            bombLife = new int[size][size];
+            bombs = new ArrayList<>();
+            flames = new ArrayList<>();
+            sharedState = false;
+            resetSharedObjects = false;
+        }
+
+        tick = buffer.getInt();
+        if (snapshotCells == null || snapshotCells.getSize() != size) {
+            snapshotCells = new PackedBoard(size);
+        }
+        int[] cells = snapshotCells.getCells();
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = buffer.getInt();
+        }
+        unpack(snapshotCells);
+        bombGridsSynced = false;
+
+        int nAgents = buffer.get();
+        if (agents == null || agents.length != nAgents || gameMode != game_mode) {
+            agents = new GameObject[nAgents];
+            for (int i = 0; i < nAgents; i++) {
+                agents[i] = new Avatar(Types.TILETYPE.AGENT0.getKey() + i, gameMode);
+            }
+        }
+        game_mode = gameMode;
+        for (GameObject agent : agents) {
+            Avatar a = (Avatar) agent;
+            readObject(buffer, a);
+            a.setAmmo(buffer.getInt());
+            a.setBlastStrength(buffer.getInt());
+            a.setVisionRange(buffer.getInt());
+            a.setCanKick(buffer.get() == 1);
+            a.setWinner(RESULTS[buffer.get()]);
+        }
+        if (aliveAgents == null) {
+            aliveAgents = new ArrayList<>();
+        }
+        aliveAgents.clear();
+        int nAlive = buffer.get();
+        for (int i = 0; i < nAlive; i++) {
+            aliveAgents.add(agents[buffer.get()]);
+        }
+
+        int nBombs = buffer.getInt();
+        while (bombs.size() > nBombs) {
+            GameObject bomb = bombs.remove(bombs.size() - 1);
+            if (recycleObjects) bombPool.add(bomb);
+        }
+        for (int i = 0; i < nBombs; i++) {
+            Bomb bomb;
+            if (i < bombs.size()) {
+                bomb = (Bomb) bombs.get(i);
+            } else {
+                bomb = bombPool.isEmpty() ? new Bomb() : (Bomb) bombPool.remove(bombPool.size() - 1);
+                bombs.add(bomb);
+            }
+            readObject(buffer, bomb);
+            bomb.setBlastStrength(buffer.getInt());
+            bomb.setPlayerIdx(buffer.getInt());
+            bomb.setVelocity(buffer.getShort(), buffer.getShort());
+        }
+
+        int nFlames = buffer.getInt();
+        while (flames.size() > nFlames) {
+            GameObject flame = flames.remove(flames.size() - 1);
+            if (recycleObjects) flamePool.add(flame);
+        }
+        for (int i = 0; i < nFlames; i++) {
+            Flame flame;
+            if (i < flames.size()) {
+                flame = (Flame) flames.get(i);
+            } else {
+                flame = flamePool.isEmpty() ? new Flame() : (Flame) flamePool.remove(flamePool.size() - 1);
+                flames.add(flame);
+            }
+            readObject(buffer, flame);
+            flame.playerIdx = buffer.getInt();
+        }
+    }
+
+    /**
+     * Writes the life, position and desired coordinate of an object into a snapshot.
+     */
+    private static void writeObject(ByteBuffer buffer, GameObject go) {
+        Vector2d position = go.getPosition();
+        Vector2d desired = go.getDesiredCoordinate();
+        buffer.putInt(go.getLife());
+        buffer.putShort(position != null ? (short) position.x : SNAPSHOT_NULL_COORD);
+        buffer.putShort(position != null ? (short) position.y : SNAPSHOT_NULL_COORD);
+        buffer.putShort(desired != null ? (short) desired.x : SNAPSHOT_NULL_COORD);
+        buffer.putShort(desired != null ? (short) desired.y : SNAPSHOT_NULL_COORD);
+    }
+
+    /**
+     * Reads the life, position and desired coordinate of an object from a snapshot.
+     */
+    private static void readObject(ByteBuffer buffer, GameObject go) {
+        go.setLife(buffer.getInt());
+        int x = buffer.getShort(), y = buffer.getShort();
+        Vector2d position = go.getPosition();
+        if (x == SNAPSHOT_NULL_COORD) {
+            go.setPositionNull();
+        } else if (position == null || position.x != x || position.y != y) {
+            go.setPositionNull();   // Others may hold the current vector, give the object a new one
+            go.setPosition(x, y);
+        }
+        x = buffer.getShort();
+        y = buffer.getShort();
+        if (x == SNAPSHOT_NULL_COORD) {
+            go.setDesiredCoordinateNull();
+        } else {
+            go.setDesiredCoordinate(x, y);
+        }
+    }
+
+    /**
+     * Updates the hash of the grids after the given cell has been written to. Must be called after every write to
+     * the board, power-ups or bomb grids. Nothing is done until the hash of the grids has been computed.
+     * @param x x coordinate of the cell.
+     * @param y y coordinate of the cell.
+     */
+    private void rehashCell(int x, int y) {
+        if (hashedCells == null)
+            return;
+
+        int idx = y * size + x;
+        int[] cells = hashedCells.getCells();
+        Types.TILETYPE pUp = powerups[y][x];
+        int cell = PackedBoard.encode(board[y][x], pUp != null ? pUp.getKey() : 0, bombLife[y][x],
+                bombBlastStrength[y][x]);
+        if (cell != cells[idx]) {
+            gridHash ^= Zobrist.key(Zobrist.CELL, idx, cells[idx]) ^ Zobrist.key(Zobrist.CELL, idx, cell);
+            cells[idx] = cell;
+        }
+    }
+
+    /**
+     * Computes the 64-bit Zobrist hash of this model. The part of the hash that covers the grids is computed once
+     * and then updated incrementally as cells are written to, so calling this on every tick is cheap. Properties of
+     * the objects that are not visible on the grids (flame lives, bomb velocities and owners, agent ammo, blast
+     * strength, kick ability and result) are added on every call, which only takes a pass over a few objects.
+     * Equal models have equal hashes, different models have the same hash with negligible probability.
+     * @return the hash of this model.
+     */
+    long hash() {
+        if (hashedCells == null) {
+            hashedCells = pack(null);
+            gridHash = 0;
+            int[] cells = hashedCells.getCells();
+            for (int i = 0; i < cells.length; i++) {
+                gridHash ^= Zobrist.key(Zobrist.CELL, i, cells[i]);
+            }
+        }
+
+        // Objects are added up rather than xor-ed, so that identical objects on the same cell don't cancel out.
+        // Shared objects not reset yet are hashed with the values they will get when reset.
+        long h = gridHash;
+        for (GameObject f : flames) {
+            Vector2d pos = f.getPosition();
+            int life = resetSharedObjects ? FLAME_LIFE : f.getLife();
+            h += Zobrist.key(Zobrist.FLAME, pos.y * size + pos.x, life);
+        }
+        for (GameObject bombObject : bombs) {
+            Bomb bomb = (Bomb) bombObject;
+            Vector2d pos = bomb.getPosition();
+            int value = 4;  // Not moving, no owner
+            if (!resetSharedObjects) {
+                Vector2d vel = bomb.getVelocity();
+                value = ((vel.x + 1) + 3 * (vel.y + 1)) | ((bomb.getPlayerIdx() + 1) << 4);
+            }
+            h += Zobrist.key(Zobrist.BOMB, pos.y * size + pos.x, value);
+        }
+        for (int i = 0; i < agents.length; i++) {
+            Avatar a = (Avatar) agents[i];
+            int value = (a.getAmmo() & 0xFF) | ((a.getBlastStrength() & 0xFF) << 8) | ((a.canKick() ? 1 : 0) << 16)
+                    | (a.getWinner().ordinal() << 17);
+            h += Zobrist.key(Zobrist.AGENT, i, value);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the number of ticks until the given cell is hit by the blast of a bomb, or GameState.NO_DANGER if no
+     * bomb reaches it. Bombs go off when their life runs out, when they are on flames, or as soon as the blast of
+     * another bomb reaches them. Bombs are assumed not to move and blasts to stop at the walls currently in the board.
+     * Only future blasts are included: cells on fire now are NO_DANGER unless a bomb reaches them, callers that care
+     * must check the board for flames.
+     * The map of all cells is only recomputed when bombs are added, removed or moved, or walls change; otherwise this
+     * is a lookup.
+     * @param x x coordinate of the cell.
+     * @param y y coordinate of the cell.
+     * @return the time to detonation.
+     */
+    int getTimeToDetonation(int x, int y) {
+        if (!dangerValid) {
+            computeDanger();
+        }
+        int t = dangerTicks[y * size + x];
+        return t == GameState.NO_DANGER ? t : t - dangerAge;
+    }
+
+    /**
+     * Returns true if the given cell is in the same row or column as a bomb, at most its blast strength away from it.
+     * Walls and bombs set off by others are ignored, and bombs are the ones in the board and bomb blast strength
+     * grids, as agents see them. This is the range that agents such as players.SimplePlayer have always avoided, kept
+     * apart from getTimeToDetonation() so that they play as they did. Recomputed along with the time to detonation.
+     * @param x x coordinate of the cell.
+     * @param y y coordinate of the cell.
+     * @return true if the cell is in range of a bomb.
+     */
+    boolean isInRangeOfBomb(int x, int y) {
+        if (!dangerValid) {
+            computeDanger();
+        }
+        return bombRange.get(y * size + x);
+    }
+
+    /**
+     * Computes the time to detonation of all cells. Bombs are processed in the order they go off, as in Dijkstra's
+     * algorithm: when a bomb goes off, the bombs in its blast that would go off later go off at the same time.
+     * Also computes the cells in range of a bomb, see isInRangeOfBomb().
+     */
+    private void computeDanger() {
+        if (dangerTicks == null) {
+            dangerTicks = new int[size * size];
+            dangerBombs = new GridIndex(size, size);
+            bombRange = new BitSet(size * size);
+        }
+        Arrays.fill(dangerTicks, GameState.NO_DANGER);
+        computeBombRange();
+
+        int nBombs = bombs.size();
+        if (bombDetonation.length < nBombs) {
+            bombDetonation = new int[nBombs * 2];
+        }
+        for (int i = 0; i < nBombs; i++) {
+            GameObject b = bombs.get(i);
+            Vector2d pos = b.getPosition();
+            bombDetonation[i] = board[pos.y][pos.x] == Types.TILETYPE.FLAMES ? 1 : b.getLife();
+        }
+        dangerBombs.indexPositions(bombs);
+        detonatedBombs.clear();
+
+        for (int n = 0; n < nBombs; n++) {
+            int next = -1;
+            for (int i = detonatedBombs.nextClearBit(0); i < nBombs; i = detonatedBombs.nextClearBit(i + 1)) {
+                if (next < 0 || bombDetonation[i] < bombDetonation[next]) {
+                    next = i;
+                }
+            }
+            detonatedBombs.set(next);
+
+            // Same blast as in Bomb.explode()
+            Bomb bomb = (Bomb) bombs.get(next);
+            int t = bombDetonation[next];
+            Vector2d pos = bomb.getPosition();
+            markBlast(pos.x, pos.y, t);
+            for (Types.DIRECTIONS dir : BLAST_DIRECTIONS) {
+                for (int i = 1; i < bomb.getBlastStrength(); i++) {
+                    if (!markBlast(pos.x + dir.x() * i, pos.y + dir.y() * i, t))
+                        break;
+                }
+            }
+        }
+        dangerAge = 0;
+        dangerValid = true;
+    }
+
+    /**
+     * Computes the cells in range of a bomb, see isInRangeOfBomb().
+     */
+    private void computeBombRange() {
+        bombRange.clear();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int blastStrength = bombBlastStrength[y][x];
+                if (board[y][x] != Types.TILETYPE.BOMB && blastStrength <= 0)
+                    continue;
+
+                int row = y * size;
+                bombRange.set(row + Math.max(0, x - blastStrength), row + Math.min(size - 1, x + blastStrength) + 1);
+                for (int y2 = Math.max(0, y - blastStrength); y2 <= Math.min(size - 1, y + blastStrength); y2++) {
+                    bombRange.set(y2 * size + x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks a cell as hit by a blast at the given time, bringing forward the detonation of the bombs in it.
+     * @return false if the blast stops at this cell.
+     */
+    private boolean markBlast(int x, int y, int t) {
+        if (x < 0 || y < 0 || x >= size || y >= size || board[y][x] == Types.TILETYPE.RIGID)
+            return false;
+
+        int cell = y * size + x;
+        if (t < dangerTicks[cell]) {
+            dangerTicks[cell] = t;
+        }
+        for (int i = dangerBombs.first(x, y); i >= 0; i = dangerBombs.next(i)) {
+            if (!detonatedBombs.get(i) && t < bombDetonation[i]) {
+                bombDetonation[i] = t;
+            }
+        }
+        return board[y][x] != Types.TILETYPE.WOOD;  // Blasts stop at the first wooden block
+    }
+
     /**
      * Creates a copy of this model
      * @return a deep copy of this model
@@ -268,6 +848,19 @@ public class ForwardModel {
             System.out.println();
         }
 
+        if (occupancy == null) {
+            occupancy = new int[size * size];
+            flameOccupancy = new int[size * size];
+            flameOwners = new int[size * size];
+            bombAtCell = new int[size * size];
+            agentPositions = new GridIndex(size, size);
+            bombPositions = new GridIndex(size, size);
+            agentTargets = new GridIndex(size, size);
+        }
+
+        ensureOwnState();
+        dangerAge++;
+
         // 1. Put actions into effect
         translatePlayerActions(playerActions);
 
@@ -280,45 +873,57 @@ public class ForwardModel {
         }
 
         // 2. Tick the flames
-        ArrayList<GameObject> deadFlames = new ArrayList<>();
-        for (GameObject f : flames) {
+        deadFlames.clear();
+        deadFlameIndices.clear();
+        for (int i = 0; i < flames.size(); i++) {
+            GameObject f = flames.get(i);
             f.tick();
             if (f.getLife() == 0) {  // Flame is dead, remove it from the list
                 deadFlames.add(f);
+                deadFlameIndices.set(i);
             }
         }
 
         // 3. Agents already have desired positions set from GameState call according to their chosen actions
         // 4. Tick bombs, they set their desired position in the tick() method as well as their life. They also
-        for (GameObject b : bombs) {
+        for (int i = 0; i < bombs.size(); i++) {
+            GameObject b = bombs.get(i);
             b.tick();
 
             // Wrap around board size, don't let bombs outside of game area, check collisions with walls.
             if (!setDesiredCoordinate(b, b.getDesiredCoordinate(), board))
-                ((Bomb)b).setVelocity(new Vector2d());
+                ((Bomb)b).resetVelocity();
         }
 
         // 5. Position swap:
         //      agent <-> agent. Bounce back both.
         //      bomb <-> bomb. Bounce back both.
         //      bomb <-> agent. Bomb only bounce back.
-        checkPositionSwap(aliveAgents, aliveAgents, board, false, VERBOSE_FM_DEBUG && trueModel);
-        checkPositionSwap(bombs, bombs, board, false, VERBOSE_FM_DEBUG && trueModel);
-        checkPositionSwap(aliveAgents, bombs, board, true, VERBOSE_FM_DEBUG && trueModel);
+        //    Objects are looked up by position, which doesn't change until objects are moved in steps 8 and 13.
+        agentPositions.indexPositions(aliveAgents);
+        bombPositions.indexPositions(bombs);
+        checkPositionSwap(aliveAgents, aliveAgents, board, false, agentPositions, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionSwap(bombs, bombs, board, false, bombPositions, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionSwap(aliveAgents, bombs, board, true, bombPositions, VERBOSE_FM_DEBUG && trueModel);
 
         // 6. If >= 2 agents or >= 2 bombs on same space, bounce both back.
-        checkPositionOverlap(aliveAgents, board, VERBOSE_FM_DEBUG && trueModel);
-        checkPositionOverlap(bombs, board, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionOverlap(aliveAgents, board, occupancy, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionOverlap(bombs, board, occupancy, VERBOSE_FM_DEBUG && trueModel);
 
         // 7. Handle kicks & moving bombs hitting agents that can not kick
         handleMovingBombs();
 
         // 8. Late update bomb overlaps. In previous loop it's possible that some bombs ended up overlapping.
-        checkPositionOverlap(bombs, board, VERBOSE_FM_DEBUG && trueModel);
+        checkPositionOverlap(bombs, board, occupancy, VERBOSE_FM_DEBUG && trueModel);
 
         // If bombs were bounced back, then they may overlap players again, bounce players back too if players moved.
-        for (GameObject b: bombs) {
-            for (GameObject p : agents) {
+        // Only agents that want to move where the bomb wants to go are checked. Agents bounced back no longer move,
+        // so their entries in the index are never needed again.
+        agentTargets.indexDesiredCoordinates(agents);
+        for (int bIdx = 0; bIdx < bombs.size(); bIdx++) {
+            GameObject b = bombs.get(bIdx);
+            for (int i = agentTargets.first(b.getDesiredCoordinate()); i >= 0; i = agentTargets.next(i)) {
+                GameObject p = agents[i];
                 if(p.getDesiredCoordinate() != null && p.getPosition() != null) {
                     if (!p.getDesiredCoordinate().equals(p.getPosition()) &&
                             p.getDesiredCoordinate().equals(b.getDesiredCoordinate())) {
@@ -335,7 +940,8 @@ public class ForwardModel {
         }
 
         // 9. Players pick up power-ups
-        for (GameObject p: aliveAgents) {
+        for (int i = 0; i < aliveAgents.size(); i++) {
+            GameObject p = aliveAgents.get(i);
             if(p.getDesiredCoordinate() != null) {
                 int x = p.getDesiredCoordinate().x;
                 int y = p.getDesiredCoordinate().y;
@@ -344,10 +950,11 @@ public class ForwardModel {
         }
 
         // 10. Explode bombs
-        HashMap<Vector2d, Integer> flameOccupancy = handleBombExplosions();
+        int[] flameOccupancy = handleBombExplosions();
 
         // 11. Resolve flame on death effects
-        for (GameObject f : deadFlames) {
+        for (int i = 0; i < deadFlames.size(); i++) {
+            GameObject f = deadFlames.get(i);
             if (f.getPosition() != null) {  // Flame had a physical presence, resolve on death effects
                 int x = f.getPosition().x;
                 int y = f.getPosition().y;
@@ -360,23 +967,26 @@ public class ForwardModel {
                 } else {
                     board[y][x] = Types.TILETYPE.PASSAGE;
                 }
+                rehashCell(x, y);
             }
         }
-        flames.removeAll(deadFlames);
+        removeObjects(flames, deadFlameIndices, flamePool);
 
         // 12. Add flames left alive back into the board if missing. Multiple flames may share a position, and the board
         // Should contain a flame until all flames are dead.
-        for (GameObject f : flames) {
+        for (int i = 0; i < flames.size(); i++) {
+            GameObject f = flames.get(i);
             int x = f.getDesiredCoordinate().x;
             int y = f.getDesiredCoordinate().y;
             if (board[y][x] != Types.TILETYPE.FLAMES) {
                 f.setPosition(f.getDesiredCoordinate());
                 board[y][x] = f.getType();
+                rehashCell(x, y);
             }
         }
 
         // 13. Kill agents on flames. Otherwise, update position on board.
-        ArrayList<GameObject> deadAgentsThisTick = handleAgentKilling(flameOccupancy);
+        handleAgentKilling(flameOccupancy);
 
         // 14. Check for terminated agents
         if(deadAgentsThisTick.size() > 0) {
@@ -384,15 +994,26 @@ public class ForwardModel {
         }
 
         // 15. Update observable board grids of item types, bomb blast strengths, bomb lives
-        bombBlastStrength = new int[size][size];
-        bombLife = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            int[] blastRow = bombBlastStrength[y];
+            int[] lifeRow = bombLife[y];
+            for (int x = 0; x < size; x++) {
+                if (blastRow[x] != 0 || lifeRow[x] != 0) {
+                    blastRow[x] = 0;
+                    lifeRow[x] = 0;
+                    rehashCell(x, y);
+                }
+            }
+        }
 
-        for(GameObject bombObject : bombs){
-            Bomb bomb = (Bomb) bombObject;
+        for (int i = 0; i < bombs.size(); i++) {
+            Bomb bomb = (Bomb) bombs.get(i);
             Vector2d position = bomb.getPosition();
             bombBlastStrength[position.y][position.x] = bomb.getBlastStrength();
             bombLife[position.y][position.x] = bomb.getLife();
+            rehashCell(position.x, position.y);
         }
+        bombGridsSynced = true;
 
         // 16. Collapse
         if(Types.COLLAPSE_BOARD) {
@@ -425,14 +1046,9 @@ public class ForwardModel {
         if(trueModel && LOGGING_STATISTICS) {
             for (GameObject p : aliveAgents) {
                 int agentID = p.getType().getKey() - 10;
+                // Only bombs going off next tick count, not the ones they set off (unlike getTimeToDetonation()), so
+                // logs stay comparable with those of earlier versions
                 boolean isStuck = isStuckAdvanced(board, bombs, ((Avatar) p)); //isStuck(board, ((Avatar) p));
-                /*
-                if (!isAgentStuck[agentID] && isStuck){
-                    String eventString = tick + " | [" + agentID + "] got stuck at ("
-                            + p.getPosition().x + ", " + p.getPosition().y + ")\n";
-                    es.events.add(eventString);
-                }
-                */
                 isAgentStuck[agentID] = isStuck;
             }
             tick++;
@@ -445,7 +1061,7 @@ public class ForwardModel {
         Types.TILETYPE tiletype = board[y][x];
 
         if(tiletype == Types.TILETYPE.BOMB){
-            Vector2d pos = new Vector2d(x, y);
+            Cell pos = cellAt(x, y);
             ArrayList<GameObject> gos = findObjectInList(pos, bombs);
             for (GameObject go: gos) {
                 bombs.remove(go);
@@ -459,7 +1075,7 @@ public class ForwardModel {
             bombBlastStrength[y][x] = 0;
         }
         else if(tiletype == Types.TILETYPE.FLAMES){
-            Vector2d pos = new Vector2d(x, y);
+            Cell pos = cellAt(x, y);
             ArrayList<GameObject> gos = findObjectInList(pos, flames);
             for (GameObject go: gos) {
                 flames.remove(go);
@@ -470,13 +1086,15 @@ public class ForwardModel {
                 tiletype == Types.TILETYPE.AGENT2 ||
                 tiletype == Types.TILETYPE.AGENT3){
 
-            Vector2d pos = new Vector2d(x, y);
+            Cell pos = cellAt(x, y);
             ArrayList<GameObject> gos = findObjectInList(pos, aliveAgents);
             for (GameObject go: gos) {
                 collapsedAgents.add(go);
             }
         }
         board[y][x] = Types.TILETYPE.RIGID;
+        rehashCell(x, y);
+        dangerValid = false;
     }
 
     /**
@@ -484,30 +1102,28 @@ public class ForwardModel {
      */
     private void handleMovingBombs()
     {
-        for (GameObject b: bombs) {
-            for (GameObject p: aliveAgents) {
+        for (int i = 0; i < bombs.size(); i++) {
+            GameObject b = bombs.get(i);
+            for (int j = 0; j < aliveAgents.size(); j++) {
+                GameObject p = aliveAgents.get(j);
 
                 if(p.getDesiredCoordinate() != null && p.getPosition() != null){
 
 
                     if (b.getDesiredCoordinate().equals(b.getPosition())) {
-                        ((Bomb) b).setVelocity(new Vector2d());
+                        ((Bomb) b).resetVelocity();
                     }
                     if (p.getDesiredCoordinate().equals(b.getDesiredCoordinate())) {
                         // Agent tried to move onto bomb OR bomb tried to move onto agent, check if agent can kick
                         if (((Avatar) p).canKick()) {
                             // Player can kick, so set bomb velocity
-                            Vector2d velocity = p.getDesiredCoordinate().subtract(p.getPosition());
-                            ((Bomb) b).setVelocity(velocity);
+                            int vx = p.getDesiredCoordinate().x - p.getPosition().x;
+                            int vy = p.getDesiredCoordinate().y - p.getPosition().y;
+                            ((Bomb) b).setVelocity(vx, vy);
 
                             // First bomb move on the same tick as the kick happened. Do not move into players or walls.
                             // If bomb couldn't move, reset its velocity
-                            ArrayList<Types.TILETYPE> collisions = new ArrayList<>();
-                            collisions.add(Types.TILETYPE.RIGID);
-                            collisions.add(Types.TILETYPE.WOOD);
-                            collisions.addAll(Types.TILETYPE.getAgentTypes());
-
-                            if (velocity.mag() == 0) {
+                            if (vx == 0 && vy == 0) {
                                 // They can be on same position only if agent just dropped bomb
                                 // Move agent back if they moved & the bomb didn't move when the kick was attempted
                                 if (!p.getDesiredCoordinate().equals(p.getPosition())) {
@@ -517,8 +1133,9 @@ public class ForwardModel {
                                     setDesiredCoordinate(p, p.getPosition(), board);
                                 }
                             } else {
-                                if (!setDesiredCoordinate(b, b.getDesiredCoordinate().add(velocity), board, collisions)) {
-                                    ((Bomb) b).setVelocity(new Vector2d());
+                                Vector2d bDesired = b.getDesiredCoordinate();
+                                if (!setDesiredCoordinate(b, bDesired.x + vx, bDesired.y + vy, board, KICK_COLLISIONS)) {
+                                    ((Bomb) b).resetVelocity();
                                 }
                             }
                         } else {
@@ -544,62 +1161,74 @@ public class ForwardModel {
 
     /**
      * Handles bomb explosions, creating the flame objects that destroy things.
-     * @return the set of positions occupied by flames.
+     * Chains are resolved from a worklist: only bombs hit by new flames are visited again, found through a grid index
+     * of bombs per cell, instead of rescanning the whole list of bombs until no more bombs explode. Bombs explode in
+     * the same order as in a scan: passes over the list in order, where a bomb hit by a flame explodes later in the
+     * same pass if it comes after the bomb that created the flame in the list, or in the next pass otherwise.
+     * @return the number of flames per position, indexed by 'y * size + x'.
      */
-    private HashMap<Vector2d, Integer> handleBombExplosions()
+    private int[] handleBombExplosions()
     {
-        boolean newExplosions = true;
-
         // Get positions of flames
-        HashMap<Vector2d, Integer> flameOccupancy = checkOccupancy(flames);
+        Arrays.fill(flameOccupancy, 0);
+        if (trueModel && LOGGING_STATISTICS) {
+            Arrays.fill(flameOwners, 0);
+        }
+        addFlameOccupancy(flames);
 
-        while (newExplosions) {
-            // Use this flag to chain explosions. If new flames are added, then we need to check all bombs again
-            newExplosions = false;
+        // Index bombs by position. Bombs explode if their life reached 0 or there is a flame on them.
+        int nBombs = bombs.size();
+        if (nextBombAtCell.length < nBombs) {
+            nextBombAtCell = new int[nBombs * 2];
+        }
+        Arrays.fill(bombAtCell, -1);
+        pendingBombs.clear();
+        nextPassBombs.clear();
+        explodedBombs.clear();
+        for (int i = nBombs - 1; i >= 0; i--) {  // Backwards, so bombs on the same cell are linked in list order
+            GameObject b = bombs.get(i);
+            int cell = b.getPosition().y * size + b.getPosition().x;
+            nextBombAtCell[i] = bombAtCell[cell];
+            bombAtCell[cell] = i;
+            if (b.getLife() == 0 || flameOccupancy[cell] > 0) {
+                pendingBombs.set(i);
+            }
+        }
 
-            ArrayList<GameObject> deadBombs = new ArrayList<>();
-            for (GameObject b : bombs) {
+        while (!pendingBombs.isEmpty()) {
+            for (int i = pendingBombs.nextSetBit(0); i >= 0; i = pendingBombs.nextSetBit(i + 1)) {
+                GameObject b = bombs.get(i);
 
                 // Force this bomb to explode if there is a flame at this position.
-                boolean forceExplosion = false;
-                if (flameOccupancy.get(b.getPosition()) != null) forceExplosion = true;
+                Vector2d bPos = b.getPosition();
+                boolean forceExplosion = flameOccupancy[bPos.y * size + bPos.x] > 0;
 
-                // Find the flame owners who triggered the explosion
+                // Log the flame owners who triggered the explosion
                 if(trueModel && LOGGING_STATISTICS) {
                     if (forceExplosion) {
-                        StringBuilder eventSB = new StringBuilder();
-                        eventSB.append(tick + " | [" + ((Bomb) b).getPlayerIdx() + "]'s bomb exploded at ("
-                                + b.getPosition().x + ", " + b.getPosition().y + ") triggered by ");
-                        Set<Integer> killerIDs = new HashSet<>();
-                        for (GameObject flame : this.flames) {
-                            if (flame.getPosition().equals(b.getPosition()))
-                                killerIDs.add(((Flame) flame).playerIdx);
-                        }
-                        for (Integer id : killerIDs) {
-                            eventSB.append("[" + id + "]");
-                            es.bombsTriggered[id]++;
-                        }
-                        eventSB.append("\n");
-                        es.events.add(eventSB.toString());
+                        es.record(tick, EventsStatistics.EVENT.BOMB_TRIGGERED, ((Bomb) b).getPlayerIdx(),
+                                bPos.x, bPos.y, flameOwners[bPos.y * size + bPos.x]);
                     }
                     else if(b.getLife() == 0){
-                        String eventString = tick + " | [" + ((Bomb) b).getPlayerIdx() + "]'s bomb exploded at ("
-                                + b.getPosition().x + ", " + b.getPosition().y + ")\n";
-                        es.events.add(eventString);
+                        es.record(tick, EventsStatistics.EVENT.BOMB_EXPLODED, ((Bomb) b).getPlayerIdx(),
+                                bPos.x, bPos.y, 0);
                     }
                 }
 
                 // TODO: Wood removals happen here, but within Bomb class, what's the best way of doing this? (to count them)
 
                 // This bomb will explode and create new flames if life reached 0, or forced to explode
-                ArrayList<GameObject> newFlames = ((Bomb) b).explode(forceExplosion, board, powerups);
-                if (newFlames != null && newFlames.size() > 0) {
+                newFlames.clear();
+                ((Bomb) b).explode(forceExplosion, board, powerups, newFlames, flamePool);
+                if (newFlames.size() > 0) {
 
-                    flames.addAll(newFlames);
-                    newExplosions = true;
+                    // Not addAll(), which copies the new flames into a temporary array
+                    for (int j = 0; j < newFlames.size(); j++) {
+                        flames.add(newFlames.get(j));
+                    }
 
                     // Remove this bomb from the list of bombs
-                    deadBombs.add(b);
+                    explodedBombs.set(i);
 
                     // Give the player 1 ammo back for this bomb
                     int pIdx = ((Bomb) b).getPlayerIdx();
@@ -607,57 +1236,115 @@ public class ForwardModel {
                         ((Avatar)agents[pIdx]).addAmmo();
                     }
 
-                    // Add new flame positions to the map
-                    HashMap<Vector2d, Integer> newOccupancy = checkOccupancy(newFlames);
-                    for (Map.Entry<Vector2d, Integer> e : newOccupancy.entrySet()) {
-                        flameOccupancy.merge(e.getKey(), e.getValue(), (a, b1) -> b1 + a);
+                    // Add new flame positions to the map, flames were placed on the board
+                    addFlameOccupancy(newFlames);
+                    for (int f = 0; f < newFlames.size(); f++) {
+                        Vector2d pos = newFlames.get(f).getPosition();
+                        rehashCell(pos.x, pos.y);
+
+                        // Chain explosions to the bombs hit by this flame
+                        for (int j = bombAtCell[pos.y * size + pos.x]; j >= 0; j = nextBombAtCell[j]) {
+                            if (!explodedBombs.get(j)) {
+                                if (j > i) pendingBombs.set(j);
+                                else nextPassBombs.set(j);
+                            }
+                        }
                     }
                 }
             }
-            bombs.removeAll(deadBombs);
+
+            // Start the next pass with the bombs hit behind the ones that exploded
+            pendingBombs.clear();
+            pendingBombs.or(nextPassBombs);
+            nextPassBombs.clear();
+        }
+        if (!explodedBombs.isEmpty()) {
+            removeObjects(bombs, explodedBombs, bombPool);
+            dangerValid = false;
         }
 
         return flameOccupancy;
     }
 
+    /**
+     * Removes objects from a list in a single pass, keeping the order of the remaining ones, as it decides the order
+     * in which bombs are resolved. Removed objects are added to the given pool if objects can be recycled.
+     * @param list list to remove objects from.
+     * @param indices indices in the list of the objects to remove.
+     * @param pool pool for the removed objects.
+     */
+    private void removeObjects(ArrayList<GameObject> list, BitSet indices, ArrayList<GameObject> pool) {
+        int n = 0;
+        for (int i = 0; i < list.size(); i++) {
+            GameObject go = list.get(i);
+            if (indices.get(i)) {
+                if (recycleObjects) pool.add(go);
+            } else {
+                list.set(n++, go);
+            }
+        }
+        for (int i = list.size() - 1; i >= n; i--) {
+            list.remove(i);
+        }
+    }
+
+    /**
+     * Adds the desired positions of the given flames to the flame occupancy grid, and their owners to the flame
+     * owners grid if statistics are logged.
+     * @param flameList flames to add.
+     */
+    private void addFlameOccupancy(ArrayList<GameObject> flameList) {
+        boolean logging = trueModel && LOGGING_STATISTICS;
+        for (int i = 0; i < flameList.size(); i++) {
+            Vector2d pos = flameList.get(i).getDesiredCoordinate();
+            flameOccupancy[pos.y * size + pos.x]++;
+            if (logging) {
+                flameOwners[pos.y * size + pos.x] |= 1 << ((Flame) flameList.get(i)).playerIdx;
+            }
+        }
+    }
+
+    /**
+     * Finds the owners of the flames currently in the board, as bit masks of player indices per cell.
+     */
+    private void findFlameOwners() {
+        Arrays.fill(flameOwners, 0);
+        for (int i = 0; i < flames.size(); i++) {
+            Vector2d pos = flames.get(i).getPosition();
+            flameOwners[pos.y * size + pos.x] |= 1 << ((Flame) flames.get(i)).playerIdx;
+        }
+    }
+
     /**
      * Handles killing agents with flames in the board.
-     * @param flameOccupancy location of the flames on this tick.
-     * @return list of agents killed on this tick
+     * @param flameOccupancy number of flames per position on this tick, indexed by 'y * size + x'.
+     * Agents killed on this tick are left in deadAgentsThisTick.
      */
-    private ArrayList<GameObject> handleAgentKilling(HashMap<Vector2d, Integer> flameOccupancy)
+    private void handleAgentKilling(int[] flameOccupancy)
     {
-        ArrayList<GameObject> deadAgentsThisTick = new ArrayList<>();
-        for (GameObject p : aliveAgents) {
+        deadAgentsThisTick.clear();
+        boolean ownersFound = false;  // Flame owners are only needed if agents die
+        for (int i = 0; i < aliveAgents.size(); i++) {
+            GameObject p = aliveAgents.get(i);
             Vector2d nextPos = p.getDesiredCoordinate();
             Vector2d currPos = p.getPosition();
 
-            if (nextPos != null && currPos != null && flameOccupancy.containsKey(nextPos)) {
+            if (nextPos != null && currPos != null && flameOccupancy[nextPos.y * size + nextPos.x] > 0) {
                 // This agent was killed by a flame, remove from list
                 p.setLife(0);
                 deadAgentsThisTick.add(p);
 
                 if(trueModel && LOGGING_STATISTICS) {
-                    StringBuilder eventSB = new StringBuilder();
-                    eventSB.append(tick + " | [" + (((Avatar) p).getPlayerID() - 10) + "] died at ("
-                            + nextPos.x + ", " + nextPos.y + ") by ");
-
-                    Set<Integer> killerIDs = new HashSet<>();
-                    for (GameObject flame : this.flames) {
-                        if (flame.getPosition().equals(nextPos))
-                            killerIDs.add(((Flame) flame).playerIdx);
+                    if (!ownersFound) {
+                        findFlameOwners();
+                        ownersFound = true;
                     }
-                    for (Integer id : killerIDs) {
-                        eventSB.append("[" + id + "]");
+                    int agentID = ((Avatar) p).getPlayerID() - 10;
+                    int cause = flameOwners[nextPos.y * size + nextPos.x];
+                    if (isAgentStuck[agentID]) {
+                        cause |= EventsStatistics.WAS_STUCK;
                     }
-                    eventSB.append("'s flame(s)");
-
-                    if (isAgentStuck[((Avatar) p).getPlayerID() - 10]) {
-                        eventSB.append(" (was stuck)");
-                    }
-                    eventSB.append("\n");
-
-                    es.events.add(eventSB.toString());
+                    es.record(tick, EventsStatistics.EVENT.AGENT_DIED, agentID, nextPos.x, nextPos.y, cause);
                 }
 
                 if (VERBOSE_FM_DEBUG) {
@@ -667,12 +1354,12 @@ public class ForwardModel {
                 if (board[currPos.y][currPos.x] != Types.TILETYPE.BOMB
                         && board[currPos.y][currPos.x] != Types.TILETYPE.FLAMES) {
                     board[currPos.y][currPos.x] = Types.TILETYPE.PASSAGE;
+                    rehashCell(currPos.x, currPos.y);
                 }
             } else {
                 move(p);
             }
         }
-        return deadAgentsThisTick;
     }
 
     /**
@@ -696,24 +1383,14 @@ public class ForwardModel {
                     if (trueModel && VERBOSE_FM_DEBUG) {
                         System.out.println("Moving " + o.getType() + ": " + currentPos + " -> " + nextPos);
                     }
-                    o.setPosition(nextPos.copy());
-
-                    HashSet<Types.TILETYPE> powerUpTypes = Types.TILETYPE.getPowerUpTypes();
-                    HashSet<Types.TILETYPE> agentTypes = TILETYPE.getAgentTypes();
-
-                    // Set up sprites that cannot be replaced with a passage when current sprite moves from its square.
-                    HashSet<Types.TILETYPE> illegalOverwriteTypes = new HashSet<>(powerUpTypes);
-                    illegalOverwriteTypes.add(Types.TILETYPE.FLAMES);  // We don't remove flames
-                    illegalOverwriteTypes.addAll(agentTypes);  // We don't remove other agents...
-                    illegalOverwriteTypes.remove(o.getType()); // Unless this agent is the current object
+                    o.setPosition(nextPos);  // Position is copied, currentPos keeps the previous position
 
                     // Bombs don't leave traces of bombs behind them, and other sprites do not remove bombs from the board
-                    if (o.getType() != Types.TILETYPE.BOMB) {
-                        illegalOverwriteTypes.add(Types.TILETYPE.BOMB);
-                    } else {
+                    if (o.getType() == Types.TILETYPE.BOMB) {
+                        dangerValid = false;
                         // Check if next is a powerup, we should put it back in the powerup array before removing it from
                         // the board (unless it's an avatar collecting it).
-                        if (!agentTypes.contains(o.getType()) && powerUpTypes.contains(nextType)) {
+                        if (nextType != null && nextType.isPowerUp()) {
                             powerups[nextPos.y][nextPos.x] = board[nextPos.y][nextPos.x];
                         }
                     }
@@ -721,22 +1398,37 @@ public class ForwardModel {
                     // Update current position
                     // Only update current position if the object there can be overwritten
                     // Replace with passage if there isn't a power-up there that should be added back in
-                    if (canOverwrite(currentPos, board, illegalOverwriteTypes)) {
+                    if (isOverwritable(board[currentPos.y][currentPos.x], o.getType())) {
                         if (powerups[currentPos.y][currentPos.x] != null) {
                             board[currentPos.y][currentPos.x] = powerups[currentPos.y][currentPos.x];
                             powerups[currentPos.y][currentPos.x] = null;
                         } else {
                             board[currentPos.y][currentPos.x] = Types.TILETYPE.PASSAGE;
                         }
+                        rehashCell(currentPos.x, currentPos.y);
                     }
                 }
             }
 
             // Update next position. The order is bombs, avatars, so avatars would overwrite bombs.
             board[nextPos.y][nextPos.x] = o.getType();
+            rehashCell(nextPos.x, nextPos.y);
         }
     }
 
+    /**
+     * Checks if the tile left behind by a moving object can be replaced with a passage (or a hidden power-up).
+     * Power-ups, flames and other agents are never removed from the board, and only bombs remove bombs.
+     * @param tile - type of the tile at the position the object leaves.
+     * @param mover - type of the object moving.
+     * @return true if the tile can be overwritten, false otherwise.
+     */
+    private static boolean isOverwritable(Types.TILETYPE tile, Types.TILETYPE mover) {
+        if (tile == null || tile == mover)
+            return true;
+        return tile != Types.TILETYPE.FLAMES && tile != Types.TILETYPE.BOMB && !tile.isPowerUp() && !tile.isAgent();
+    }
+
     /**
      * Function to insert player action effects into the game.
      * Index in actions array is the same as in aliveAgents array.
@@ -762,7 +1454,8 @@ public class ForwardModel {
                 action = Types.ACTIONS.ACTION_STOP;
             }
 
-            boolean successful = setDesiredCoordinate(agent, pos.add(action.getDirection().toVec()), board);
+            Types.DIRECTIONS dir = action.getDirection();
+            boolean successful = setDesiredCoordinate(agent, pos.x + dir.x(), pos.y + dir.y(), board);
 
             if (action == Types.ACTIONS.ACTION_BOMB) {
                 if (agent.getAmmo() > 0 && bombBlastStrength[pos.y][pos.x] == 0) {
@@ -771,21 +1464,13 @@ public class ForwardModel {
                     addBomb(pos.x, pos.y, agent.getBlastStrength(), BOMB_LIFE, i, true);
                     successful = true;
                     if(trueModel && LOGGING_STATISTICS) {
-                        int agentID = (agent.getPlayerID() - 10);
-                        String eventString = tick + " | [" + agentID + "] placed a bomb at ("
-                                +  pos.x + ", " + pos.y + ")\n";
-                        es.events.add(eventString);
-                        es.bombsPlaced[agentID]++;
-                        es.bombPlacementsAttempted[agentID]++;
+                        es.record(tick, EventsStatistics.EVENT.BOMB_PLACED, agent.getPlayerID() - 10, pos.x, pos.y, 0);
                     }
                 } else {
                     successful = false;
                     if(trueModel && LOGGING_STATISTICS) {
-                        int agentID = (agent.getPlayerID() - 10);
-                        String eventString = tick + " | [" + agentID + "] failed to place a bomb at ("
-                                +  pos.x + ", " + pos.y + ")\n";
-                        es.events.add(eventString);
-                        es.bombPlacementsAttempted[agentID]++;
+                        es.record(tick, EventsStatistics.EVENT.BOMB_NOT_PLACED, agent.getPlayerID() - 10, pos.x, pos.y,
+                                0);
                     }
                 }
             }
@@ -810,26 +1495,20 @@ public class ForwardModel {
             if (board[y][x] == Types.TILETYPE.EXTRABOMB) {
                 p.addAmmo();
                 if(trueModel && LOGGING_STATISTICS) {
-                    String eventString = tick + " | [" + (p.getPlayerID() - 10) + "] picked up AMMO at ("
-                            +  x + ", " + y + ")\n";
-                    es.events.add(eventString);
-                    es.powerUpsTaken[p.getPlayerID() - 10]++;
+                    es.record(tick, EventsStatistics.EVENT.POWER_UP, p.getPlayerID() - 10, x, y,
+                            Types.TILETYPE.EXTRABOMB.getKey());
                 }
             } else if (board[y][x] == Types.TILETYPE.INCRRANGE) {
                 p.addBlastStrength();
                 if(trueModel && LOGGING_STATISTICS) {
-                    String eventString = tick + " | [" + (p.getPlayerID() - 10) + "] picked up BLAST STRENGTH at ("
-                            +  x + ", " + y + ")\n";
-                    es.events.add(eventString);
-                    es.powerUpsTaken[p.getPlayerID() - 10]++;
+                    es.record(tick, EventsStatistics.EVENT.POWER_UP, p.getPlayerID() - 10, x, y,
+                            Types.TILETYPE.INCRRANGE.getKey());
                 }
             } else if (board[y][x] == Types.TILETYPE.KICK) {
                 p.setCanKick();
                 if(trueModel && LOGGING_STATISTICS) {
-                    String eventString = tick + " | [" + (p.getPlayerID() - 10) + "] picked up CAN KICK at ("
-                            +  x + ", " + y + ")\n";
-                    es.events.add(eventString);
-                    es.powerUpsTaken[p.getPlayerID() - 10]++;
+                    es.record(tick, EventsStatistics.EVENT.POWER_UP, p.getPlayerID() - 10, x, y,
+                            Types.TILETYPE.KICK.getKey());
                 }
             }
         }
@@ -898,25 +1577,39 @@ public class ForwardModel {
     // add* methods can be used by agents to insert things into the model
 
     void addBomb(int x, int y, int blastStrength, int bombLife, int playerIdx, boolean addToBoard) {
-        Bomb bomb = new Bomb(blastStrength, bombLife, playerIdx);
-        bomb.setPosition(new Vector2d(x, y));
-        setDesiredCoordinate(bomb, new Vector2d(x, y), board);
+        ensureOwnState();
+        bombGridsSynced = false;
+        dangerValid = false;
+        Bomb bomb;
+        if (!bombPool.isEmpty()) {
+            bomb = (Bomb) bombPool.remove(bombPool.size() - 1);
+            bomb.reset(blastStrength, bombLife, playerIdx);
+        } else {
+            bomb = new Bomb(blastStrength, bombLife, playerIdx);
+        }
+        bomb.setPosition(x, y);
+        setDesiredCoordinate(bomb, x, y, board);
         bombs.add(bomb);
         if (addToBoard) {
             board[y][x] = Types.TILETYPE.BOMB;
+            rehashCell(x, y);
         }
     }
 
     void addFlame(int x, int y, int life) {
+        ensureOwnState();
+        dangerValid = false;
         Flame flame = new Flame();
         flame.setLife(life);
         setDesiredCoordinate(flame, new Vector2d(x, y), board);
         flame.setPosition(flame.getDesiredCoordinate());
         flames.add(flame);
         board[y][x] = Types.TILETYPE.FLAMES;
+        rehashCell(x, y);
     }
 
     void addPowerUp(int x, int y, Types.TILETYPE type, boolean visible) {
+        ensureOwnState();
         Types.TILETYPE[][] targetArray;
         if (visible) targetArray = board;
         else targetArray = powerups;
@@ -927,34 +1620,43 @@ public class ForwardModel {
     }
 
     void addObject(int x, int y, Types.TILETYPE type) {
+        ensureOwnState();
         addObject(x, y, type, board);
     }
 
     void addAgent(int x, int y, int idx) {
+        ensureOwnState();
         GameObject agent = agents[idx];
         ((Avatar)agent).setWinner(Types.RESULT.INCOMPLETE);
         agent.setPosition(new Vector2d(x, y));
         setDesiredCoordinate(agent, new Vector2d(x, y), board);
         board[y][x] = agent.getType();
+        rehashCell(x, y);
     }
 
     void removePowerUp(int x, int y, Types.TILETYPE type) {
+        ensureOwnState();
         removeObject(x, y, type, powerups, false);
     }
 
     void removeObject(int x, int y, Types.TILETYPE type, boolean onlyBoard) {
+        ensureOwnState();
+        bombGridsSynced = false;
         removeObject(x, y, type, board, onlyBoard);
     }
 
     private void addObject(int x, int y, Types.TILETYPE type, Types.TILETYPE[][] targetArray) {
+        dangerValid = false;
         GameObject object = new GameObject(type);
         object.setPosition(new Vector2d(x, y));
         setDesiredCoordinate(object, new Vector2d(x, y), targetArray);
         targetArray[y][x] = type;
+        rehashCell(x, y);
     }
 
     private void removeObject(int x, int y, Types.TILETYPE type, Types.TILETYPE[][] targetArray, boolean onlyBoard) {
-        Vector2d pos = new Vector2d(x, y);
+        dangerValid = false;
+        Cell pos = cellAt(x, y);
         targetArray[y][x] = TILETYPE.PASSAGE;
 
         if (!onlyBoard) {
@@ -978,6 +1680,22 @@ public class ForwardModel {
                 powerups[y][x] = null;
             }
         }
+        rehashCell(x, y);
+    }
+
+    /**
+     * Returns the cell at the given coordinates, to look up the objects in it.
+     * @param x x coordinate of the cell.
+     * @param y y coordinate of the cell.
+     * @return the cell.
+     * @throws IllegalArgumentException if the coordinates are not in the board.
+     */
+    private Cell cellAt(int x, int y) {
+        Cell cell = Cell.of(x, y, size);
+        if (cell == null)
+            throw new IllegalArgumentException("Position (" + x + ", " + y + ") is not in the " + size + "x" + size +
+                    " board");
+        return cell;
     }
 
     // Sets properties of agent, identified by player ID
@@ -991,7 +1709,8 @@ public class ForwardModel {
 
     // Sets properties of bomb, identified by position
     void setBomb(int x, int y, int playerIdx, Vector2d velocity) {
-        Vector2d pos = new Vector2d(x, y);
+        ensureOwnState();
+        Cell pos = cellAt(x, y);
         ArrayList<GameObject> gos = findObjectInList(pos, bombs);
         for (GameObject go: gos) {
             Bomb bomb = (Bomb)go;
@@ -1002,7 +1721,8 @@ public class ForwardModel {
 
     // Sets properties of flame, identified by position
     void setFlame(int x, int y, int life) {
-        Vector2d pos = new Vector2d(x, y);
+        ensureOwnState();
+        Cell pos = cellAt(x, y);
         ArrayList<GameObject> flame = findObjectInList(pos, flames);
         for (GameObject f : flame) {
             f.setLife(life);
@@ -1086,6 +1806,11 @@ public class ForwardModel {
             range = avatar.getVisionRange();
         }
 
+        if (range == -1) {
+            shareState(copy);
+            return;
+        }
+
         // Init new power-up and board arrays
         copy.powerups = new Types.TILETYPE[size][size];
         copy.board = new Types.TILETYPE[size][size];
@@ -1094,52 +1819,142 @@ public class ForwardModel {
         copy.flames = new ArrayList<>();
         copy.bombs = new ArrayList<>();
 
+        // Cells visible by the player, precomputed
+        VisionMask vision = VisionMask.get(avatarPosition, range, size);
+
         // Agents position is removed and their properties reset if we don't know where they are when reducing state.
         copy.agents = deepCopy(agents);
-        if (range != -1) {
-            for (int i = 0; i < copy.agents.length; i++) {
-                GameObject a = copy.agents[i];
-                if (a.getPosition() != null && a.getPosition().custom_dist(avatarPosition) > range) {
-                    // This agent's position is not observed
-                    a.setPositionNull();
-                    a.setDesiredCoordinateNull();
-                }
-                // If not player observing, reset properties to default
-                if (i != playerIdx) {
-                    ((Avatar) a).reset();
-                }
+        for (int i = 0; i < copy.agents.length; i++) {
+            GameObject a = copy.agents[i];
+            if (a.getPosition() != null && !vision.isVisible(a.getPosition())) {
+                // This agent's position is not observed
+                a.setPositionNull();
+                a.setDesiredCoordinateNull();
             }
-        }
-
-        // Reduce power-ups and board arrays
-        for (int y = 0; y < size; y++) {
-            for (int x = 0; x < size; x++) {
-                if (range == -1 || avatarPosition != null && avatarPosition.custom_dist(x, y) <= range) {
-                    copy.board[y][x] = board[y][x];
-                    if (range == -1)
-                        copy.powerups[y][x] = powerups[y][x];
-                } else {
-                    copy.board[y][x] = Types.TILETYPE.FOG;
-                }
+            // If not player observing, reset properties to default
+            if (i != playerIdx) {
+                ((Avatar) a).reset();
             }
         }
 
+        // Reduce board array, power-ups are hidden
+        vision.copyVisible(board, copy.board, Types.TILETYPE.FOG);
+
         // Reduce arraylists of flames and bombs
         // Reset flames life if playerIdx > -1, players don't know this information
-        _reduceHiddenList(flames, copy.flames, avatarPosition, range);
-        _reduceHiddenList(bombs, copy.bombs, avatarPosition, range);
+        _reduceHiddenList(flames, copy.flames, vision);
+        _reduceHiddenList(bombs, copy.bombs, vision);
         copy.aliveAgents = findAliveAgents(copy.agents);
 
         // Finally construct the main components of observations
-        copy.bombBlastStrength = new int[size][size];
-        copy.bombLife = new int[size][size];
+        copy.buildBombGrids();
+    }
+
+    /**
+     * Makes a copy of this model with nothing hidden, sharing with it the grids and the lists of bombs and flames
+     * instead of copying them. Both models copy the shared data the first time they write to it, so copies that are
+     * only observed, or stepped a few times, don't pay for copying everything up front.
+     * Agents are always copied, as game states keep references to them.
+     * @param copy - copy of the forward model that should be filled in.
+     */
+    private void shareState(ForwardModel copy) {
+        sharedState = true;
+        copy.sharedState = true;
+
+        copy.board = board;
+        copy.powerups = powerups;
+        copy.bombs = bombs;
+        copy.flames = flames;
+        copy.resetSharedObjects = true;  // Flames life and bombs velocity and owner are not known by the copy
+
+        copy.agents = deepCopy(agents);
+        copy.aliveAgents = findAliveAgents(copy.agents);
+
+        if (bombGridsSynced) {
+            copy.bombBlastStrength = bombBlastStrength;
+            copy.bombLife = bombLife;
+            copy.bombGridsSynced = true;
+            copy.hashedCells = hashedCells;
+            copy.gridHash = gridHash;
+        } else {
+            copy.buildBombGrids();
+        }
+    }
+
+    /**
+     * Creates new bomb blast strength and life grids from the list of bombs.
+     */
+    private void buildBombGrids() {
+        bombBlastStrength = new int[size][size];
+        bombLife = new int[size][size];
 
-        for(GameObject bombObject : copy.bombs){
+        for(GameObject bombObject : bombs){
             Bomb bomb = (Bomb) bombObject;
             Vector2d position = bomb.getPosition();
-            copy.bombBlastStrength[position.y][position.x] = bomb.getBlastStrength();
-            copy.bombLife[position.y][position.x] = bomb.getLife();
+            bombBlastStrength[position.y][position.x] = bomb.getBlastStrength();
+            bombLife[position.y][position.x] = bomb.getLife();
         }
+        bombGridsSynced = true;
+    }
+
+    /**
+     * Prepares the grids to be handed out of the engine, where they may be written to (see GameState.getBoard()):
+     * copies them if they are shared with other models, and drops the hash of the grids and the danger map, which
+     * writes from outside the engine wouldn't update.
+     */
+    void handOutGrids() {
+        ensureOwnState();
+        hashedCells = null;
+        dangerValid = false;
+    }
+
+    /**
+     * Copies the grids, bombs and flames that this model shares with others, if any, so that it can modify them.
+     * Must be called before any write to the grids or to the bomb and flame lists, and before handing the grids out
+     * of the engine, where they may be written to (see GameState.getBoard()).
+     */
+    void ensureOwnState() {
+        if (!sharedState)
+            return;
+
+        board = copyGrid(board);
+        powerups = copyGrid(powerups);
+        bombBlastStrength = copyGrid(bombBlastStrength);
+        bombLife = copyGrid(bombLife);
+        if (hashedCells != null) {
+            hashedCells = hashedCells.copy();
+        }
+
+        ArrayList<GameObject> sharedBombs = bombs;
+        ArrayList<GameObject> sharedFlames = flames;
+        bombs = new ArrayList<>(sharedBombs.size());
+        flames = new ArrayList<>(sharedFlames.size());
+        if (resetSharedObjects) {
+            _reduceHiddenList(sharedBombs, bombs, null);
+            _reduceHiddenList(sharedFlames, flames, null);
+        } else {
+            for (GameObject b : sharedBombs) bombs.add(b.copy());
+            for (GameObject f : sharedFlames) flames.add(f.copy());
+        }
+
+        sharedState = false;
+        resetSharedObjects = false;
+    }
+
+    private static Types.TILETYPE[][] copyGrid(Types.TILETYPE[][] grid) {
+        Types.TILETYPE[][] copy = new Types.TILETYPE[grid.length][];
+        for (int i = 0; i < grid.length; i++) {
+            copy[i] = grid[i].clone();
+        }
+        return copy;
+    }
+
+    private static int[][] copyGrid(int[][] grid) {
+        int[][] copy = new int[grid.length][];
+        for (int i = 0; i < grid.length; i++) {
+            copy[i] = grid[i].clone();
+        }
+        return copy;
     }
 
     @Override
@@ -1149,6 +1964,10 @@ public class ForwardModel {
         }
         ForwardModel fm = (ForwardModel)o;
 
+        // Shared objects may not be reset yet
+        if (resetSharedObjects) ensureOwnState();
+        if (fm.resetSharedObjects) fm.ensureOwnState();
+
         if (size != fm.size)
             return false;
         if (!Types.TILETYPE.boardEquals(powerups, fm.powerups))
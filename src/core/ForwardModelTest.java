@@ -5,14 +5,18 @@ import org.junit.jupiter.api.Test;
 import players.DoNothingPlayer;
 import players.Player;
 import players.SimonSaysPlayer;
+import utils.EventsStatistics;
 import utils.Types;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Queue;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static utils.Types.VERBOSE;
 
 class ForwardModelTest {
@@ -1158,5 +1162,138 @@ class ForwardModelTest {
         assertEquals(4, game.getGameState().getBoard()[6][6].getKey());
     }
 
+    /**
+     * Tests that the events logged by the true model blame the owners of the flames. Player 2's bomb explodes and sets
+     * off player 3's bomb on the same tick, whose flames kill player 0. On the next tick, after a copy of the model
+     * shared its state, players 1 and 3 walk into the flames: player 1 into player 2's, and player 3 into a cell in
+     * the flames of both bombs.
+     */
+    @Test
+    void eventsBlameFlameOwners() {
+        boolean logging = Types.LOGGING_STATISTICS;
+        Types.LOGGING_STATISTICS = true;
+        try {
+            int[][] intBoard = new int[11][11];
+            intBoard[5][6] = Types.TILETYPE.AGENT0.getKey();
+            intBoard[6][2] = Types.TILETYPE.AGENT1.getKey();
+            intBoard[9][9] = Types.TILETYPE.AGENT2.getKey();
+            intBoard[4][2] = Types.TILETYPE.AGENT3.getKey();
+            ForwardModel model = new ForwardModel(seed, intBoard, Types.GAME_MODE.FFA);
+            model.setTrueModel();
+            model.init(seed, intBoard.length, Types.GAME_MODE.FFA, intBoard, null);  // Again, to log as the true model
+            model.addBomb(3, 5, 2, 1, 2, true);
+            model.addBomb(4, 5, 3, 9, 3, true);
+
+            Types.ACTIONS stop = Types.ACTIONS.ACTION_STOP;
+            model.next(new Types.ACTIONS[]{stop, stop, stop, stop}, 0);
+            model.copy(-1);
+            model.next(new Types.ACTIONS[]{stop, Types.ACTIONS.ACTION_RIGHT, stop, Types.ACTIONS.ACTION_DOWN}, 1);
+
+            EventsStatistics es = model.getEventsStatistics();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < es.getNumEvents(); i++) {
+                es.formatEvent(i, sb);
+            }
+            assertEquals("0 | [2]'s bomb exploded at (3, 5)\n" +
+                    "0 | [3]'s bomb exploded at (4, 5) triggered by [2]\n" +
+                    "0 | [0] died at (6, 5) by [3]'s flame(s)\n" +
+                    "1 | [1] died at (3, 6) by [2]'s flame(s)\n" +
+                    "1 | [3] died at (2, 5) by [2][3]'s flame(s)\n", sb.toString());
+            assertArrayEquals(new int[]{0, 0, 1, 0}, es.bombsTriggered);
+        } finally {
+            Types.LOGGING_STATISTICS = logging;
+        }
+    }
+
+    /**
+     * Ticking the model with moving agents and no bombs should not generate garbage: the only allocations left
+     * are the new positions of the agents that moved.
+     */
+    @Test
+    void tickAllocationRate() {
+        Types.ACTIONS[][] actions = new Types.ACTIONS[][]{
+                {Types.ACTIONS.ACTION_UP, Types.ACTIONS.ACTION_DOWN, Types.ACTIONS.ACTION_LEFT, Types.ACTIONS.ACTION_RIGHT},
+                {Types.ACTIONS.ACTION_DOWN, Types.ACTIONS.ACTION_UP, Types.ACTIONS.ACTION_RIGHT, Types.ACTIONS.ACTION_LEFT},
+        };
+        ForwardModel model = new ForwardModel(seed, DEFAULT_BOARD, Types.GAME_MODE.FFA);
+        long bytesPerTick = bytesAllocatedPerTick(model, actions);
+
+        // 4 moving agents allocate 4 new positions (24 bytes each) per tick. Some iterators may survive if the JIT
+        // compiler doesn't inline every loop, but the scratch buffers must keep this well below the ~6KB per tick
+        // that used to be allocated.
+        assertTrue(bytesPerTick <= 1024, "Too many bytes allocated per tick: " + bytesPerTick);
+    }
+
+    /**
+     * Ticking the model with bombs exploding and flames burning should not generate garbage either: bombs and flames
+     * are recycled, so the only allocations left are the new positions of the agents that moved.
+     */
+    @Test
+    void tickAllocationRateWithBombs() {
+        // Every agent plants a bomb, steps diagonally away from it, waits for the bomb to explode and its flames to
+        // go out, and steps back to do it again.
+        ArrayList<Types.ACTIONS> cycle = new ArrayList<>();
+        cycle.add(Types.ACTIONS.ACTION_BOMB);
+        cycle.add(Types.ACTIONS.ACTION_RIGHT);
+        cycle.add(Types.ACTIONS.ACTION_DOWN);
+        for (int i = 0; i < Types.BOMB_LIFE + Types.FLAME_LIFE + 2; i++) {
+            cycle.add(Types.ACTIONS.ACTION_STOP);
+        }
+        cycle.add(Types.ACTIONS.ACTION_UP);
+        cycle.add(Types.ACTIONS.ACTION_LEFT);
+
+        Types.ACTIONS[][] actions = new Types.ACTIONS[cycle.size()][Types.NUM_PLAYERS];
+        for (int t = 0; t < actions.length; t++) {
+            Arrays.fill(actions[t], cycle.get(t));
+        }
+        ForwardModel model = new ForwardModel(seed, DEFAULT_BOARD, Types.GAME_MODE.FFA);
+
+        // Check that the scenario plants bombs and burns flames without killing anyone
+        boolean sawBomb = false, sawFlames = false;
+        for (int t = 0; t < actions.length; t++) {
+            model.next(actions[t], 0);
+            for (Types.TILETYPE[] row : model.getBoard()) {
+                for (Types.TILETYPE tile : row) {
+                    sawBomb |= tile == Types.TILETYPE.BOMB;
+                    sawFlames |= tile == Types.TILETYPE.FLAMES;
+                }
+            }
+        }
+        assertTrue(sawBomb && sawFlames);
+        assertEquals(Types.NUM_PLAYERS, model.getAliveAgents().size());
+
+        long bytesPerTick = bytesAllocatedPerTick(model, actions);
+        assertEquals(Types.NUM_PLAYERS, model.getAliveAgents().size());
 
-}
\ No newline at end of file
+        // 4 agents move in 4 of every 22 ticks, allocating ~17 bytes per tick for their new positions. Exploding bombs
+        // and burning flames must not add to it, as they are recycled and iterated without iterators.
+        assertTrue(bytesPerTick <= 64, "Too many bytes allocated per tick: " + bytesPerTick);
+    }
+
+    /**
+     * Measures the memory allocated by ticking a model, after warming it up.
+     * @param model - model to tick.
+     * @param actions - actions of each tick, repeated in a cycle starting with the first one.
+     * @return bytes allocated per tick, on average.
+     */
+    private long bytesAllocatedPerTick(ForwardModel model, Types.ACTIONS[][] actions) {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(mxBean.isThreadAllocatedMemorySupported() && mxBean.isThreadAllocatedMemoryEnabled());
+
+        // Warm up, so that the JIT compiler removes short-lived iterators
+        int nWarmUpTicks = 100000;
+        for (int i = 0; i < nWarmUpTicks; i++) {
+            model.next(actions[i % actions.length], 0);
+        }
+
+        int nTicks = 50000;
+        long threadId = Thread.currentThread().getId();
+        long before = mxBean.getThreadAllocatedBytes(threadId);
+        for (int i = nWarmUpTicks; i < nWarmUpTicks + nTicks; i++) {
+            model.next(actions[i % actions.length], 0);
+        }
+        return (mxBean.getThreadAllocatedBytes(threadId) - before) / nTicks;
+    }
+}
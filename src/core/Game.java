@@ -6,7 +6,11 @@ import players.Player;
 import players.SimonSaysPlayer;
 import utils.*;
 
+import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static utils.Types.*;
 import static utils.Types.VISUALS;
@@ -20,7 +24,9 @@ public class Game {
     // State of the game (objects, ticks, etc).
     private GameState gs;
 
-    // GameState objects for players to make decisions
+    // GameState objects for players to make decisions. They're created when first needed (see getObservation()), so
+    // no copies are made for players that are no longer playing or for states nobody looks at. Null if not created.
+    // Observations of a tick are all created before any player acts, so none can see what other players did to theirs.
     private GameState[] gameStateObservations;
 
     // List of players of the game
@@ -41,13 +47,26 @@ public class Game {
     // Log flags
     public static boolean LOG_GAME = false;
 
-    // Variables for multi-threaded run 
+    // Variables for multi-threaded run. Each player has a thread that lives for the whole game.
     private Actor[] actors = new Actor[NUM_PLAYERS];
     private Thread[] threads = new Thread[NUM_PLAYERS];
 
+    // Creates the threads of the actors. If null, actors run on daemon platform threads.
+    private ThreadFactory threadFactory = null;
+
+    // Time the game waits at its end for players still deciding after missing a deadline, in ms. Players that aren't
+    // done by then are abandoned, so that a player that never returns can't hold up the game (see terminate()).
+    private static final long LATE_ACTORS_TIMEOUT_MS = 1000;
+
     //Counts how many time a player did overtime
     private int[] playerOvertimes = new int[NUM_PLAYERS];
 
+    // Repetition number of this game, used to name its log files. -1 to use the REP counters of the logs.
+    private int repetition = -1;
+
+    // Stream where the results of the game are printed.
+    private PrintStream out = System.out;
+
     /**
      * Constructor of the game
      * @param seed Seed for the game (used only for board generation)
@@ -134,7 +153,8 @@ public class Game {
     }
 
     /**
-     * @return an exact copy of this game, including players, current game state and state observations.
+     * @return an exact copy of this game, including players and current game state. State observations of the copy
+     * are created from its own state when needed.
      */
     public Game copy() {
         Game copy = new Game(gs);
@@ -143,11 +163,6 @@ public class Game {
             copyPlayers.add(player.copy());
         }
         copy.players = copyPlayers;
-        copy.gameStateObservations = new GameState[gameStateObservations.length];
-        for (int i = 0; i < gameStateObservations.length; i++) {
-            if (gameStateObservations[i] != null)
-                copy.gameStateObservations[i] = gameStateObservations[i].copy();
-        }
         if (gameLog != null)
             copy.gameLog = gameLog.copy();
         return copy;
@@ -179,6 +194,38 @@ public class Game {
         return gs.copy(playerIdx);
     }
 
+    /**
+     * Returns the observation of the current tick for a player, creating it the first time it's needed.
+     * @param playerIdx index of the player.
+     * @return the game state as seen by the player.
+     */
+    private GameState getObservation(int playerIdx) {
+        if (gameStateObservations[playerIdx] == null) {
+            gameStateObservations[playerIdx] = getGameState(playerIdx);
+        }
+        return gameStateObservations[playerIdx];
+    }
+
+    /**
+     * Creates the observations of the current tick for all players still playing. Called before asking any player
+     * for an action, so all observations are taken from the state of the game as the tick started.
+     */
+    private void createObservations() {
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            if (isPlaying(i))
+                getObservation(i);
+        }
+    }
+
+    /**
+     * Checks if a player is still playing, without creating its observation.
+     * @param playerIdx index of the player.
+     * @return true if the avatar of the player has no result yet.
+     */
+    private boolean isPlaying(int playerIdx) {
+        return ((Avatar) gs.getAgents()[playerIdx]).getWinner() == Types.RESULT.INCOMPLETE;
+    }
+
     /**
      * Runs this game once, without visuals
      * @return the results of this game.
@@ -243,7 +290,7 @@ public class Game {
         // Save logged game
         if (LOG_GAME) {
             if (SAVE_GAME_REPLAY) {
-                gameLog.serializeJSON(gameIdStr);
+                gameLog.serializeJSON(gameIdStr, repetition >= 0 ? repetition : GameLog.REP);
             } else {
                 gameLog.serialize();
             }
@@ -301,18 +348,21 @@ public class Game {
      * Get player actions, 1 for each avatar still in the game. Called at every frame.
      */
     private Types.ACTIONS[] getAvatarActions() {
+        createObservations();
+
         // Get player actions, 1 for each avatar still in the game
         Types.ACTIONS[] actions = new Types.ACTIONS[NUM_PLAYERS];
         for (int i = 0; i < NUM_PLAYERS; i++) {
             Player p = players.get(i);
 
             // Check if this player is still playing
-            if (gameStateObservations[i].winner() == Types.RESULT.INCOMPLETE) {
+            if (isPlaying(i)) {
+                GameState obs = getObservation(i);
 
                 ElapsedCpuTimer ect = new ElapsedCpuTimer();
                 ect.setMaxTimeMillis(Types.DECISION_TIME_LIMIT);
 
-                actions[i] = p.act(gameStateObservations[i]);
+                actions[i] = p.act(obs);
 
                 long elapsedTime = ect.elapsedMillis();
                 if(CHECK_DECISION_TIME && elapsedTime > DECISION_TIME_LIMIT)
@@ -336,40 +386,113 @@ public class Game {
      * Get player actions, 1 for each avatar still in the game, using separate threads. Called at every frame.
      */
     private Types.ACTIONS[] getAvatarActionsInSeparateThreads() throws InterruptedException {
-        //
+        createObservations();
+
+        // Hand the observations to the actors of the players still playing, who decide at the same time
         Types.ACTIONS[] actions = new Types.ACTIONS[NUM_PLAYERS];
+        boolean[] requested = new boolean[NUM_PLAYERS];
+        boolean enforceDeadline = CHECK_DECISION_TIME && ENFORCE_DECISION_TIME;
+        long deadline = System.nanoTime() + DECISION_TIME_LIMIT * 1000000L;
         for (int i = 0; i < NUM_PLAYERS; i++) {
             Player p = players.get(i);
 
             // Check if this player is still playing
-            if (gameStateObservations[i].winner() == Types.RESULT.INCOMPLETE) {
-                actors[i].player = p;
-                actors[i].gamestate = gameStateObservations[i];
-                threads[i] = new Thread(actors[i]);
-                threads[i].start();
+            if (isPlaying(i)) {
+                if (actors[i].isBusy()) {
+                    // Still deciding the action of a previous tick, so this tick's deadline is missed too, and the
+                    // player has no action for it yet
+                    missedDeadline(i);
+                    actions[i] = ACTIONS.ACTION_STOP;
+                } else {
+                    actors[i].requestAction(p, getObservation(i));
+                    requested[i] = true;
+                }
             } else {
-                threads[i] = null;
                 // This player is dead and action will be ignored
                 actions[i] = Types.ACTIONS.ACTION_STOP;
             }
         }
 
-        killThreads();
-
         for (int i = 0; i < NUM_PLAYERS; i++) {
-            if (threads[i] != null)
-                actions[i] = actors[i].getValue();
+            if (requested[i]) {
+                if (enforceDeadline) {
+                    actions[i] = actors[i].awaitAction(deadline);
+                    if (actions[i] == null) {
+                        missedDeadline(i);
+                        actions[i] = actionAtDeadline(i);
+                    }
+                } else {
+                    actions[i] = actors[i].awaitAction();
+                }
+            }
         }
 
         return actions;
     }
 
     /**
-     * Creates actor objects for the players.
+     * Counts a decision of a player that was not ready by its deadline, when deadlines are enforced.
+     * @param i index of the player.
+     */
+    private void missedDeadline(int i) {
+        if(VERBOSE)
+            System.out.println("Player " + players.get(i).getPlayerID() + " did not decide in time (" + DECISION_TIME_LIMIT + "ms).");
+        playerOvertimes[i]++;
+    }
+
+    /**
+     * Action of a player that missed the deadline of the current tick: the action the player gives at the deadline
+     * (see Player.getActionAtDeadline()), or STOP. The player may still be deciding in its actor's thread.
+     * @param i index of the player.
+     * @return the action to play.
+     */
+    private Types.ACTIONS actionAtDeadline(int i) {
+        Types.ACTIONS action = null;
+        try {
+            action = players.get(i).getActionAtDeadline();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        return action != null ? action : ACTIONS.ACTION_STOP;
+    }
+
+    /**
+     * Waits for the actors still deciding after missing a deadline to finish, so that the players can be used from
+     * the game's thread again. Late actors have been interrupted, so players that check for it end soon. Waits for
+     * LATE_ACTORS_TIMEOUT_MS at most, actors not done by then are still deciding late (see isDecidingLate()).
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void awaitLateActors() throws InterruptedException {
+        long deadline = System.nanoTime() + LATE_ACTORS_TIMEOUT_MS * 1000000L;
+        for (Actor actor : actors) {
+            if (actor != null)
+                actor.awaitLateAction(deadline);
+        }
+    }
+
+    /**
+     * @param i index of the player.
+     * @return true if the player is still deciding, in its actor's thread, an action that missed its deadline.
+     */
+    private boolean isDecidingLate(int i) {
+        return actors[i] != null && actors[i].isBusy();
+    }
+
+    /**
+     * Creates actor objects for the players, and starts their threads. Threads wait for observations until they are
+     * killed with killThreads().
      */
     public void createActors() {
-        for (int i = 0; i < NUM_PLAYERS; i++)
+        for (int i = 0; i < NUM_PLAYERS; i++) {
             actors[i] = new Actor();
+            if (threadFactory != null) {
+                threads[i] = threadFactory.newThread(actors[i]);
+            } else {
+                threads[i] = new Thread(actors[i], "Actor " + i);
+                threads[i].setDaemon(true);  // Don't keep the JVM alive if a game is abandoned
+            }
+            threads[i].start();
+        }
     }
 
     /**
@@ -378,20 +501,27 @@ public class Game {
      */
     private void killThreads() throws InterruptedException {
         for (int i = 0; i < NUM_PLAYERS; i++) {
-            if (threads[i] != null && threads[i].isAlive())
+            if (actors[i] != null)
+                actors[i].stop();
+        }
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            // Actors still deciding after missing a deadline were interrupted, and end when they're done. The ones
+            // abandoned at the end of the game aren't waited for.
+            if (threads[i] != null && !isDecidingLate(i))
                 threads[i].join();
+            threads[i] = null;
         }
     }
 
     /**
-     * Updates the state observations for all players.
+     * Updates the state observations for all players, after the game state changes.
      */
     private void updateAssignedGameStates() {
+        // Observations of the previous tick are dropped, and created again when first needed
         if (gameStateObservations == null) {
             gameStateObservations = new GameState[NUM_PLAYERS];
-        }
-        for (int i = 0; i < NUM_PLAYERS; i++) {
-            gameStateObservations[i] = getGameState(i);
+        } else {
+            Arrays.fill(gameStateObservations, null);
         }
     }
 
@@ -414,7 +544,8 @@ public class Game {
         if (gameMode.equals(GAME_MODE.TEAM_RADIO)){
             for (int i = 0; i < NUM_PLAYERS; i++) {
                 int teammateIdx = getGameConfig().getTeammates(GAME_MODE.TEAM_RADIO, i + TILETYPE.AGENT0.getKey())[0].getKey() - TILETYPE.AGENT0.getKey();
-                if (gameStateObservations[teammateIdx].winner() == RESULT.INCOMPLETE)
+                // Players still deciding late can't be asked for messages from this thread, they send none
+                if (isPlaying(teammateIdx) && !isDecidingLate(teammateIdx))
                     gs.setMessage(i, players.get(teammateIdx).getMessage());
                 else
                     gs.setMessage(i, new int[MESSAGE_LENGTH]); // default case
@@ -423,11 +554,20 @@ public class Game {
     }
 
     /**
-     * This method terminates the game, assigning the winner/result state to all players.
+     * This method terminates the game, assigning the winner/result state to all players. Players still deciding late
+     * after LATE_ACTORS_TIMEOUT_MS are abandoned: they're not given their results, as they may still be using their
+     * state in another thread.
      * @return an array of result states for all players.
      */
     @SuppressWarnings("UnusedReturnValue")
     private Types.RESULT[] terminate() {
+        // Players still deciding in other threads must be done before they're given their results
+        try {
+            awaitLateActors();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         //Build the results array
         GameObject[] agents = gs.getAgents();
         Types.RESULT[] results = new Types.RESULT[NUM_PLAYERS];
@@ -439,25 +579,27 @@ public class Game {
         // Call all agents' end-of-game method for post-processing. Agents receive their final reward.
         double[] finalRewards = getGameConfig().getRewards(getTick(), results);
         for (int i = 0; i < NUM_PLAYERS; i++) {
+            if (isDecidingLate(i))
+                continue;  // Abandoned
             Player p = players.get(i);
             p.result(finalRewards[i]);
         }
 
         if (LOGGING_STATISTICS)
-            gs.model.saveEventsStatistics(gameIdStr, seed);
+            gs.model.saveEventsStatistics(gameIdStr, seed, repetition >= 0 ? repetition : EventsStatistics.REP);
 
 //        if (VERBOSE) {
 //        System.out.println("GameOver: " + Arrays.toString(results));
 //        System.out.println(Arrays.toString(results));
 
-        System.out.print("[");
+        out.print("[");
         for(int i = 0; i < results.length; ++i)
         {
-            System.out.print(results[i] + (" (" + playerOvertimes[i] + ")"));
+            out.print(results[i] + (" (" + playerOvertimes[i] + ")"));
             if(i == results.length-1)
-                System.out.println("]");
+                out.println("]");
             else
-                System.out.print(", ");
+                out.print(", ");
         }
 
 //        }
@@ -479,8 +621,8 @@ public class Game {
      * @return board of the game
      */
     public Types.TILETYPE[][] getBoard(int pIdx) {
-        if (pIdx >= 0 && gameStateObservations[pIdx] != null) {
-            return gameStateObservations[pIdx].getBoard();
+        if (pIdx >= 0 && gameStateObservations != null) {
+            return getObservation(pIdx).getBoard();
         }
         return gs.getBoard();
     }
@@ -499,8 +641,8 @@ public class Game {
      * @return An array with all avatars that still alive.
      */
     public ArrayList<GameObject> getAliveAvatars(int pIdx) {
-        if (pIdx >= 0 && gameStateObservations[pIdx] != null) {
-            return gameStateObservations[pIdx].model.getAliveAgents();
+        if (pIdx >= 0 && gameStateObservations != null) {
+            return getObservation(pIdx).model.getAliveAgents();
         }
         return gs.model.getAliveAgents();
     }
@@ -527,8 +669,8 @@ public class Game {
      * @return array with all avatars of this game
      */
     public GameObject[] getAvatars(int pIdx) {
-        if (pIdx >= 0 && gameStateObservations[pIdx] != null) {
-            return gameStateObservations[pIdx].model.getAgents();
+        if (pIdx >= 0 && gameStateObservations != null) {
+            return getObservation(pIdx).model.getAgents();
         }
         return gs.model.getAgents();
     }
@@ -617,7 +759,37 @@ public class Game {
     public int[] getPlayerOvertimes() {return playerOvertimes;}
 
     /**
-     * Actor class for running multi-threaded games. Each player is an Actor.
+     * Sets the repetition number of this game, used to name its log files instead of the static REP counters of
+     * GameLog and EventsStatistics, so games running at the same time don't overwrite each other's logs.
+     * @param repetition repetition number, -1 to use the static counters.
+     */
+    public void setRepetition(int repetition) {
+        this.repetition = repetition;
+    }
+
+    /**
+     * Sets the stream where the results of the game are printed when it ends. System.out by default.
+     * @param out stream to print to.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets the factory of the threads the players decide in when the game is run with separate threads, e.g. a
+     * factory of virtual threads when many games are played at the same time (see Tournament.setThreadFactory()).
+     * @param threadFactory factory of the threads of the actors, null for daemon platform threads (default).
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Actor class for running multi-threaded games. Each player is an Actor, with a thread that lives for the whole
+     * game: on every tick, it's handed the observation of its player with requestAction(), and the game waits for
+     * the action with awaitAction(). If deadlines are enforced (see Types.ENFORCE_DECISION_TIME), the game stops
+     * waiting at the deadline and interrupts the thread, which players may check to stop deciding early. The actor
+     * is busy until its player returns, and the action returned late is discarded.
      */
     public class Actor implements Runnable {
 
@@ -625,6 +797,20 @@ public class Game {
         public Player player;
         public GameState gamestate;
 
+        // Signals from the game to the actor (new observation, or stop) and back (action ready).
+        private final Semaphore observationReady = new Semaphore(0);
+        private final Semaphore actionReady = new Semaphore(0);
+        private volatile boolean stopped = false;
+
+        // True while the player decides, and thread deciding. Guarded by the actor, so interrupts sent by the game
+        // at the deadline can't reach the thread after the decision.
+        private boolean deciding = false;
+        private Thread decidingThread;
+
+        // True if the last action requested was not ready by its deadline, and may still be being decided.
+        // Only accessed by the game.
+        private boolean late = false;
+
         Actor() {
 //            this.player = player;
 //            this.gamestate = gamestate;
@@ -632,7 +818,100 @@ public class Game {
 
         @Override
         public void run() {
-            action = player.act(this.gamestate);
+            try {
+                while (true) {
+                    observationReady.acquire();
+                    if (stopped)
+                        return;
+                    synchronized (this) {
+                        deciding = true;
+                        decidingThread = Thread.currentThread();
+                    }
+                    try {
+                        action = player.act(this.gamestate);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        action = ACTIONS.ACTION_STOP;
+                    }
+                    synchronized (this) {
+                        deciding = false;
+                        Thread.interrupted();  // Clear the interrupt of a missed deadline, if any
+                    }
+                    actionReady.release();
+                }
+            } catch (InterruptedException e) {
+                // Game is over
+            }
+        }
+
+        /**
+         * Hands an observation to the actor, which starts deciding its action.
+         * @param player player that decides.
+         * @param gamestate observation of the player.
+         */
+        void requestAction(Player player, GameState gamestate) {
+            this.player = player;
+            this.gamestate = gamestate;
+            observationReady.release();
+        }
+
+        /**
+         * Waits for the actor to decide the action requested with requestAction().
+         * @return the action.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        Types.ACTIONS awaitAction() throws InterruptedException {
+            actionReady.acquire();
+            return action;
+        }
+
+        /**
+         * Waits for the actor to decide the action requested with requestAction(), until a deadline. If the action
+         * is not ready by then, the thread of the actor is interrupted and the actor stays busy until it's done.
+         * @param deadline deadline, as given by System.nanoTime().
+         * @return the action, or null if it was not ready by the deadline.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        Types.ACTIONS awaitAction(long deadline) throws InterruptedException {
+            if (actionReady.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                return action;
+
+            late = true;
+            synchronized (this) {
+                if (deciding)
+                    decidingThread.interrupt();
+            }
+            return null;
+        }
+
+        /**
+         * Waits for the actor to decide an action that was not ready by its deadline, if any, and discards it. If
+         * it's not decided by the given time, the actor stays busy.
+         * @param deadline time to stop waiting, as given by System.nanoTime().
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        void awaitLateAction(long deadline) throws InterruptedException {
+            if (late && actionReady.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                late = false;
+            }
+        }
+
+        /**
+         * @return true if the actor is still deciding an action that was not ready by its deadline.
+         */
+        boolean isBusy() {
+            if (late && actionReady.tryAcquire()) {
+                late = false;  // Done, the late action is discarded
+            }
+            return late;
+        }
+
+        /**
+         * Makes the thread of the actor end once it has finished its current decision, if any.
+         */
+        void stop() {
+            stopped = true;
+            observationReady.release();
         }
 
         public Types.ACTIONS getValue() {
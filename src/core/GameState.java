@@ -7,6 +7,7 @@ import utils.Types;
 import utils.Vector2d;
 
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -16,6 +17,9 @@ import static utils.Types.*;
 @SuppressWarnings("unused")
 public class GameState {
 
+    // Time to detonation of cells that no bomb reaches, see getTimeToDetonation().
+    public static final int NO_DANGER = Integer.MAX_VALUE;
+
     // Number of actions available to agents - invariable
     private int nActions = NUM_ACTIONS;
 
@@ -43,6 +47,21 @@ public class GameState {
     // Game mode being played
     Types.GAME_MODE gameMode;
 
+    // Journal of previous states, to undo calls to next(). Null if undo is not enabled. Never copied.
+    private UndoJournal journal;
+
+    // Legal and safe action masks of the player in control of this state, as 'safe << 8 | legal'. Computed on first
+    // use and cleared whenever the state changes or its grids are handed out (see getBoard()), -1 if not computed.
+    // Never copied.
+    private int actionMasks = -1;
+
+    // Cached values of the actions and game modes (values() allocates a new array on each call).
+    private static final Types.ACTIONS[] ALL_ACTIONS = Types.ACTIONS.values();
+    private static final Types.GAME_MODE[] GAME_MODES = Types.GAME_MODE.values();
+
+    // Version of the snapshot format, written at the start of every snapshot (see writeSnapshot()).
+    private static final int SNAPSHOT_VERSION = 1;
+
     /**
      * Constructor, first thing to call. Creates a GameState object with some information.
      * @param seed - random seed to be used in generating the board.
@@ -186,8 +205,14 @@ public class GameState {
 
         if (tick < Types.MAX_GAME_TICKS)
         {
+            if (journal != null) {
+                UndoJournal.Entry entry = journal.push();
+                entry.gsTick = tick;
+                model.saveUndo(entry);
+            }
             model.next(actions, tick);
             tick++;
+            actionMasks = -1;
             if (tick == Types.MAX_GAME_TICKS)
                 Types.getGameConfig().processTimeout(gameMode, getAgents(), getAliveAgents());
 
@@ -196,6 +221,50 @@ public class GameState {
 
         return false;
     }
+
+    /**
+     * Enables or disables undo. While enabled, every call to next() is recorded and can be reverted with undo(),
+     * which allows search algorithms to walk down and back up a tree with a single state instead of copying it.
+     * Disabling undo discards all recorded ticks.
+     * @param enabled true to record ticks, false otherwise.
+     */
+    public void setUndoEnabled(boolean enabled) {
+        if (enabled && journal == null) {
+            journal = new UndoJournal();
+        } else if (!enabled) {
+            journal = null;
+        }
+        model.setRecycleObjects(!enabled);  // Recorded ticks keep references to dead bombs and flames
+    }
+
+    /**
+     * Reverts the last call to next() recorded since undo was enabled.
+     * @return true if a tick was undone, false if there was nothing to undo.
+     */
+    public boolean undo() {
+        UndoJournal.Entry entry = journal != null ? journal.pop() : null;
+        if (entry == null)
+            return false;
+        model.restoreUndo(entry);
+        tick = entry.gsTick;
+        actionMasks = -1;
+        return true;
+    }
+
+    /**
+     * Reverts all calls to next() recorded since undo was enabled.
+     */
+    public void undoAll() {
+        while (undo()) ;
+    }
+
+    /**
+     * @return the number of ticks that can be undone.
+     */
+    public int getUndoDepth() {
+        return journal != null ? journal.depth() : 0;
+    }
+
     /**
      * @return a copy of the current game state.
      */
@@ -203,21 +272,127 @@ public class GameState {
         return copy(-1);  // No reduction happening if no index specified
     }
 
+    /**
+     * @return the number of bytes that writeSnapshot() takes to write this state.
+     */
+    public int getSnapshotSize() {
+        int messageSize = 0;
+        if (message != null) {
+            for (int[] msg : message) {
+                messageSize += 1 + msg.length * 4;
+            }
+        }
+        return 19 + messageSize + model.getSnapshotSize();
+    }
+
+    /**
+     * Writes this state into a buffer in a compact binary format, which restores it with readSnapshot() or
+     * fromSnapshot(). A snapshot holds the full state of the game (grids, bombs with their velocities, flames, agents,
+     * tick and messages) as flat values, so it can be used to store states without keeping object graphs, to copy
+     * them into states that are reused, or to send them to other processes. Values are written in the byte order of
+     * the buffer, and the undo journal and event statistics are not included.
+     * @param buffer - buffer to write into, from its current position. Must have getSnapshotSize() bytes remaining,
+     *               i.e. 'ByteBuffer.wrap(new byte[gs.getSnapshotSize()])'.
+     */
+    public void writeSnapshot(ByteBuffer buffer) {
+        buffer.putInt(SNAPSHOT_VERSION);
+        buffer.putLong(seed);
+        buffer.putInt(tick);
+        buffer.put((byte) gameMode.ordinal());
+        buffer.put((byte) playerIdx);
+        buffer.put((byte) (message != null ? message.length : 0));
+        if (message != null) {
+            for (int[] msg : message) {
+                buffer.put((byte) msg.length);
+                for (int m : msg) {
+                    buffer.putInt(m);
+                }
+            }
+        }
+        model.writeSnapshot(buffer);
+    }
+
+    /**
+     * Restores this state, in place, from a snapshot written by writeSnapshot(). The grids and objects of the
+     * forward model are reused when possible, so restoring snapshots of games with the same board size into the
+     * same state is close to a plain copy of the bytes. Recorded undo ticks are discarded.
+     * @param buffer - buffer to read from, from its current position.
+     */
+    public void readSnapshot(ByteBuffer buffer) {
+        int version = buffer.getInt();
+        if (version != SNAPSHOT_VERSION)
+            throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+
+        seed = buffer.getLong();
+        tick = buffer.getInt();
+        gameMode = GAME_MODES[buffer.get()];
+        playerIdx = buffer.get();
+        int nMessages = buffer.get();
+        if (nMessages == 0) {
+            message = null;
+        } else if (message == null || message.length != nMessages) {
+            message = new int[nMessages][];
+        }
+        for (int i = 0; i < nMessages; i++) {
+            int length = buffer.get();
+            if (message[i] == null || message[i].length != length) {
+                message[i] = new int[length];
+            }
+            for (int j = 0; j < length; j++) {
+                message[i][j] = buffer.getInt();
+            }
+        }
+
+        if (journal != null) {
+            journal.clear();  // Recorded ticks hold references to objects that are reused now
+        }
+        if (model == null) {
+            model = new ForwardModel(size, gameMode);
+        }
+        model.readSnapshot(buffer, gameMode);
+        size = model.getBoard().length;
+        avatar = playerIdx >= 0 ? (Avatar) model.getAgents()[playerIdx] : null;
+        actionMasks = -1;
+    }
+
+    /**
+     * Creates a new state from a snapshot written by writeSnapshot().
+     * @param buffer - buffer to read from, from its current position.
+     * @return the state in the snapshot.
+     */
+    public static GameState fromSnapshot(ByteBuffer buffer) {
+        GameState gs = new GameState(0, 0, Types.GAME_MODE.FFA, false);
+        gs.readSnapshot(buffer);
+        return gs;
+    }
+
     /** GETTERS AND SETTERES **/
 
+    // The grids returned are the ones of this state, and writing to them changes it. Grids shared with other states
+    // (see ForwardModel.shareState()) are copied first, so that agents writing to their observations can't change the
+    // game or other observations. Action masks, danger map and hash computed so far are dropped, so that they are
+    // computed again from the grids as they are written to.
 
     public Types.TILETYPE[][] getBoard() {
+        handOutGrids();
         return model.getBoard();
     }
 
     public int[][] getBombBlastStrength() {
+        handOutGrids();
         return model.getBombBlastStrength();
     }
 
     public int[][] getBombLife() {
+        handOutGrids();
         return model.getBombLife();
     }
 
+    private void handOutGrids() {
+        model.handOutGrids();
+        actionMasks = -1;
+    }
+
     public int getTeam(){ return avatar.getTeam(); }
 
     public Types.TILETYPE[] getTeammates(){ return avatar.getTeammates(); }
@@ -320,52 +495,162 @@ public class GameState {
         return false;
     }
 
+    /**
+     * Returns the number of ticks until the given cell is hit by the blast of a bomb, taking into account bombs set
+     * off by the blast of others, or NO_DANGER if no bomb reaches it. Bombs are assumed not to move, and blasts to
+     * stop at the walls currently in the board. Cells on fire now are not included, see getBoard().
+     * The forward model keeps the times of all cells and only recomputes them when bombs are added, removed or moved,
+     * or walls change, so this is usually a single lookup.
+     * @param x x coordinate of the cell.
+     * @param y y coordinate of the cell.
+     * @return the time to detonation, 1 if the cell is hit in the next tick.
+     */
+    public int getTimeToDetonation(int x, int y) {
+        return model.getTimeToDetonation(x, y);
+    }
+
+    /**
+     * Returns true if the given cell is in the same row or column as a bomb, at most the bomb's blast strength away.
+     * Unlike getTimeToDetonation(), walls don't stop blasts and bombs don't set off others: this is the range the
+     * reference agents (e.g. SimplePlayer) avoid. It's kept by the forward model with the time to detonation.
+     * @param x x coordinate of the cell.
+     * @param y y coordinate of the cell.
+     * @return true if the cell is in range of a bomb.
+     */
+    public boolean isInRangeOfBomb(int x, int y) {
+        return model.isInRangeOfBomb(x, y);
+    }
+
+    /**
+     * Returns the actions that the player in control of this state can legally take, as a bitmask with bit
+     * 'action.getKey()' set for each legal action. ACTION_STOP is always legal. Moves are legal if they lead to a
+     * cell in the board that is not a wall (rigid or wooden), nor a bomb unless the player can kick. ACTION_BOMB is
+     * legal if the player has ammo and there is no bomb at its position already.
+     * The mask is computed once per state, and recomputed after the state changes or its grids are handed out.
+     * @return the legal action mask. Only ACTION_STOP is set if no player is in control or it is not in the board.
+     */
+    public int getLegalActionMask() {
+        return actionMasks() & 0xFF;
+    }
+
+    /**
+     * Returns the actions of the player in control of this state that lead to a cell in the board with no flames on
+     * it, as a bitmask with bit 'action.getKey()' set for each safe action. ACTION_STOP and ACTION_BOMB lead to the
+     * current position of the player. Safe actions need not be legal, see getLegalActionMask().
+     * The mask is computed once per state, and recomputed after the state changes or its grids are handed out.
+     * @return the safe action mask. Only ACTION_STOP is set if no player is in control or it is not in the board.
+     */
+    public int getSafeActionMask() {
+        return actionMasks() >>> 8;
+    }
+
+    private int actionMasks() {
+        if (actionMasks == -1) {
+            actionMasks = computeActionMasks();
+        }
+        return actionMasks;
+    }
+
+    private int computeActionMasks() {
+        int stop = 1 << Types.ACTIONS.ACTION_STOP.getKey();
+        Vector2d pos = avatar != null ? avatar.getPosition() : null;
+        if (pos == null)
+            return (stop << 8) | stop;
+
+        Types.TILETYPE[][] board = model.getBoard();
+        int legal = 0, safe = 0;
+        for (Types.ACTIONS action : ALL_ACTIONS) {
+            Types.DIRECTIONS dir = action.getDirection();
+            int x = pos.x + dir.x();
+            int y = pos.y + dir.y();
+            if (x < 0 || y < 0 || x >= size || y >= size)
+                continue;
+
+            int bit = 1 << action.getKey();
+            Types.TILETYPE tile = board[y][x];
+            if (tile != TILETYPE.FLAMES)
+                safe |= bit;
+
+            if (action == Types.ACTIONS.ACTION_STOP) {
+                legal |= bit;
+            } else if (action == Types.ACTIONS.ACTION_BOMB) {
+                if (avatar.getAmmo() > 0 && model.getBombBlastStrength()[pos.y][pos.x] == 0)
+                    legal |= bit;
+            } else if (tile != TILETYPE.RIGID && tile != TILETYPE.WOOD &&
+                    (tile != TILETYPE.BOMB || avatar.canKick())) {
+                legal |= bit;
+            }
+        }
+        return (safe << 8) | legal;
+    }
+
     /**
      * @return the current game tick
      */
     public int getTick() { return tick; }
 
+    /**
+     * Returns a 64-bit Zobrist hash of this state, covering the board, power-ups, bombs, flames, agents and the
+     * game tick. It is kept up to date as the state is rolled forward, so it is cheap to query on every tick, e.g.
+     * for transposition tables or to compare states of long games. Equal states have equal hashes, and hashes are
+     * the same across runs. Note that copies of a state don't know the velocity and owner of bombs or the life of
+     * flames, so they may not have the same hash as the original state.
+     * @return the hash of this state.
+     */
+    public long hash() {
+        return model.hash() ^ Zobrist.key(Zobrist.TICK, 0, tick);
+    }
 
     /* ----- Methods to insert or remove observations into the game model ----- */
 
     public void addBomb(int x, int y, int blastStrength, int bombLife, int playerIdx, boolean addToBoard) {
         model.addBomb(x, y, blastStrength, bombLife, playerIdx, addToBoard);
+        actionMasks = -1;
     }
 
     public void addFlame(int x, int y, int life) {
         model.addFlame(x, y, life);
+        actionMasks = -1;
     }
 
     public void addPowerUp(int x, int y, Types.TILETYPE type, boolean visible) {
         model.addPowerUp(x, y, type, visible);
+        actionMasks = -1;
     }
 
     public void addObject(int x, int y, Types.TILETYPE type) {
         model.addObject(x, y, type);
+        actionMasks = -1;
     }
 
     public void removeObject(int x, int y, Types.TILETYPE type, boolean onlyBoard) {
         model.removeObject(x, y, type, onlyBoard);
+        actionMasks = -1;
     }
 
     public void removePowerUp(int x, int y, Types.TILETYPE type) {
         model.removePowerUp(x, y, type);
+        actionMasks = -1;
     }
 
     public void addAgent(int x, int y, int idx) {
         model.addAgent(x, y, idx);
+        actionMasks = -1;
     }
 
     public void setAgent(int playerIdx, int x, int y, boolean canKick, int ammo, int blastStrength) {
         model.setAgent(playerIdx, x, y, canKick, ammo, blastStrength);
+        actionMasks = -1;
     }
 
     public void setBomb(int x, int y, int playerIdx, Vector2d velocity) {
         model.setBomb(x, y, playerIdx, velocity);
+        actionMasks = -1;
     }
 
     public void setFlame(int x, int y, int life) {
         model.setFlame(x, y, life);
+        actionMasks = -1;
     }
 
     public int[] getMessage(){
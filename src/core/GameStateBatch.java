@@ -0,0 +1,217 @@
+package core;
+
+import objects.Avatar;
+import objects.GameObject;
+import utils.Types;
+import utils.Vector2d;
+
+/**
+ * A structure-of-arrays view of the observations of a batch of independent games, for self-play and dataset
+ * generation: flat arrays indexed by game (and player), with the packed cells of all boards (see PackedBoard) in one
+ * contiguous array, so learners can read a whole batch without walking object graphs.
+ * This is not a batched engine. next() steps each game with its own forward model, one after the other, so it is no
+ * faster than stepping the games one by one; the arrays are a copy of the state of each game, refreshed after it's
+ * stepped.
+ */
+public class GameStateBatch {
+
+    // Number of games, size of the boards and game mode, shared by all games.
+    private final int nGames;
+    private final int size;
+    private final Types.GAME_MODE gameMode;
+
+    // Games in the batch.
+    private final GameState[] states;
+    private final PackedBoard[] packed;
+
+    // Packed cells of all boards, 'size * size' per game: cell (x, y) of game g is at 'g * size * size + y * size + x'
+    private final int[] cells;
+
+    // Game ticks and terminal flags, by game.
+    private final int[] ticks;
+    private final boolean[] terminal;
+
+    // Agent properties, 'NUM_PLAYERS' per game: agent p of game g is at 'g * NUM_PLAYERS + p'.
+    // Positions are -1 for agents no longer in the board. Results are ordinals of Types.RESULT.
+    private final int[] agentX, agentY;
+    private final int[] ammo, blastStrength;
+    private final boolean[] canKick;
+    private final int[] results;
+
+    /**
+     * Creates a batch of new games, one per seed given.
+     * @param seeds - seeds used to generate the board of each game.
+     * @param size - size of the boards.
+     * @param gameMode - game mode played in all games.
+     */
+    public GameStateBatch(long[] seeds, int size, Types.GAME_MODE gameMode) {
+        this.nGames = seeds.length;
+        this.size = size;
+        this.gameMode = gameMode;
+
+        states = new GameState[nGames];
+        packed = new PackedBoard[nGames];
+        cells = new int[nGames * size * size];
+        ticks = new int[nGames];
+        terminal = new boolean[nGames];
+
+        int nAgents = nGames * Types.NUM_PLAYERS;
+        agentX = new int[nAgents];
+        agentY = new int[nAgents];
+        ammo = new int[nAgents];
+        blastStrength = new int[nAgents];
+        canKick = new boolean[nAgents];
+        results = new int[nAgents];
+
+        for (int g = 0; g < nGames; g++) {
+            packed[g] = new PackedBoard(size);
+            reset(g, seeds[g]);
+        }
+    }
+
+    /**
+     * Advances all games that are not over, applying the actions given, one game at a time, and refreshes the arrays
+     * of the batch.
+     * @param actions - actions to apply, 'actions[g][p]' being the action of player p in game g. Entries of games
+     *                that are over are ignored and may be null.
+     * @return the number of games that are not over after this step.
+     */
+    public int next(Types.ACTIONS[][] actions) {
+        int running = 0;
+        for (int g = 0; g < nGames; g++) {
+            if (terminal[g])
+                continue;
+            states[g].next(actions[g]);
+            update(g);
+            if (!terminal[g])
+                running++;
+        }
+        return running;
+    }
+
+    /**
+     * Replaces a game of the batch with a new one.
+     * @param game - index of the game to replace.
+     * @param seed - seed used to generate the board of the new game.
+     */
+    public void reset(int game, long seed) {
+        states[game] = new GameState(seed, size, gameMode);
+        update(game);
+    }
+
+    /**
+     * Copies the state of a game into the arrays of the batch.
+     * @param g - index of the game.
+     */
+    private void update(int g) {
+        GameState gs = states[g];
+        int nCells = size * size;
+        gs.model.pack(packed[g]);
+        System.arraycopy(packed[g].getCells(), 0, cells, g * nCells, nCells);
+
+        ticks[g] = gs.getTick();
+        terminal[g] = gs.isTerminal();
+
+        GameObject[] agents = gs.getAgents();
+        for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+            int i = g * Types.NUM_PLAYERS + p;
+            Avatar a = (Avatar) agents[p];
+            Vector2d pos = a.getPosition();
+            boolean inBoard = pos != null && a.getWinner() != Types.RESULT.LOSS;
+            agentX[i] = inBoard ? pos.x : -1;
+            agentY[i] = inBoard ? pos.y : -1;
+            ammo[i] = a.getAmmo();
+            blastStrength[i] = a.getBlastStrength();
+            canKick[i] = a.canKick();
+            results[i] = a.getWinner().ordinal();
+        }
+    }
+
+    /**
+     * @return the number of games in the batch.
+     */
+    public int size() {
+        return nGames;
+    }
+
+    /**
+     * @return the size of the boards.
+     */
+    public int getBoardSize() {
+        return size;
+    }
+
+    /**
+     * Gives access to a single game, e.g. to let agents observe it. Games must not be advanced or modified
+     * directly, or the arrays of the batch will no longer match them.
+     * @param game - index of the game.
+     * @return the game state.
+     */
+    public GameState getState(int game) {
+        return states[game];
+    }
+
+    /**
+     * @return packed cells of all boards, 'size * size' per game, see PackedBoard for their contents. The array
+     * is updated in place on every step.
+     */
+    public int[] getCells() {
+        return cells;
+    }
+
+    /**
+     * @return game ticks, by game.
+     */
+    public int[] getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return true for the games that are over, by game.
+     */
+    public boolean[] getTerminal() {
+        return terminal;
+    }
+
+    /**
+     * @return x coordinates of the agents, 'NUM_PLAYERS' per game, -1 if the agent is no longer in the board.
+     */
+    public int[] getAgentX() {
+        return agentX;
+    }
+
+    /**
+     * @return y coordinates of the agents, 'NUM_PLAYERS' per game, -1 if the agent is no longer in the board.
+     */
+    public int[] getAgentY() {
+        return agentY;
+    }
+
+    /**
+     * @return ammo of the agents, 'NUM_PLAYERS' per game.
+     */
+    public int[] getAmmo() {
+        return ammo;
+    }
+
+    /**
+     * @return blast strength of the agents, 'NUM_PLAYERS' per game.
+     */
+    public int[] getBlastStrength() {
+        return blastStrength;
+    }
+
+    /**
+     * @return kick ability of the agents, 'NUM_PLAYERS' per game.
+     */
+    public boolean[] getCanKick() {
+        return canKick;
+    }
+
+    /**
+     * @return results of the agents as ordinals of Types.RESULT, 'NUM_PLAYERS' per game.
+     */
+    public int[] getResults() {
+        return results;
+    }
+}
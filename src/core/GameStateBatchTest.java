@@ -0,0 +1,57 @@
+package core;
+
+import objects.Avatar;
+import org.junit.jupiter.api.Test;
+import utils.Types;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameStateBatchTest {
+
+    @Test
+    void batchMatchesSingleGames() {
+        long[] seeds = {1, 2, 3, 4, 5, 6, 7, 8};
+        GameStateBatch batch = new GameStateBatch(seeds, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        GameState[] games = new GameState[seeds.length];
+        for (int g = 0; g < seeds.length; g++) {
+            games[g] = new GameState(seeds[g], Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        }
+
+        Random rnd = new Random(3);
+        Types.ACTIONS[] allActions = Types.ACTIONS.values();
+        Types.ACTIONS[][] actions = new Types.ACTIONS[seeds.length][Types.NUM_PLAYERS];
+        int running = seeds.length;
+        while (running > 0) {
+            for (Types.ACTIONS[] gameActions : actions) {
+                for (int p = 0; p < gameActions.length; p++) {
+                    gameActions[p] = allActions[rnd.nextInt(allActions.length)];
+                }
+            }
+            running = batch.next(actions);
+
+            int nCells = Types.BOARD_SIZE * Types.BOARD_SIZE;
+            int[] cells = batch.getCells();
+            for (int g = 0; g < seeds.length; g++) {
+                if (!games[g].isTerminal()) {
+                    games[g].next(actions[g]);
+                }
+                assertEquals(games[g], batch.getState(g));
+                assertEquals(games[g].getTick(), batch.getTicks()[g]);
+                assertEquals(games[g].isTerminal(), batch.getTerminal()[g]);
+
+                PackedBoard packed = games[g].model.pack(null);
+                for (int i = 0; i < nCells; i++) {
+                    assertEquals(packed.getCells()[i], cells[g * nCells + i]);
+                }
+                for (int p = 0; p < Types.NUM_PLAYERS; p++) {
+                    Avatar a = (Avatar) games[g].getAgents()[p];
+                    int i = g * Types.NUM_PLAYERS + p;
+                    assertEquals(a.getAmmo(), batch.getAmmo()[i]);
+                    assertEquals(a.getWinner().ordinal(), batch.getResults()[i]);
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package core;
 
 import utils.Types;
+import utils.Vector2d;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class GameStateTest {
 
@@ -10,4 +17,339 @@ class GameStateTest {
         gs.init();
         System.out.println(gs.model);
     }
-}
\ No newline at end of file
+
+    @org.junit.jupiter.api.Test
+    void undoRestoresState() {
+        boolean defaultKick = Types.DEFAULT_BOMB_KICK;
+        Types.DEFAULT_BOMB_KICK = true;  // Make sure kicked bombs are undone too
+
+        Random rnd = new Random(42);
+        Types.ACTIONS[] allActions = Types.ACTIONS.values();
+        for (long seed = 0; seed < 10; seed++) {
+            // Copies reset bomb velocities and flame lives, so compare against a state stepped in parallel instead
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+            GameState reference = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+            gs.setUndoEnabled(true);
+
+            while (!reference.isTerminal()) {
+                // Step a few random ticks down and back up
+                int undoDepth = gs.getUndoDepth();
+                for (int depth = 0; depth < 3; depth++) {
+                    gs.next(randomActions(rnd, allActions));
+                }
+                while (gs.getUndoDepth() > undoDepth) {
+                    gs.undo();
+                }
+                assertEquals(reference, gs);
+
+                Types.ACTIONS[] actions = randomActions(rnd, allActions);
+                gs.next(actions);
+                reference.next(actions);
+                assertEquals(reference, gs);
+            }
+
+            gs.undoAll();
+            assertEquals(0, gs.getUndoDepth());
+            assertEquals(new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA), gs);
+        }
+        Types.DEFAULT_BOMB_KICK = defaultKick;
+    }
+
+    @org.junit.jupiter.api.Test
+    void hashIsUpdatedIncrementally() {
+        boolean defaultKick = Types.DEFAULT_BOMB_KICK;
+        Types.DEFAULT_BOMB_KICK = true;
+
+        Random rnd = new Random(7);
+        Types.ACTIONS[] allActions = Types.ACTIONS.values();
+        for (long seed = 0; seed < 10; seed++) {
+            // The hash of gs is only computed from scratch once, the one of reference on every tick
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+            GameState reference = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+            gs.setUndoEnabled(true);
+            long initialHash = gs.hash();
+
+            while (!reference.isTerminal()) {
+                long hash = gs.hash();
+                gs.next(randomActions(rnd, allActions));
+                gs.undo();
+                assertEquals(hash, gs.hash());
+
+                Types.ACTIONS[] actions = randomActions(rnd, allActions);
+                gs.next(actions);
+                reference.next(actions);
+                reference.model.unpack(reference.model.pack(null));
+                assertEquals(reference.hash(), gs.hash());
+            }
+
+            gs.undoAll();
+            assertEquals(initialHash, gs.hash());
+        }
+        Types.DEFAULT_BOMB_KICK = defaultKick;
+    }
+
+    @org.junit.jupiter.api.Test
+    void equalStatesReachedDifferentlyHaveEqualHashes() {
+        Types.ACTIONS stop = Types.ACTIONS.ACTION_STOP;
+        Types.ACTIONS[] stopAll = {stop, stop, stop, stop};
+        for (long seed = 0; seed < 10; seed++) {
+            for (Types.ACTIONS move : Types.ACTIONS.all()) {
+                // Agent 0 moves in the first tick or in the second one, and stays for the other
+                Types.ACTIONS[] moveFirst = {move, stop, stop, stop};
+                GameState moved = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+                GameState stayed = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+                Vector2d start = moved.getAgents()[0].getPosition().copy();
+                moved.next(moveFirst);
+                stayed.next(stopAll);
+                if (move == Types.ACTIONS.ACTION_BOMB || moved.getAgents()[0].getPosition().equals(start))
+                    continue;  // Only moves that change the position of the agent, without bombs
+                moved.next(stopAll);
+                stayed.next(moveFirst);
+
+                assertEquals(moved.getAgents()[0].getPosition(), stayed.getAgents()[0].getPosition());
+                assertEquals(moved.hash(), stayed.hash());
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void changingOneCellChangesTheHash() {
+        for (long seed = 0; seed < 3; seed++) {
+            GameState gs = new GameState(seed, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+            PackedBoard packed = gs.model.pack(null);
+            long hash = gs.hash();
+            for (int y = 0; y < packed.getSize(); y++) {
+                for (int x = 0; x < packed.getSize(); x++) {
+                    PackedBoard changed = packed.copy();
+                    Types.TILETYPE tile = packed.getTile(x, y) == Types.TILETYPE.PASSAGE ? Types.TILETYPE.WOOD :
+                            Types.TILETYPE.PASSAGE;
+                    changed.setCell(x, y, PackedBoard.encode(tile, 0, 0, 0));
+
+                    GameState other = gs.copy();
+                    other.model.unpack(changed);
+                    assertNotEquals(hash, other.hash());
+                    other.model.unpack(packed);
+                    assertEquals(hash, other.hash());
+                }
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void settingObjectsOffTheBoardFails() {
+        GameState gs = new GameState(0, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        assertThrows(IllegalArgumentException.class, () -> gs.setBomb(-1, 0, 0, new Vector2d()));
+        assertThrows(IllegalArgumentException.class, () -> gs.setFlame(0, Types.BOARD_SIZE, 1));
+    }
+
+    @org.junit.jupiter.api.Test
+    void writingToObservationsDoesNotChangeTheGame() {
+        // Under full observability, observations share their grids with the game until one of them writes to them
+        GameState gs = new GameState(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        GameState reference = new GameState(5, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        GameState observation = gs.copy(0);
+        GameState otherObservation = gs.copy(1);
+
+        int x = -1, y = -1;
+        for (int i = 0; i < Types.BOARD_SIZE * Types.BOARD_SIZE && x < 0; i++) {
+            if (gs.getBoard()[i / Types.BOARD_SIZE][i % Types.BOARD_SIZE] == Types.TILETYPE.PASSAGE) {
+                y = i / Types.BOARD_SIZE;
+                x = i % Types.BOARD_SIZE;
+            }
+        }
+        observation.getBoard()[y][x] = Types.TILETYPE.RIGID;
+        observation.getBombLife()[y][x] = 5;
+        observation.getBombBlastStrength()[y][x] = 3;
+
+        assertEquals(Types.TILETYPE.RIGID, observation.getBoard()[y][x]);
+        assertEquals(Types.TILETYPE.PASSAGE, gs.getBoard()[y][x]);
+        assertEquals(0, gs.getBombLife()[y][x]);
+        assertEquals(0, gs.getBombBlastStrength()[y][x]);
+        assertEquals(Types.TILETYPE.PASSAGE, otherObservation.getBoard()[y][x]);
+        assertEquals(reference, gs);
+        assertEquals(reference.hash(), gs.hash());
+    }
+
+    @org.junit.jupiter.api.Test
+    void actionMasks() {
+        GameState gs = new GameState(3, Types.BOARD_SIZE, Types.GAME_MODE.FFA).copy(0);
+        Vector2d pos = gs.getPosition();
+        int stop = 1 << Types.ACTIONS.ACTION_STOP.getKey();
+        int bomb = 1 << Types.ACTIONS.ACTION_BOMB.getKey();
+
+        int legal = gs.getLegalActionMask();
+        assertEquals(stop | bomb, legal & (stop | bomb));
+        for (Types.ACTIONS action : Types.ACTIONS.values()) {
+            Types.DIRECTIONS dir = action.getDirection();
+            int x = pos.x + dir.x(), y = pos.y + dir.y();
+            boolean inBoard = x >= 0 && y >= 0 && x < Types.BOARD_SIZE && y < Types.BOARD_SIZE;
+            if (!inBoard) {
+                assertEquals(0, legal & (1 << action.getKey()));
+                assertEquals(0, gs.getSafeActionMask() & (1 << action.getKey()));
+            } else if (dir != Types.DIRECTIONS.NONE) {
+                Types.TILETYPE tile = gs.getBoard()[y][x];
+                boolean walkable = tile != Types.TILETYPE.RIGID && tile != Types.TILETYPE.WOOD;
+                assertEquals(walkable, (legal & (1 << action.getKey())) != 0);
+
+                // Masks are recomputed when the state changes
+                gs.addFlame(x, y, Types.FLAME_LIFE);
+                assertEquals(0, gs.getSafeActionMask() & (1 << action.getKey()));
+            }
+        }
+
+        // Can't place a bomb on top of another one
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        Arrays.fill(actions, Types.ACTIONS.ACTION_STOP);
+        actions[0] = Types.ACTIONS.ACTION_BOMB;
+        gs.next(actions);
+        assertEquals(0, gs.getLegalActionMask() & bomb);
+    }
+
+    @org.junit.jupiter.api.Test
+    void writingToGridsUpdatesMasksDangerAndHash() {
+        int[][] intBoard = new int[11][11];
+        intBoard[0][0] = 10;
+        intBoard[0][10] = 11;
+        intBoard[10][10] = 12;
+        intBoard[10][0] = 13;
+        GameState gs = new GameState(3, new ForwardModel(3, intBoard, Types.GAME_MODE.FFA), Types.GAME_MODE.FFA);
+        gs = gs.copy(0);
+        gs.addBomb(2, 2, 3, 3, 1, true);
+
+        int down = 1 << Types.ACTIONS.ACTION_DOWN.getKey();
+        assertEquals(down, gs.getLegalActionMask() & down);
+        assertEquals(3, gs.getTimeToDetonation(0, 2));
+        long hash = gs.hash();
+
+        // Masks, danger and hash were computed before the writes, and must not be stale after them
+        Types.TILETYPE[][] board = gs.getBoard();
+        board[1][0] = Types.TILETYPE.WOOD;
+        board[2][1] = Types.TILETYPE.RIGID;
+        assertEquals(0, gs.getLegalActionMask() & down);
+        assertEquals(GameState.NO_DANGER, gs.getTimeToDetonation(0, 2));
+        assertNotEquals(hash, gs.hash());
+
+        board = gs.getBoard();
+        board[1][0] = Types.TILETYPE.PASSAGE;
+        board[2][1] = Types.TILETYPE.PASSAGE;
+        assertEquals(down, gs.getLegalActionMask() & down);
+        assertEquals(3, gs.getTimeToDetonation(0, 2));
+        assertEquals(hash, gs.hash());
+    }
+
+    @org.junit.jupiter.api.Test
+    void timeToDetonation() {
+        int[][] intBoard = new int[11][11];
+        intBoard[0][0] = 10;
+        intBoard[0][10] = 11;
+        intBoard[10][10] = 12;
+        intBoard[10][0] = 13;
+        intBoard[4][2] = Types.TILETYPE.RIGID.getKey();
+        GameState gs = new GameState(3, new ForwardModel(3, intBoard, Types.GAME_MODE.FFA), Types.GAME_MODE.FFA);
+
+        gs.addBomb(2, 2, 3, 3, 0, true);
+        gs.addBomb(4, 2, 2, 8, 1, true);
+        assertEquals(3, gs.getTimeToDetonation(2, 2));
+        assertEquals(3, gs.getTimeToDetonation(2, 3));
+        assertEquals(3, gs.getTimeToDetonation(0, 2));
+        assertEquals(GameState.NO_DANGER, gs.getTimeToDetonation(2, 4));    // Rigid tile blocks the blast
+
+        // The second bomb is set off by the first one
+        assertEquals(3, gs.getTimeToDetonation(4, 2));
+        assertEquals(3, gs.getTimeToDetonation(5, 2));
+        assertEquals(GameState.NO_DANGER, gs.getTimeToDetonation(6, 2));
+
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        Arrays.fill(actions, Types.ACTIONS.ACTION_STOP);
+        gs.next(actions);
+        assertEquals(2, gs.getTimeToDetonation(5, 2));
+        gs.next(actions);
+        gs.next(actions);
+        assertEquals(Types.TILETYPE.FLAMES, gs.getBoard()[2][5]);
+    }
+
+    @org.junit.jupiter.api.Test
+    void rangeOfBombIgnoresWallsAndChains() {
+        int[][] intBoard = new int[11][11];
+        intBoard[0][0] = 10;
+        intBoard[0][10] = 11;
+        intBoard[10][10] = 12;
+        intBoard[10][0] = 13;
+        intBoard[4][2] = Types.TILETYPE.RIGID.getKey();
+        GameState gs = new GameState(3, new ForwardModel(3, intBoard, Types.GAME_MODE.FFA), Types.GAME_MODE.FFA);
+
+        gs.addBomb(2, 2, 3, 3, 0, true);
+        gs.addBomb(4, 2, 2, 8, 1, true);
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        Arrays.fill(actions, Types.ACTIONS.ACTION_STOP);
+        gs.next(actions);  // Bombs are only added to the blast strength grid, which agents see, on the next tick
+        assertTrue(gs.isInRangeOfBomb(2, 5));     // Behind the rigid tile
+        assertFalse(gs.isInRangeOfBomb(2, 6));
+        assertTrue(gs.isInRangeOfBomb(6, 2));     // In range of the second bomb itself
+        assertFalse(gs.isInRangeOfBomb(7, 2));    // Would be hit if set off by the first one, but not in its range
+        assertFalse(gs.isInRangeOfBomb(3, 3));
+
+        // Same range as the bombs seen in the grids, in line with them and at most their blast strength away
+        Random rnd = new Random(13);
+        Types.ACTIONS[] allActions = Types.ACTIONS.values();
+        gs = new GameState(13, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        while (!gs.isTerminal()) {
+            Types.TILETYPE[][] board = gs.getBoard();
+            int[][] blastStrength = gs.getBombBlastStrength();
+            for (int y = 0; y < board.length; y++) {
+                for (int x = 0; x < board.length; x++) {
+                    boolean inRange = false;
+                    for (int by = 0; by < board.length; by++) {
+                        for (int bx = 0; bx < board.length; bx++) {
+                            int bs = blastStrength[by][bx];
+                            if (board[by][bx] != Types.TILETYPE.BOMB && bs <= 0)
+                                continue;
+                            inRange |= (x == bx && Math.abs(by - y) <= bs) || (y == by && Math.abs(bx - x) <= bs);
+                        }
+                    }
+                    assertEquals(inRange, gs.isInRangeOfBomb(x, y), "(" + x + ", " + y + ")");
+                }
+            }
+            gs.next(randomActions(rnd, allActions));
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void snapshotRestoresState() {
+        Random rnd = new Random(11);
+        Types.ACTIONS[] allActions = Types.ACTIONS.values();
+        GameState gs = new GameState(5, Types.BOARD_SIZE, Types.GAME_MODE.TEAM_RADIO);
+        GameState pooled = new GameState(6, Types.BOARD_SIZE, Types.GAME_MODE.FFA).copy();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        while (!gs.isTerminal()) {
+            buffer.clear();
+            gs.writeSnapshot(buffer);
+            assertEquals(gs.getSnapshotSize(), buffer.position());
+
+            buffer.flip();
+            GameState restored = GameState.fromSnapshot(buffer);
+            buffer.flip();
+            pooled.readSnapshot(buffer);
+            assertEquals(gs, restored);
+            assertEquals(gs, pooled);
+            assertEquals(gs.hash(), restored.hash());
+            assertEquals(gs.hash(), pooled.hash());
+
+            // Restored states play on exactly as the original
+            Types.ACTIONS[] actions = randomActions(rnd, allActions);
+            gs.next(actions);
+            restored.next(actions);
+            assertEquals(gs, restored);
+            assertEquals(gs.hash(), restored.hash());
+        }
+    }
+
+    private static Types.ACTIONS[] randomActions(Random rnd, Types.ACTIONS[] allActions) {
+        Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = allActions[rnd.nextInt(allActions.length)];
+        }
+        return actions;
+    }
+}
@@ -11,12 +11,15 @@ import players.rhea.utils.Constants;
 import players.rhea.utils.RHEAParams;
 import utils.*;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static utils.Types.VERBOSE;
+import static utils.Types.*;
 
 class GameTest {
 
@@ -433,7 +436,9 @@ class GameTest {
 
         /* Run with no visuals, N Times: */
 //        int N = 20;
-//        Run.runGames(game, new long[]{seed}, N, useSeparateThreads);
+//        Tournament tournament = new Tournament(players, gameMode, boardSize, "", 1);
+//        tournament.setSeparateThreads(useSeparateThreads);
+//        tournament.run(new long[]{seed}, N, seed);
     }
 
     /**
@@ -507,4 +512,341 @@ class GameTest {
             assertEquals(game.getGameState(), deserializedReplayGame.getGameState()); // Deserialized replay finishes in same state as real game
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that with enforced deadlines, games run with separate threads don't wait for players that take too long:
+     * one that stops when interrupted and one that ignores interrupts. Late players are asked for their action at the
+     * deadline only for the ticks they were deciding, and the game waits for them to finish before the end.
+     */
+    @Test
+    void deadlinesAreEnforced() {
+        boolean checkTime = CHECK_DECISION_TIME, enforce = ENFORCE_DECISION_TIME;
+        int timeLimit = DECISION_TIME_LIMIT, maxTicks = MAX_GAME_TICKS;
+        CHECK_DECISION_TIME = true;
+        ENFORCE_DECISION_TIME = true;
+        DECISION_TIME_LIMIT = 20;
+        MAX_GAME_TICKS = 30;
+
+        int playerID = Types.TILETYPE.AGENT0.getKey();
+        ArrayList<Player> players = new ArrayList<>();
+        SlowPlayer interruptible = new SlowPlayer(playerID++, 10000);  // Sleeps until interrupted
+        SlowPlayer uninterruptible = new SlowPlayer(playerID++, -200);  // Ignores interrupts
+        players.add(interruptible);
+        players.add(uninterruptible);
+        players.add(new DoNothingPlayer(playerID++));
+        players.add(new DoNothingPlayer(playerID));
+        Game game = new Game(123456, 11, Types.GAME_MODE.FFA, "");
+        game.setPlayers(players);
+
+        long start = System.currentTimeMillis();
+        game.run(true);
+        long elapsed = System.currentTimeMillis() - start;
+
+        CHECK_DECISION_TIME = checkTime;
+        ENFORCE_DECISION_TIME = enforce;
+        DECISION_TIME_LIMIT = timeLimit;
+        MAX_GAME_TICKS = maxTicks;
+
+        assertEquals(30, game.getGameState().getTick());
+        assertTrue(elapsed < 30 * 200, "Game took " + elapsed + "ms");
+        assertEquals(30, game.getPlayerOvertimes()[0]);
+        assertEquals(30, game.getPlayerOvertimes()[1]);
+        assertTrue(interruptible.actionsAtDeadline > 0);
+        assertTrue(uninterruptible.actionsAtDeadline > 0 && uninterruptible.actionsAtDeadline < 30);
+        assertFalse(interruptible.resultWhileActing || uninterruptible.resultWhileActing);
+    }
+
+    /**
+     * Tests that a player that never returns, even when interrupted, doesn't hold up the end of a game run with
+     * separate threads: it's abandoned, without being given its result.
+     */
+    @Test
+    void hungPlayersAreAbandoned() {
+        boolean checkTime = CHECK_DECISION_TIME, enforce = ENFORCE_DECISION_TIME;
+        int timeLimit = DECISION_TIME_LIMIT, maxTicks = MAX_GAME_TICKS;
+        CHECK_DECISION_TIME = true;
+        ENFORCE_DECISION_TIME = true;
+        DECISION_TIME_LIMIT = 20;
+        MAX_GAME_TICKS = 5;
+
+        int playerID = Types.TILETYPE.AGENT0.getKey();
+        HungPlayer hung = new HungPlayer(playerID++);
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(hung);
+        players.add(new DoNothingPlayer(playerID++));
+        players.add(new DoNothingPlayer(playerID++));
+        players.add(new DoNothingPlayer(playerID));
+        Game game = new Game(123456, 11, Types.GAME_MODE.FFA, "");
+        game.setPlayers(players);
+
+        try {
+            long start = System.currentTimeMillis();
+            game.run(true);
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertEquals(5, game.getGameState().getTick());
+            assertTrue(elapsed < 5000, "Game took " + elapsed + "ms");
+            assertFalse(hung.gotResult);
+        } finally {
+            hung.release.countDown();
+            CHECK_DECISION_TIME = checkTime;
+            ENFORCE_DECISION_TIME = enforce;
+            DECISION_TIME_LIMIT = timeLimit;
+            MAX_GAME_TICKS = maxTicks;
+        }
+    }
+
+    /**
+     * Tests that MCTS and RHEA give the best action found so far when asked at the deadline, while still searching,
+     * and no action once the search is over.
+     */
+    @Test
+    void searchesGiveActionAtDeadline() throws InterruptedException {
+        Game game = new Game(123456, 11, Types.GAME_MODE.FFA, "");
+        int playerID = Types.TILETYPE.AGENT0.getKey();
+
+        MCTSParams mctsParams = new MCTSParams();
+        mctsParams.stop_type = mctsParams.STOP_TIME;
+        mctsParams.num_time = 100000;
+        RHEAParams rheaParams = new RHEAParams();
+        rheaParams.budget_type = Constants.TIME_BUDGET;
+        rheaParams.time_budget = 100000;
+        Player[] searches = {new MCTSPlayer(1, playerID, mctsParams), new RHEAPlayer(1, playerID, rheaParams)};
+
+        for (Player player : searches) {
+            GameState gs = game.getGameState().copy(0);
+            Thread thread = new Thread(() -> player.act(gs));
+            thread.start();
+            Thread.sleep(200);
+            Types.ACTIONS action = player.getActionAtDeadline();
+            thread.interrupt();
+            thread.join(10000);
+
+            assertFalse(thread.isAlive(), player.getClass() + " didn't stop when interrupted");
+            assertNotNull(action, player.getClass() + " gave no action at the deadline");
+
+            // Searches that ended don't give their action for the next one, which may not have started yet
+            assertNull(player.getActionAtDeadline(), player.getClass() + " gave an action while not searching");
+        }
+    }
+
+    /**
+     * Tests that a player writing to its observation doesn't change the game, or the observations of the players that
+     * act after it, with both sequential and separate threads.
+     */
+    @Test
+    void observationsAreIndependent() {
+        boolean checkTime = CHECK_DECISION_TIME;
+        int maxTicks = MAX_GAME_TICKS;
+        CHECK_DECISION_TIME = false;
+        MAX_GAME_TICKS = 20;
+
+        for (boolean separateThreads : new boolean[]{false, true}) {
+            int playerID = Types.TILETYPE.AGENT0.getKey();
+            ArrayList<Player> players = new ArrayList<>();
+            players.add(new BoardWritingPlayer(playerID++));
+            ObservingPlayer observer = new ObservingPlayer(playerID++);
+            players.add(observer);
+            players.add(new DoNothingPlayer(playerID++));
+            players.add(new DoNothingPlayer(playerID));
+            Game game = new Game(123456, 11, Types.GAME_MODE.FFA, "");
+            game.setPlayers(players);
+            game.run(separateThreads);
+
+            assertEquals(20, observer.observations);
+            assertEquals(0, observer.rigidBoards);
+            assertNotEquals(Types.TILETYPE.RIGID, game.getGameState().getBoard()[1][1]);
+        }
+
+        CHECK_DECISION_TIME = checkTime;
+        MAX_GAME_TICKS = maxTicks;
+    }
+
+    /**
+     * Tests that the events of a game played with observations of the true state blame the owners of the flames:
+     * flames the true model copies when it stops sharing its state with the observations must keep their owner.
+     * Player 2's bomb explodes at once; player 3's bomb is kicked into its flames a tick later and player 0 walks into
+     * them after that.
+     */
+    @Test
+    void observationsKeepFlameOwners() {
+        boolean logging = LOGGING_STATISTICS;
+        boolean checkTime = CHECK_DECISION_TIME;
+        LOGGING_STATISTICS = true;
+        CHECK_DECISION_TIME = false;
+        try {
+            int[][] board = new int[11][11];
+            board[5][7] = Types.TILETYPE.AGENT0.getKey();
+            board[9][3] = Types.TILETYPE.AGENT1.getKey();
+            board[9][9] = Types.TILETYPE.AGENT2.getKey();
+            board[1][9] = Types.TILETYPE.AGENT3.getKey();
+            ForwardModel model = new ForwardModel(1, board, Types.GAME_MODE.FFA);
+            model.setTrueModel();
+            model.init(1, board.length, Types.GAME_MODE.FFA, board, null);  // Again, to log as the true model
+            model.addBomb(3, 5, 2, 1, 2, true);
+            model.addBomb(3, 8, 1, 9, 3, true);
+            ((Avatar) model.getAgents()[1]).setCanKick();
+
+            Game game = new Game(1, model, Types.GAME_MODE.FFA);
+            ArrayList<Player> players = new ArrayList<>();
+            players.add(new SimonSaysPlayer(Types.TILETYPE.AGENT0.getKey(), new ArrayDeque<>(Arrays.asList(
+                    ACTIONS.ACTION_STOP, ACTIONS.ACTION_LEFT, ACTIONS.ACTION_LEFT, ACTIONS.ACTION_LEFT))));
+            players.add(new SimonSaysPlayer(Types.TILETYPE.AGENT1.getKey(), new ArrayDeque<>(Arrays.asList(
+                    ACTIONS.ACTION_STOP, ACTIONS.ACTION_UP))));
+            players.add(new DoNothingPlayer(Types.TILETYPE.AGENT2.getKey()));
+            players.add(new DoNothingPlayer(Types.TILETYPE.AGENT3.getKey()));
+            game.setPlayers(players);
+            for (int i = 0; i < 4; i++) {
+                game.tick(false);
+            }
+
+            EventsStatistics es = model.getEventsStatistics();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < es.getNumEvents(); i++) {
+                es.formatEvent(i, sb);
+            }
+            assertEquals("0 | [2]'s bomb exploded at (3, 5)\n" +
+                    "2 | [3]'s bomb exploded at (3, 6) triggered by [2]\n" +
+                    "3 | [0] died at (4, 5) by [2]'s flame(s)\n", sb.toString());
+            assertArrayEquals(new int[]{0, 0, 1, 0}, es.bombsTriggered);
+        } finally {
+            LOGGING_STATISTICS = logging;
+            CHECK_DECISION_TIME = checkTime;
+        }
+    }
+
+    /**
+     * Player that doesn't return from its first decision, ignoring interrupts, until released.
+     */
+    private static class HungPlayer extends DoNothingPlayer {
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean gotResult = false;
+
+        HungPlayer(int pId) {
+            super(pId);
+        }
+
+        @Override
+        public Types.ACTIONS act(GameState gs) {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Ignored
+                }
+            }
+            return Types.ACTIONS.ACTION_STOP;
+        }
+
+        @Override
+        public void result(double reward) {
+            gotResult = true;
+        }
+    }
+
+    /**
+     * Player that fills the board of its observation with rigid blocks.
+     */
+    private static class BoardWritingPlayer extends DoNothingPlayer {
+        BoardWritingPlayer(int pId) {
+            super(pId);
+        }
+
+        @Override
+        public Types.ACTIONS act(GameState gs) {
+            for (Types.TILETYPE[] row : gs.getBoard()) {
+                Arrays.fill(row, Types.TILETYPE.RIGID);
+            }
+            return Types.ACTIONS.ACTION_STOP;
+        }
+    }
+
+    /**
+     * Player that counts the observations it received with a board full of rigid blocks.
+     */
+    private static class ObservingPlayer extends DoNothingPlayer {
+        int observations = 0, rigidBoards = 0;
+
+        ObservingPlayer(int pId) {
+            super(pId);
+        }
+
+        @Override
+        public Types.ACTIONS act(GameState gs) {
+            // Give the player that writes to its observation time to do so, in case they run at the same time
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            boolean allRigid = true;
+            for (Types.TILETYPE[] row : gs.getBoard()) {
+                for (Types.TILETYPE tile : row) {
+                    allRigid &= tile == Types.TILETYPE.RIGID;
+                }
+            }
+            observations++;
+            if (allRigid)
+                rigidBoards++;
+            return Types.ACTIONS.ACTION_STOP;
+        }
+    }
+
+    /**
+     * Player that takes too long to decide: it sleeps (stopping if interrupted) or, if time is negative, spins
+     * ignoring interrupts.
+     */
+    private static class SlowPlayer extends Player {
+        private final long time;
+
+        // True while deciding, times asked for the action at the deadline, and whether the game ended while deciding
+        private volatile boolean acting = false;
+        private volatile int actionsAtDeadline = 0;
+        private volatile boolean resultWhileActing = false;
+
+        SlowPlayer(int pId, long time) {
+            super(0, pId);
+            this.time = time;
+        }
+
+        @Override
+        public Types.ACTIONS act(GameState gs) {
+            acting = true;
+            if (time > 0) {
+                try {
+                    Thread.sleep(time);
+                } catch (InterruptedException e) {
+                    // Deadline missed
+                }
+            } else {
+                long end = System.currentTimeMillis() - time;
+                while (System.currentTimeMillis() < end) {
+                    Thread.onSpinWait();
+                }
+            }
+            acting = false;
+            return Types.ACTIONS.ACTION_BOMB;
+        }
+
+        @Override
+        public Types.ACTIONS getActionAtDeadline() {
+            actionsAtDeadline++;  // Only called from the game's thread
+            return Types.ACTIONS.ACTION_STOP;
+        }
+
+        @Override
+        public void result(double reward) {
+            resultWhileActing |= acting;
+        }
+
+        @Override
+        public int[] getMessage() {
+            return new int[Types.MESSAGE_LENGTH];
+        }
+
+        @Override
+        public Player copy() {
+            return new SlowPlayer(playerID, time);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package core;
+
+import players.Player;
+import utils.Types;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * League of players (e.g. different agents, or parameterizations of the same agent) rated by the games they play
+ * against each other. Instead of playing all combinations of players, matches are scheduled adaptively: the player
+ * with the fewest games plays against players picked with higher probability the closer their ratings are, since
+ * games between players of similar strength tell the most about them.
+ * Ratings are Elo ratings, updated after every game: each player's result is compared with the result of each of the
+ * other players in the game (WIN better than TIE better than LOSS), as a win, draw or loss between the two.
+ * Matches are played in rounds of as many games as workers, in parallel, and ratings are updated with the games of a
+ * round in order. Games scheduled in a round count as played when scheduling the rest of the round, so a round is
+ * spread across the players instead of starting all its games with the same one.
+ * Ratings can be kept in a store file, so leagues can be resumed and players added over time.
+ * Games are FFA, with players seated in random positions.
+ */
+public class League {
+
+    // Rating of new players, and maximum change of a rating in a game between two players.
+    public static final double INITIAL_RATING = 1500;
+    public static final double K = 32;
+
+    // Difference in rating for which a pairing is half as likely to be scheduled as between equal ratings.
+    private static final double PAIRING_SCALE = 200;
+
+    /**
+     * Player of the league, with its rating.
+     */
+    public static class Entry {
+        private final String name;
+        private final Player player;
+        private double rating = INITIAL_RATING;
+        private int games = 0, wins = 0;
+
+        // Games scheduled in the current round, not played yet.
+        private int scheduled = 0;
+
+        private Entry(String name, Player player) {
+            this.name = name;
+            this.player = player;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getRating() {
+            return rating;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+    }
+
+    // Players of the league, in the order they were added.
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    // Ratings of players read from the store, by name, until the players are added.
+    private final HashMap<String, double[]> stored = new HashMap<>();
+
+    private final int boardSize;
+    private final int nWorkers;
+    private final Random rnd;
+
+    // File ratings are kept in, null if not kept.
+    private File store = null;
+
+    // Stream where the results are printed.
+    private PrintStream out = System.out;
+
+    /**
+     * Creates an empty league.
+     * @param boardSize - size of the boards.
+     * @param nWorkers - number of games played at the same time. <= 0 to use all available processors.
+     * @param seed - seed for scheduling matches and for the level and player seeds of the games.
+     */
+    public League(int boardSize, int nWorkers, long seed) {
+        this.boardSize = boardSize;
+        this.nWorkers = nWorkers > 0 ? nWorkers : Runtime.getRuntime().availableProcessors();
+        this.rnd = new Random(seed);
+    }
+
+    /**
+     * Sets the store of the ratings, and reads the ratings in it. Players added afterwards start with their stored
+     * ratings, and ratings are saved to the store after every round of games.
+     * @param store - store file, a line per player with its name, rating, games and wins separated by tabs. Created
+     *              if it doesn't exist.
+     */
+    public void setStore(File store) {
+        this.store = store;
+        stored.clear();
+        if (!store.exists())
+            return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(store))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length == 4) {
+                    stored.put(fields[0], new double[]{Double.parseDouble(fields[1]), Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3])});
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read league store " + store, e);
+        }
+        for (Entry e : entries) {
+            restore(e);
+        }
+    }
+
+    /**
+     * @param out - stream where the results are printed. System.out by default.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Adds a player to the league.
+     * @param name - name of the player, which identifies it in the store. Must be unique and contain no tabs.
+     * @param player - player. It's not modified, games are played with copies of it (see Player.copy()).
+     */
+    public void add(String name, Player player) {
+        for (Entry e : entries) {
+            if (e.name.equals(name))
+                throw new IllegalArgumentException("Player " + name + " already in the league");
+        }
+        Entry entry = new Entry(name, player);
+        restore(entry);
+        entries.add(entry);
+    }
+
+    private void restore(Entry entry) {
+        double[] s = stored.get(entry.name);
+        if (s != null) {
+            entry.rating = s[0];
+            entry.games = (int) s[1];
+            entry.wins = (int) s[2];
+        }
+    }
+
+    /**
+     * Plays games, printing a line per game, and updates the ratings.
+     * @param nGames - number of games to play.
+     */
+    public void run(int nGames) {
+        if (entries.size() < Types.NUM_PLAYERS)
+            throw new IllegalArgumentException("A league needs at least " + Types.NUM_PLAYERS + " players, it has " +
+                    entries.size());
+
+        for (Entry e : entries) {
+            e.scheduled = 0;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(nWorkers);
+        try {
+            for (int played = 0; played < nGames; ) {
+                int nRound = Math.min(nWorkers, nGames - played);
+
+                // Schedule the round with the ratings so far, and play its games in parallel
+                ArrayList<Future<Types.RESULT[]>> results = new ArrayList<>();
+                ArrayList<Entry[]> matches = new ArrayList<>();
+                for (int i = 0; i < nRound; i++) {
+                    Entry[] match = schedule();
+                    for (Entry e : match) {
+                        e.scheduled++;
+                    }
+                    long levelSeed = rnd.nextInt(100000);
+                    long playerSeed = rnd.nextLong();
+                    int gameIdx = played + i;
+                    matches.add(match);
+                    results.add(pool.submit(() -> play(match, levelSeed, playerSeed, gameIdx)));
+                }
+
+                for (int i = 0; i < nRound; i++) {
+                    Entry[] match = matches.get(i);
+                    Types.RESULT[] gameResults = results.get(i).get();
+                    for (Entry e : match) {
+                        e.scheduled--;
+                    }
+                    update(match, gameResults);
+                    printGame(played + i, match, gameResults);
+                }
+                played += nRound;
+                save();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Picks the players of a game: the player with the fewest games, counting the ones already scheduled in the
+     * current round (ties broken at random), and others with
+     * probability decreasing with the difference between their ratings and its rating. Players are seated in random
+     * positions.
+     * @return the players of the game, by position.
+     */
+    private Entry[] schedule() {
+        ArrayList<Entry> candidates = new ArrayList<>(entries);
+        Collections.shuffle(candidates, rnd);
+        Entry first = candidates.get(0);
+        for (Entry e : candidates) {
+            if (e.games + e.scheduled < first.games + first.scheduled)
+                first = e;
+        }
+        candidates.remove(first);
+
+        Entry[] match = new Entry[Types.NUM_PLAYERS];
+        match[0] = first;
+        for (int p = 1; p < match.length; p++) {
+            double[] weights = new double[candidates.size()];
+            double total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                double diff = Math.abs(candidates.get(i).rating - first.rating);
+                weights[i] = Math.pow(0.5, diff / PAIRING_SCALE);
+                total += weights[i];
+            }
+            double r = rnd.nextDouble() * total;
+            int chosen = 0;
+            while (chosen < weights.length - 1 && (r -= weights[chosen]) >= 0) {
+                chosen++;
+            }
+            match[p] = candidates.remove(chosen);
+        }
+
+        Collections.shuffle(Arrays.asList(match), rnd);
+        return match;
+    }
+
+    /**
+     * Plays a game.
+     * @param match - players of the game, by position.
+     * @param levelSeed - seed of the level.
+     * @param playerSeed - seed of the players.
+     * @param gameIdx - number of the game in the run, used as its repetition to name its log files.
+     * @return the result of each player.
+     */
+    private Types.RESULT[] play(Entry[] match, long levelSeed, long playerSeed, int gameIdx) {
+        ArrayList<Player> players = new ArrayList<>();
+        for (int p = 0; p < match.length; p++) {
+            Player player = match[p].player.copy();
+            player.reset(playerSeed, p + Types.TILETYPE.AGENT0.getKey());
+            players.add(player);
+        }
+
+        Game game = new Game(levelSeed, boardSize, Types.GAME_MODE.FFA, "");
+        game.setRepetition(gameIdx);
+        game.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+        game.setPlayers(players);
+        return game.run(false);
+    }
+
+    /**
+     * Updates the ratings of the players of a game with its results.
+     * @param match - players of the game, by position.
+     * @param results - result of each player.
+     */
+    void update(Entry[] match, Types.RESULT[] results) {
+        double[] deltas = new double[match.length];
+        for (int i = 0; i < match.length; i++) {
+            for (int j = 0; j < match.length; j++) {
+                if (i == j)
+                    continue;
+                double score = Integer.compare(rank(results[i]), rank(results[j])) * 0.5 + 0.5;
+                double expected = 1 / (1 + Math.pow(10, (match[j].rating - match[i].rating) / 400));
+                deltas[i] += K * (score - expected) / (match.length - 1);
+            }
+        }
+        for (int i = 0; i < match.length; i++) {
+            match[i].rating += deltas[i];
+            match[i].games++;
+            if (results[i] == Types.RESULT.WIN)
+                match[i].wins++;
+        }
+    }
+
+    private static int rank(Types.RESULT result) {
+        return result == Types.RESULT.WIN ? 2 : result == Types.RESULT.TIE ? 1 : 0;
+    }
+
+    private void printGame(int k, Entry[] match, Types.RESULT[] results) {
+        StringBuilder sb = new StringBuilder().append(k).append(", [");
+        for (int p = 0; p < match.length; p++) {
+            sb.append(match[p].name).append(' ').append(results[p]);
+            sb.append(p == match.length - 1 ? "]" : ", ");
+        }
+        out.println(sb);
+    }
+
+    /**
+     * Saves the ratings to the store, if any. The store is replaced at once, so it's never left half written.
+     * Ratings of stored players not in the league are kept.
+     */
+    private void save() {
+        if (store == null)
+            return;
+
+        LinkedHashMap<String, String> lines = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> s : stored.entrySet()) {
+            lines.put(s.getKey(), s.getKey() + "\t" + s.getValue()[0] + "\t" + (int) s.getValue()[1] + "\t" +
+                    (int) s.getValue()[2]);
+        }
+        for (Entry e : entries) {
+            lines.put(e.name, e.name + "\t" + e.rating + "\t" + e.games + "\t" + e.wins);
+        }
+
+        try {
+            File tmp = new File(store.getPath() + ".tmp");
+            try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(tmp)))) {
+                for (String line : lines.values()) {
+                    writer.println(line);
+                }
+            }
+            Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save league store " + store, e);
+        }
+    }
+
+    /**
+     * @return the players of the league, from highest to lowest rating.
+     */
+    public ArrayList<Entry> getLeaderboard() {
+        ArrayList<Entry> leaderboard = new ArrayList<>(entries);
+        leaderboard.sort((a, b) -> Double.compare(b.rating, a.rating));
+        return leaderboard;
+    }
+
+    /**
+     * Prints the leaderboard: a line per player, from highest to lowest rating, with its games and wins.
+     */
+    public void printLeaderboard() {
+        out.println("# \tRating \tGames \tWin \tPlayer");
+        int rank = 1;
+        for (Entry e : getLeaderboard()) {
+            double winPerc = e.games > 0 ? e.wins * 100.0 / e.games : 0;
+            out.println(rank++ + "\t" + Math.round(e.rating) + "\t" + e.games + "\t" + winPerc + "%\t" + e.name);
+        }
+    }
+}
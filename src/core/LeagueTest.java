@@ -0,0 +1,94 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import players.DoNothingPlayer;
+import players.RandomPlayer;
+import players.SimplePlayer;
+import utils.Types;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeagueTest {
+
+    @Test
+    void ratingsAreZeroSum() {
+        League league = new League(Types.BOARD_SIZE, 1, 0);
+        for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+            league.add("p" + i, new DoNothingPlayer(Types.TILETYPE.AGENT0.getKey() + i));
+        }
+        ArrayList<League.Entry> entries = league.getLeaderboard();
+        League.Entry[] match = entries.toArray(new League.Entry[0]);
+        league.update(match, new Types.RESULT[]{Types.RESULT.LOSS, Types.RESULT.WIN, Types.RESULT.LOSS, Types.RESULT.LOSS});
+
+        // Between equal ratings, the winner takes K / 2 from each loser, shared among the 3 games it played
+        assertEquals(League.INITIAL_RATING + League.K / 2, match[1].getRating(), 1e-9);
+        assertEquals(League.INITIAL_RATING - League.K / 6, match[0].getRating(), 1e-9);
+        double total = 0;
+        for (League.Entry e : match) {
+            total += e.getRating();
+            assertEquals(1, e.getGames());
+        }
+        assertEquals(Types.NUM_PLAYERS * League.INITIAL_RATING, total, 1e-9);
+        assertEquals("p1", league.getLeaderboard().get(0).getName());
+    }
+
+    @Test
+    void roundsAreSpreadAcrossPlayers() {
+        int maxTicks = Types.MAX_GAME_TICKS;
+        Types.MAX_GAME_TICKS = 10;
+        try {
+            // With 5 players, the one left out of the first game of a round has the fewest games, so it's in the 2nd
+            for (long seed = 0; seed < 10; seed++) {
+                League league = new League(Types.BOARD_SIZE, 2, seed);
+                league.setOutput(new PrintStream(new ByteArrayOutputStream(), true));
+                for (int i = 0; i < 5; i++) {
+                    league.add("p" + i, new DoNothingPlayer(Types.TILETYPE.AGENT0.getKey()));
+                }
+                league.run(2);
+
+                for (League.Entry e : league.getLeaderboard()) {
+                    assertTrue(e.getGames() > 0, e.getName() + " didn't play with seed " + seed);
+                }
+            }
+        } finally {
+            Types.MAX_GAME_TICKS = maxTicks;
+        }
+    }
+
+    @Test
+    void ratingsArePersisted() throws IOException {
+        boolean checkTime = Types.CHECK_DECISION_TIME;
+        Types.CHECK_DECISION_TIME = false;
+        try {
+            File store = File.createTempFile("league", ".txt");
+            store.deleteOnExit();
+
+            for (int run = 0; run < 2; run++) {
+                League league = new League(Types.BOARD_SIZE, 2, run);
+                league.setOutput(new PrintStream(new ByteArrayOutputStream(), true));
+                league.setStore(store);
+                league.add("Simple", new SimplePlayer(0, Types.TILETYPE.AGENT0.getKey()));
+                league.add("Random", new RandomPlayer(0, Types.TILETYPE.AGENT0.getKey()));
+                league.add("DoNothing", new DoNothingPlayer(Types.TILETYPE.AGENT0.getKey()));
+                league.add("Simple2", new SimplePlayer(0, Types.TILETYPE.AGENT0.getKey()));
+                league.add("Random2", new RandomPlayer(0, Types.TILETYPE.AGENT0.getKey()));
+                league.run(10);
+
+                int games = 0;
+                for (League.Entry e : league.getLeaderboard()) {
+                    games += e.getGames();
+                }
+                // Second run continues from the stored ratings
+                assertEquals((run + 1) * 10 * Types.NUM_PLAYERS, games);
+            }
+        } finally {
+            Types.CHECK_DECISION_TIME = checkTime;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package core;
+
+import utils.Types;
+
+import java.util.Arrays;
+
+/**
+ * Compact representation of the grids of a forward model. Every cell of the board is packed into a single int
+ * of a flat array indexed by 'y * size + x', holding (from the least significant bits):
+ *   - bits  0-3:  tile type on the board (key of Types.TILETYPE, NULL_TILE if empty)
+ *   - bits  4-7:  hidden power-up under this cell (key of Types.TILETYPE, 0 if none)
+ *   - bits  8-15: life of the bomb at this cell (0 if no bomb)
+ *   - bits 16-23: blast strength of the bomb at this cell (0 if no bomb)
+ * Copying a packed board is a single array copy, compared to the 4 * size arrays of the grids.
+ * The forward model runs on its grids, not on packed boards. These are only an encoding of the grids, used for
+ * hashing (see ForwardModel.hash()), undo journals, snapshots and batches of observations (see GameStateBatch).
+ */
+public class PackedBoard {
+
+    // Bit layout of each cell.
+    static final int TILE_SHIFT = 0;
+    static final int POWERUP_SHIFT = 4;
+    static final int LIFE_SHIFT = 8;
+    static final int BLAST_SHIFT = 16;
+    static final int TYPE_MASK = 0xF;
+    static final int VALUE_MASK = 0xFF;
+
+    // Code used for cells with no tile type (i.e. not initialized).
+    static final int NULL_TILE = 0xF;
+
+    // Cached values of the tile types, indexed by key (TILETYPE.values() allocates a new array on each call).
+    private static final Types.TILETYPE[] TILES = Types.TILETYPE.values();
+
+    // Size of the board.
+    private final int size;
+
+    // Packed cells, 'size * size' long.
+    private final int[] cells;
+
+    /**
+     * Creates an empty packed board.
+     * @param size Size of the board.
+     */
+    public PackedBoard(int size) {
+        this.size = size;
+        this.cells = new int[size * size];
+    }
+
+    /**
+     * Packs the given grids into a new packed board.
+     * @param board Board of the game.
+     * @param powerups Hidden power-ups of the game.
+     * @param bombBlastStrength Blast strength of bombs mapped on board structure.
+     * @param bombLife Lives of bombs mapped on board structure.
+     */
+    public PackedBoard(Types.TILETYPE[][] board, Types.TILETYPE[][] powerups, int[][] bombBlastStrength,
+                       int[][] bombLife) {
+        this(board.length);
+        pack(board, powerups, bombBlastStrength, bombLife);
+    }
+
+    /**
+     * Overwrites the contents of this packed board with the given grids.
+     * @param board Board of the game.
+     * @param powerups Hidden power-ups of the game.
+     * @param bombBlastStrength Blast strength of bombs mapped on board structure.
+     * @param bombLife Lives of bombs mapped on board structure.
+     */
+    public void pack(Types.TILETYPE[][] board, Types.TILETYPE[][] powerups, int[][] bombBlastStrength,
+                     int[][] bombLife) {
+        for (int y = 0; y < size; y++) {
+            int row = y * size;
+            for (int x = 0; x < size; x++) {
+                Types.TILETYPE pUp = powerups[y][x];
+                cells[row + x] = encode(board[y][x], pUp != null ? pUp.getKey() : 0,
+                        bombLife[y][x], bombBlastStrength[y][x]);
+            }
+        }
+    }
+
+    /**
+     * Writes the contents of this packed board into the given grids, which must be of size 'size x size'.
+     * @param board Board of the game.
+     * @param powerups Hidden power-ups of the game.
+     * @param bombBlastStrength Blast strength of bombs mapped on board structure.
+     * @param bombLife Lives of bombs mapped on board structure.
+     */
+    public void unpack(Types.TILETYPE[][] board, Types.TILETYPE[][] powerups, int[][] bombBlastStrength,
+                       int[][] bombLife) {
+        for (int y = 0; y < size; y++) {
+            int row = y * size;
+            for (int x = 0; x < size; x++) {
+                int cell = cells[row + x];
+                board[y][x] = tileOf(cell);
+                powerups[y][x] = powerUpOf(cell);
+                bombLife[y][x] = lifeOf(cell);
+                bombBlastStrength[y][x] = blastOf(cell);
+            }
+        }
+    }
+
+    /**
+     * Copies the contents of another packed board of the same size into this one.
+     * @param other Packed board to copy from.
+     */
+    public void copyFrom(PackedBoard other) {
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+    }
+
+    /**
+     * @return a copy of this packed board.
+     */
+    public PackedBoard copy() {
+        PackedBoard copy = new PackedBoard(size);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /* ----- Cell accessors ----- */
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCell(int x, int y) {
+        return cells[y * size + x];
+    }
+
+    public void setCell(int x, int y, int cell) {
+        cells[y * size + x] = cell;
+    }
+
+    public Types.TILETYPE getTile(int x, int y) {
+        return tileOf(cells[y * size + x]);
+    }
+
+    public Types.TILETYPE getPowerUp(int x, int y) {
+        return powerUpOf(cells[y * size + x]);
+    }
+
+    public int getBombLife(int x, int y) {
+        return lifeOf(cells[y * size + x]);
+    }
+
+    public int getBombBlastStrength(int x, int y) {
+        return blastOf(cells[y * size + x]);
+    }
+
+    /**
+     * @return the backing array of packed cells, indexed by 'y * size + x'.
+     */
+    int[] getCells() {
+        return cells;
+    }
+
+    /* ----- Encoding and decoding of a single cell ----- */
+
+    /**
+     * Encodes the contents of a cell.
+     * @param tile Tile type on the board, may be null.
+     * @param powerUpKey Key of the hidden power-up, 0 if none.
+     * @param bombLife Life of the bomb in this cell, in [0, 255].
+     * @param blastStrength Blast strength of the bomb in this cell, in [0, 255].
+     * @return the packed cell.
+     */
+    public static int encode(Types.TILETYPE tile, int powerUpKey, int bombLife, int blastStrength) {
+        int tileKey = tile != null ? tile.getKey() : NULL_TILE;
+        return (tileKey << TILE_SHIFT)
+                | ((powerUpKey & TYPE_MASK) << POWERUP_SHIFT)
+                | ((bombLife & VALUE_MASK) << LIFE_SHIFT)
+                | ((blastStrength & VALUE_MASK) << BLAST_SHIFT);
+    }
+
+    public static Types.TILETYPE tileOf(int cell) {
+        int key = (cell >>> TILE_SHIFT) & TYPE_MASK;
+        return key == NULL_TILE ? null : TILES[key];
+    }
+
+    public static Types.TILETYPE powerUpOf(int cell) {
+        int key = (cell >>> POWERUP_SHIFT) & TYPE_MASK;
+        return key == 0 ? null : TILES[key];
+    }
+
+    public static int lifeOf(int cell) {
+        return (cell >>> LIFE_SHIFT) & VALUE_MASK;
+    }
+
+    public static int blastOf(int cell) {
+        return (cell >>> BLAST_SHIFT) & VALUE_MASK;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PackedBoard))
+            return false;
+        PackedBoard pb = (PackedBoard) o;
+        return size == pb.size && Arrays.equals(cells, pb.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(cells);
+    }
+}
@@ -0,0 +1,41 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import utils.Types;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedBoardTest {
+
+    @Test
+    void encodeDecode() {
+        int cell = PackedBoard.encode(Types.TILETYPE.BOMB, Types.TILETYPE.KICK.getKey(), 9, 4);
+        assertEquals(Types.TILETYPE.BOMB, PackedBoard.tileOf(cell));
+        assertEquals(Types.TILETYPE.KICK, PackedBoard.powerUpOf(cell));
+        assertEquals(9, PackedBoard.lifeOf(cell));
+        assertEquals(4, PackedBoard.blastOf(cell));
+
+        cell = PackedBoard.encode(null, 0, 0, 0);
+        assertNull(PackedBoard.tileOf(cell));
+        assertNull(PackedBoard.powerUpOf(cell));
+    }
+
+    @Test
+    void packUnpackRoundTrip() {
+        GameState gs = new GameState(12345, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        for (int i = 0; i < 30; i++) {
+            gs.next(new Types.ACTIONS[]{Types.ACTIONS.ACTION_BOMB, Types.ACTIONS.ACTION_DOWN,
+                    Types.ACTIONS.ACTION_BOMB, Types.ACTIONS.ACTION_RIGHT});
+        }
+
+        PackedBoard packed = gs.model.pack(null);
+        GameState copy = gs.copy();
+        ForwardModel fm = copy.model;
+        fm.unpack(new GameState(54321, Types.BOARD_SIZE, Types.GAME_MODE.FFA).model.pack(null));
+        assertNotEquals(gs, copy);
+        fm.unpack(packed);
+
+        assertEquals(gs, copy);
+        assertEquals(packed, copy.model.pack(packed.copy()));
+    }
+}
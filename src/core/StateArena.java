@@ -0,0 +1,175 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * Off-heap store of game states, for keeping very large numbers of states alive (e.g. in closed-loop search or
+ * dataset generation) without the heap cost and garbage collection pauses of their object graphs.
+ * States are stored as snapshots (see GameState.writeSnapshot()) in fixed-size slots of direct buffers allocated
+ * outside the Java heap, and addressed by index. A state is only turned back into objects when it is read with
+ * get(), which can reuse an existing GameState; view() gives access to the encoded bytes without copying them.
+ * Memory is allocated in chunks as states are added and is only released when the arena is garbage collected.
+ * The arena is not thread-safe, but views of states already added can be read from any thread.
+ */
+public class StateArena {
+
+    // Bytes taken by the length of the snapshot at the start of every slot.
+    private static final int LENGTH_BYTES = 4;
+
+    // Maximum size of a chunk of slots, direct buffers can't be larger than 2 GB.
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    // Size of the slots, and number of slots per chunk.
+    private final int slotSize;
+    private final int slotsPerChunk;
+
+    // Chunks of slots, in order. Slot i is in chunk 'i / slotsPerChunk'.
+    private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+
+    // Number of states in the arena.
+    private int nStates = 0;
+
+    /**
+     * Creates an empty arena.
+     * @param slotSize - size of the slots, in bytes. States whose snapshots (GameState.getSnapshotSize()) take more
+     *                 than 'slotSize - 4' bytes can't be stored. Snapshots of 11x11 boards take 629 bytes (713 with
+     *                 radio messages) plus 24 per bomb and 16 per flame.
+     */
+    public StateArena(int slotSize) {
+        this(slotSize, Math.max(1, MAX_CHUNK_BYTES / slotSize));
+    }
+
+    /**
+     * Creates an empty arena.
+     * @param slotSize - size of the slots, in bytes.
+     * @param slotsPerChunk - number of slots allocated at once when the arena is full.
+     */
+    public StateArena(int slotSize, int slotsPerChunk) {
+        if (slotSize <= LENGTH_BYTES || (long) slotSize * slotsPerChunk > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid arena slot size " + slotSize + " for " + slotsPerChunk
+                    + " slots per chunk");
+        this.slotSize = slotSize;
+        this.slotsPerChunk = slotsPerChunk;
+    }
+
+    /**
+     * Adds a state at the end of the arena.
+     * @param gs - state to add. It's encoded, the arena doesn't keep references to it.
+     * @return the index of the state in the arena.
+     */
+    public int add(GameState gs) {
+        if (nStates == chunks.size() * slotsPerChunk) {
+            chunks.add(ByteBuffer.allocateDirect(slotsPerChunk * slotSize).order(ByteOrder.nativeOrder()));
+        }
+        write(nStates, gs);
+        return nStates++;
+    }
+
+    /**
+     * Replaces a state of the arena.
+     * @param index - index of the state to replace.
+     * @param gs - new state.
+     */
+    public void set(int index, GameState gs) {
+        checkIndex(index);
+        write(index, gs);
+    }
+
+    /**
+     * Restores a state of the arena into an existing game state, in place (see GameState.readSnapshot()).
+     * @param index - index of the state.
+     * @param target - state to restore into.
+     * @return the target state.
+     */
+    public GameState get(int index, GameState target) {
+        checkIndex(index);
+        ByteBuffer chunk = slot(index);
+        chunk.getInt();
+        target.readSnapshot(chunk);
+        return target;
+    }
+
+    /**
+     * Creates a new game state from a state of the arena.
+     * @param index - index of the state.
+     * @return the new state.
+     */
+    public GameState get(int index) {
+        checkIndex(index);
+        ByteBuffer chunk = slot(index);
+        chunk.getInt();
+        return GameState.fromSnapshot(chunk);
+    }
+
+    /**
+     * Gives access to the encoded bytes of a state, without copying them. The view is read-only and is not affected
+     * by other calls to the arena, but its contents change if the state is replaced with set().
+     * @param index - index of the state.
+     * @return a buffer with the snapshot of the state between its position and its limit, in native byte order.
+     */
+    public ByteBuffer view(int index) {
+        checkIndex(index);
+        ByteBuffer chunk = slot(index);
+        int length = chunk.getInt();
+        ByteBuffer view = chunk.slice().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+        view.limit(length);
+        return view;
+    }
+
+    /**
+     * @return the number of states in the arena.
+     */
+    public int size() {
+        return nStates;
+    }
+
+    /**
+     * @return the number of bytes allocated off-heap by the arena.
+     */
+    public long getAllocatedBytes() {
+        return (long) chunks.size() * slotsPerChunk * slotSize;
+    }
+
+    /**
+     * Removes all states from the arena. Allocated memory is kept and reused for new states.
+     */
+    public void clear() {
+        nStates = 0;
+    }
+
+    /**
+     * Writes a state into a slot.
+     * @param index - index of the slot.
+     * @param gs - state to write.
+     */
+    private void write(int index, GameState gs) {
+        int length = gs.getSnapshotSize();
+        if (length > slotSize - LENGTH_BYTES)
+            throw new IllegalArgumentException("State takes " + length + " bytes, more than the " +
+                    (slotSize - LENGTH_BYTES) + " available in the slots of the arena");
+
+        ByteBuffer chunk = slot(index);
+        chunk.putInt(length);
+        gs.writeSnapshot(chunk);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= nStates)
+            throw new IndexOutOfBoundsException("State " + index + " not in arena of size " + nStates);
+    }
+
+    /**
+     * Positions the chunk that holds a slot at the start of the slot.
+     * @param index - index of the slot.
+     * @return the chunk, positioned at the slot and limited to its end.
+     */
+    private ByteBuffer slot(int index) {
+        ByteBuffer chunk = chunks.get(index / slotsPerChunk);
+        int start = (index % slotsPerChunk) * slotSize;
+        chunk.limit(start + slotSize);
+        chunk.position(start);
+        return chunk;
+    }
+}
@@ -0,0 +1,52 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import utils.Types;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateArenaTest {
+
+    @Test
+    void storesStatesByIndex() {
+        StateArena arena = new StateArena(2048, 16);  // Small chunks, so states are spread over several
+        ArrayList<Long> hashes = new ArrayList<>();
+        Random rnd = new Random(7);
+        Types.ACTIONS[] allActions = Types.ACTIONS.values();
+
+        GameState gs = new GameState(9, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        while (!gs.isTerminal()) {
+            assertEquals(hashes.size(), arena.add(gs));
+            hashes.add(gs.hash());
+
+            Types.ACTIONS[] actions = new Types.ACTIONS[Types.NUM_PLAYERS];
+            for (int i = 0; i < actions.length; i++) {
+                actions[i] = allActions[rnd.nextInt(allActions.length)];
+            }
+            gs.next(actions);
+        }
+        assertEquals(hashes.size(), arena.size());
+        assertTrue(arena.getAllocatedBytes() >= 2048L * hashes.size());
+
+        GameState target = new GameState(1, Types.BOARD_SIZE, Types.GAME_MODE.FFA);
+        for (int i = hashes.size() - 1; i >= 0; i--) {
+            GameState restored = arena.get(i);
+            assertEquals(i, restored.getTick());
+            assertEquals((long) hashes.get(i), restored.hash());
+            assertEquals(restored, arena.get(i, target));
+
+            ByteBuffer view = arena.view(i);
+            assertEquals(restored.getSnapshotSize(), view.remaining());
+            assertEquals(restored, GameState.fromSnapshot(view));
+        }
+
+        arena.set(0, gs);
+        assertEquals(gs, arena.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> arena.get(hashes.size()));
+        assertThrows(IllegalArgumentException.class, () -> new StateArena(64).add(gs));
+    }
+}
@@ -0,0 +1,469 @@
+package core;
+
+import players.Player;
+import utils.SequentialTest;
+import utils.Types;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a tournament between a set of players: 'repetitions' games for each level seed given, and aggregates their
+ * win, tie, loss and overtime counts. Games are independent, so they are played in parallel by a pool of workers.
+ * Each worker plays its games with its own copies of the players (see Player.copy()) and a new Game per game.
+ * Game k (the i-th repetition of seed s, k = s * repetitions + i) always uses the same seeds: the level seed s and
+ * the player seed 'playerSeed + k', so results don't depend on the number of workers, or on which worker plays
+ * each game, as long as players only depend on their seeds (i.e. they use iteration budgets and
+ * Types.CHECK_DECISION_TIME is off).
+ * A line is printed per game: player seed, level seed, game and results. With ordered output (the default) lines are
+ * printed in game order, so the output is the same as with a single worker, i.e. as if the games had been played
+ * sequentially.
+ * Workers (and the threads of the players, if games are run with separate threads) are created by a configurable
+ * thread factory. With virtual threads (see virtualThreadFactory()), thousands of games can be in flight at the same
+ * time, multiplexed over a small pool of carrier threads, which pays off when players spend most of their time
+ * waiting, e.g. for remote agents.
+ * Results can be saved to a journal (see setJournal()), a text file to which a line is appended per game, in game
+ * order, as soon as the games before it have ended.
+ * Games already in the journal are not played again, so a tournament that was interrupted can be resumed by running
+ * it again with the same journal, and its partial results can be read at any time with readJournal(). A resumed
+ * tournament plays the remaining games with the player seeds of the interrupted one, read from the journal.
+ * A tournament played to compare two players can stop as soon as a sequential test decides which one is better (see
+ * setStoppingRule()). The test is updated with the games in game order, so where it stops doesn't depend on the
+ * number of workers either.
+ */
+public class Tournament {
+
+    // Players, game mode, board size and identifier of the configuration played (for logging purposes).
+    private final ArrayList<Player> players;
+    private final Types.GAME_MODE gameMode;
+    private final int boardSize;
+    private final String gameIdStr;
+
+    // Number of worker threads.
+    private final int nWorkers;
+
+    // If true, the lines of the games are printed in game order. Otherwise, as games end.
+    private boolean orderedOutput = true;
+
+    // Stream where the results are printed.
+    private PrintStream out = System.out;
+
+    // Creates the threads of the workers and of the players. If null, platform threads are used.
+    private ThreadFactory threadFactory = null;
+
+    // If true, players of each game decide in their own threads (see Game.run()).
+    private boolean separateThreads = false;
+
+    // Journal of the results of the games played, null if not kept.
+    private File journal = null;
+    private PrintWriter journalWriter;
+
+    // Results of the last run.
+    private TournamentResults tournamentResults;
+    private int totalNgames;
+
+    // Test that decides when to stop playing games, null to play all games.
+    private SequentialTest stoppingRule = null;
+
+    // Seed for the players of the current run, game k is played with seed 'playerSeed + k'.
+    private long playerSeed;
+
+    // Results of the games of the current run, by game, and number of games to play. Games from 'nGamesToPlay'
+    // on are not played, or not counted (nor journaled) if they're being played when the stopping rule decides.
+    private Types.RESULT[][] gameResults;
+    private volatile int nGamesToPlay;
+
+    // Lines of the games of the current run waiting to be processed in order, lines to append to the journal for
+    // them (null for games read from the journal), and next game to process.
+    private String[] pendingLines;
+    private String[] pendingJournalLines;
+    private int nextLine;
+
+    /**
+     * Creates a tournament.
+     * @param players - players of the tournament, in the order of their avatars. They are not modified, workers play
+     *                with copies of them.
+     * @param gameMode - game mode played.
+     * @param boardSize - size of the board.
+     * @param gameIdStr - identifier of the configuration played, used to name the log files.
+     * @param nWorkers - number of games played at the same time. <= 0 to use all available processors. With virtual
+     *                 threads (see setThreadFactory()), this can be much larger than the number of processors.
+     */
+    public Tournament(ArrayList<Player> players, Types.GAME_MODE gameMode, int boardSize, String gameIdStr,
+                      int nWorkers) {
+        this.players = players;
+        this.gameMode = gameMode;
+        this.boardSize = boardSize;
+        this.gameIdStr = gameIdStr;
+        this.nWorkers = nWorkers > 0 ? nWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @param orderedOutput - true to print the lines of the games in game order (default), false to print them as
+     *                      soon as games end.
+     */
+    public void setOrderedOutput(boolean orderedOutput) {
+        this.orderedOutput = orderedOutput;
+    }
+
+    /**
+     * @param out - stream where the results are printed. System.out by default.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param threadFactory - factory of the threads of the workers, and of the players if games are run with
+     *                      separate threads. Null for platform threads (default).
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * @param separateThreads - true to run the players of each game in their own threads, false to let the worker
+     *                        ask them for actions in turns (default).
+     */
+    public void setSeparateThreads(boolean separateThreads) {
+        this.separateThreads = separateThreads;
+    }
+
+    /**
+     * Sets the journal of the tournament. Each line of the journal holds the results of a game: identifier of the
+     * configuration played (see the constructor), level seed, repetition, player seed and the result and overtimes of
+     * each player, separated by tabs. Games of the same configuration, seed and repetition found in the journal when
+     * the tournament is run are not played again, and count with the results recorded.
+     * @param journal - journal file, created if it doesn't exist. Null to play all games without a journal (default).
+     */
+    public void setJournal(File journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets a test that stops the tournament early, e.g. to stop comparing two players as soon as it's known which one
+     * is better. After each game (in game order), the test is updated with its results, and no more games are
+     * played once it makes a decision.
+     * @param stoppingRule - new test, not updated with any game yet. Null to play all games (default).
+     */
+    public void setStoppingRule(SequentialTest stoppingRule) {
+        this.stoppingRule = stoppingRule;
+    }
+
+    /**
+     * Gives a factory of virtual threads, if the Java runtime supports them (Java 21 or later). Virtual threads are
+     * scheduled over a pool of carrier threads as big as the number of processors, unless changed with the system
+     * property 'jdk.virtualThreadScheduler.parallelism'.
+     * @return the factory, or null if virtual threads are not available.
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        try {
+            // Looked up reflectively, so the framework still builds and runs on older runtimes.
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Plays all games of the tournament and prints the results.
+     * @param seeds - level generation seeds.
+     * @param repetitions - games played per seed.
+     * @param playerSeed - seed for the players, game k is played with seed 'playerSeed + k'. Ignored when resuming
+     *                   from a journal with games of this tournament, which keeps the seed they were played with.
+     */
+    public void run(long[] seeds, int repetitions, long playerSeed) {
+        int numPlayers = players.size();
+        tournamentResults = new TournamentResults(numPlayers);
+        totalNgames = seeds.length * repetitions;
+
+        Types.RESULT[][] results = new Types.RESULT[totalNgames][];
+        int[][] overtimes = new int[totalNgames][];
+        gameResults = results;
+        nGamesToPlay = totalNgames;
+        pendingLines = new String[totalNgames];
+        pendingJournalLines = new String[totalNgames];
+        nextLine = 0;
+        this.playerSeed = playerSeed;
+
+        // Games already played, according to the journal, are skipped
+        int nPlayed = 0;
+        if (journal != null) {
+            nPlayed = resume(seeds, repetitions, results, overtimes);
+        }
+        long runPlayerSeed = this.playerSeed;
+
+        // Workers take the next game to play from a shared counter, so they stay busy until all games are played.
+        AtomicInteger nextGame = new AtomicInteger();
+        ArrayList<Callable<Void>> workers = new ArrayList<>();
+        for (int w = 0; w < Math.min(nWorkers, totalNgames - nPlayed); w++) {
+            workers.add(() -> {
+                ArrayList<Player> workerPlayers = new ArrayList<>(numPlayers);
+                for (Player p : players) {
+                    workerPlayers.add(p.copy());
+                }
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                PrintStream gameOut = new PrintStream(buffer, true);
+
+                for (int k = nextGame.getAndIncrement(); k < nGamesToPlay; k = nextGame.getAndIncrement()) {
+                    if (results[k] != null)
+                        continue;  // Played in a previous run
+
+                    long seed = seeds[k / repetitions];
+                    int rep = k % repetitions;
+                    long gamePlayerSeed = runPlayerSeed + k;
+
+                    buffer.reset();
+                    gameOut.print(gamePlayerSeed + ", " + seed + ", " + k + "/" + totalNgames + ", ");
+
+                    Game game = new Game(seed, boardSize, gameMode, gameIdStr);
+                    game.setRepetition(rep);
+                    game.setOutput(gameOut);
+                    game.setThreadFactory(threadFactory);
+                    for (int p = 0; p < numPlayers; p++) {
+                        workerPlayers.get(p).reset(gamePlayerSeed, p + Types.TILETYPE.AGENT0.getKey());
+                    }
+                    game.setPlayers(workerPlayers);
+
+                    results[k] = game.run(separateThreads);
+                    overtimes[k] = game.getPlayerOvertimes().clone();
+                    String journalLine = journalWriter != null ?
+                            journalLine(seed, rep, gamePlayerSeed, results[k], overtimes[k]) : null;
+                    gameEnded(k, buffer.toString(), journalLine);
+                }
+                return null;
+            });
+        }
+
+        int poolSize = Math.max(1, workers.size());
+        ExecutorService pool = threadFactory != null ? Executors.newFixedThreadPool(poolSize, threadFactory)
+                : Executors.newFixedThreadPool(poolSize);
+        try {
+            for (Future<Void> f : pool.invokeAll(workers)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            if (journalWriter != null) {
+                journalWriter.close();
+                journalWriter = null;
+            }
+        }
+
+        // Merge the results in game order
+        totalNgames = nGamesToPlay;
+        for (int k = 0; k < totalNgames; k++) {
+            tournamentResults.add(results[k], overtimes[k]);
+        }
+        tournamentResults.print(out, players);
+        if (stoppingRule != null)
+            out.println(stoppingRule);
+    }
+
+    /**
+     * Reads the games of this tournament already in the journal, and opens it to append the games played now. If
+     * there are any, the player seed of the run is set to the one they were played with.
+     * @param seeds - level generation seeds.
+     * @param repetitions - games played per seed.
+     * @param results - results of the games, filled for the games in the journal.
+     * @param overtimes - overtimes of the games, filled for the games in the journal.
+     * @return the number of games already in the journal.
+     */
+    private int resume(long[] seeds, int repetitions, Types.RESULT[][] results, int[][] overtimes) {
+        HashMap<String, String[]> played = new HashMap<>();
+        for (String[] entry : readJournalEntries(journal, gameIdStr, players.size())) {
+            played.putIfAbsent(entry[1] + "\t" + entry[2], entry);  // First results count, as in readJournal()
+        }
+
+        int nPlayed = 0;
+        for (int k = 0; k < totalNgames; k++) {
+            String[] entry = played.get(seeds[k / repetitions] + "\t" + (k % repetitions));
+            if (entry == null)
+                continue;
+            if (nPlayed == 0)
+                playerSeed = Long.parseLong(entry[3]) - k;
+            results[k] = parseResults(entry, players.size());
+            overtimes[k] = parseOvertimes(entry, players.size());
+            gameEnded(k, entry[3] + ", " + entry[1] + ", " + k + "/" + totalNgames + ", " +
+                    TournamentResults.format(results[k], overtimes[k]) + "\n", null);
+            nPlayed++;
+        }
+
+        try {
+            // A line may have been left incomplete if the JVM died while writing it
+            boolean newLine = journal.length() > 0 && !endsWithNewLine(journal);
+            journalWriter = new PrintWriter(new BufferedWriter(new FileWriter(journal, true)));
+            if (newLine)
+                journalWriter.println();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open journal " + journal, e);
+        }
+        return nPlayed;
+    }
+
+    /**
+     * Formats the line of the journal with the results of a game.
+     */
+    private String journalLine(long seed, int rep, long playerSeed, Types.RESULT[] results, int[] overtimes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(gameIdStr).append('\t').append(seed).append('\t').append(rep).append('\t').append(playerSeed);
+        for (Types.RESULT r : results) {
+            sb.append('\t').append(r);
+        }
+        for (int o : overtimes) {
+            sb.append('\t').append(o);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the results of the games of a configuration from a journal, e.g. to see the results of a tournament that
+     * is still running or was interrupted. Games played more than once count once, with their first results.
+     * @param journal - journal file (see setJournal()).
+     * @param gameIdStr - identifier of the configuration played.
+     * @param numPlayers - number of players of the games.
+     * @return the results of the games in the journal.
+     */
+    public static TournamentResults readJournal(File journal, String gameIdStr, int numPlayers) {
+        TournamentResults tournamentResults = new TournamentResults(numPlayers);
+        HashMap<String, String[]> played = new HashMap<>();
+        for (String[] entry : readJournalEntries(journal, gameIdStr, numPlayers)) {
+            if (played.putIfAbsent(entry[1] + "\t" + entry[2], entry) == null) {
+                tournamentResults.add(parseResults(entry, numPlayers), parseOvertimes(entry, numPlayers));
+            }
+        }
+        return tournamentResults;
+    }
+
+    /**
+     * Reads the lines of a journal for a configuration, split in fields. Lines that are not complete are ignored.
+     */
+    private static ArrayList<String[]> readJournalEntries(File journal, String gameIdStr, int numPlayers) {
+        ArrayList<String[]> entries = new ArrayList<>();
+        if (!journal.exists())
+            return entries;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] entry = line.split("\t", -1);
+                if (entry.length != 4 + 2 * numPlayers || !entry[0].equals(gameIdStr))
+                    continue;
+                try {
+                    parseResults(entry, numPlayers);
+                    parseOvertimes(entry, numPlayers);
+                    entries.add(entry);
+                } catch (IllegalArgumentException e) {
+                    // Incomplete line
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read journal " + journal, e);
+        }
+        return entries;
+    }
+
+    private static Types.RESULT[] parseResults(String[] entry, int numPlayers) {
+        Types.RESULT[] results = new Types.RESULT[numPlayers];
+        for (int i = 0; i < numPlayers; i++) {
+            results[i] = Types.RESULT.valueOf(entry[4 + i]);
+        }
+        return results;
+    }
+
+    private static int[] parseOvertimes(String[] entry, int numPlayers) {
+        int[] overtimes = new int[numPlayers];
+        for (int i = 0; i < numPlayers; i++) {
+            overtimes[i] = Integer.parseInt(entry[4 + numPlayers + i]);
+        }
+        return overtimes;
+    }
+
+    private static boolean endsWithNewLine(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    /**
+     * Processes a game that ended: prints its line, or keeps it until the lines of all previous games have been
+     * printed if output is ordered, and appends it to the journal and updates the stopping rule with the games ended
+     * so far, in game order. Games after the one the stopping rule decides at are never journaled, so a resumed
+     * tournament stops at the same game. Journal lines are flushed as soon as they're written, so they're kept if the
+     * JVM dies; games that ended before previous ones are played again then.
+     * @param k - index of the game.
+     * @param line - line of the game.
+     * @param journalLine - line to append to the journal, null if the game is not journaled.
+     */
+    private synchronized void gameEnded(int k, String line, String journalLine) {
+        if (!orderedOutput)
+            out.print(line);
+        pendingLines[k] = line;
+        pendingJournalLines[k] = journalLine;
+        while (nextLine < nGamesToPlay && pendingLines[nextLine] != null) {
+            if (orderedOutput)
+                out.print(pendingLines[nextLine]);
+            if (pendingJournalLines[nextLine] != null) {
+                journalWriter.println(pendingJournalLines[nextLine]);
+                journalWriter.flush();
+            }
+            pendingLines[nextLine] = null;
+            pendingJournalLines[nextLine] = null;
+            if (stoppingRule != null && stoppingRule.add(gameResults[nextLine]) != SequentialTest.DECISION.UNDECIDED)
+                nGamesToPlay = nextLine + 1;  // Decided, no more games
+            nextLine++;
+        }
+    }
+
+    /**
+     * @return games won by each player in the last run.
+     */
+    public int[] getWinCount() {
+        return tournamentResults.getWinCount();
+    }
+
+    /**
+     * @return games tied by each player in the last run.
+     */
+    public int[] getTieCount() {
+        return tournamentResults.getTieCount();
+    }
+
+    /**
+     * @return games lost by each player in the last run.
+     */
+    public int[] getLossCount() {
+        return tournamentResults.getLossCount();
+    }
+
+    /**
+     * @return decisions of each player that took longer than allowed in the last run.
+     */
+    public int[] getOvertimeCount() {
+        return tournamentResults.getOvertimeCount();
+    }
+
+    /**
+     * @return results of the last run.
+     */
+    public TournamentResults getResults() {
+        return tournamentResults;
+    }
+
+    /**
+     * @return number of games counted in the last run: all games, unless the stopping rule stopped it earlier.
+     */
+    public int getTotalGames() {
+        return totalNgames;
+    }
+}
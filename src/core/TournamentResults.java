@@ -0,0 +1,123 @@
+package core;
+
+import players.Player;
+import utils.Types;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Results of a set of games played by the same players: games won, tied and lost, and decisions that took too long,
+ * per player. Games can be added in any order, and the results are printed as a table, as Run prints them.
+ */
+public class TournamentResults {
+
+    // Games won, tied and lost, and decisions that took too long, per player.
+    private final int[] winCount, tieCount, lossCount, overtimeCount;
+
+    // Number of games added.
+    private int nGames = 0;
+
+    /**
+     * Creates empty results.
+     * @param numPlayers - number of players of the games.
+     */
+    public TournamentResults(int numPlayers) {
+        winCount = new int[numPlayers];
+        tieCount = new int[numPlayers];
+        lossCount = new int[numPlayers];
+        overtimeCount = new int[numPlayers];
+    }
+
+    /**
+     * Adds the results of a game.
+     * @param results - result of each player.
+     * @param overtimes - decisions of each player that took too long.
+     */
+    public void add(Types.RESULT[] results, int[] overtimes) {
+        for (int pIdx = 0; pIdx < winCount.length; pIdx++) {
+            switch (results[pIdx]) {
+                case WIN:
+                    winCount[pIdx]++;
+                    break;
+                case TIE:
+                    tieCount[pIdx]++;
+                    break;
+                case LOSS:
+                    lossCount[pIdx]++;
+                    break;
+            }
+            overtimeCount[pIdx] += overtimes[pIdx];
+        }
+        nGames++;
+    }
+
+    /**
+     * Prints the results as a table, one row per player, with the percentage of games won, tied and lost.
+     * @param out - stream to print to.
+     * @param players - players, to name the rows after their classes.
+     */
+    public void print(PrintStream out, List<? extends Player> players) {
+        out.println("N \tWin \tTie \tLoss \tPlayer (overtime average)");
+        for (int pIdx = 0; pIdx < winCount.length; pIdx++) {
+            String player = players.get(pIdx).getClass().toString().replaceFirst("class ", "");
+
+            double winPerc = winCount[pIdx] * 100.0 / (double)nGames;
+            double tiePerc = tieCount[pIdx] * 100.0 / (double)nGames;
+            double lossPerc = lossCount[pIdx] * 100.0 / (double)nGames;
+            double overtimesAvg = overtimeCount[pIdx] / (double)nGames;
+
+            out.println(nGames + "\t" + winPerc + "%\t" + tiePerc + "%\t" + lossPerc + "%\t" + player + " (" + overtimesAvg + ")" );
+        }
+    }
+
+    /**
+     * Formats the results of a game as Game prints them when it ends.
+     * @param results - result of each player.
+     * @param overtimes - decisions of each player that took too long.
+     * @return the results, i.e. "[WIN (0), LOSS (0), LOSS (1), LOSS (0)]".
+     */
+    public static String format(Types.RESULT[] results, int[] overtimes) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < results.length; i++) {
+            sb.append(results[i]).append(" (").append(overtimes[i]).append(")");
+            sb.append(i == results.length - 1 ? "]" : ", ");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return games won by each player.
+     */
+    public int[] getWinCount() {
+        return winCount;
+    }
+
+    /**
+     * @return games tied by each player.
+     */
+    public int[] getTieCount() {
+        return tieCount;
+    }
+
+    /**
+     * @return games lost by each player.
+     */
+    public int[] getLossCount() {
+        return lossCount;
+    }
+
+    /**
+     * @return decisions of each player that took too long.
+     */
+    public int[] getOvertimeCount() {
+        return overtimeCount;
+    }
+
+    /**
+     * @return number of games added.
+     */
+    public int getNumGames() {
+        return nGames;
+    }
+}
@@ -0,0 +1,171 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import players.Player;
+import players.RandomPlayer;
+import players.SimplePlayer;
+import utils.SequentialTest;
+import utils.Types;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TournamentTest {
+
+    @Test
+    void parallelRunMatchesSequentialRun() {
+        boolean checkTime = Types.CHECK_DECISION_TIME;
+        Types.CHECK_DECISION_TIME = false;  // Results must only depend on seeds
+
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(new SimplePlayer(0, Types.TILETYPE.AGENT0.getKey()));
+        players.add(new RandomPlayer(0, Types.TILETYPE.AGENT1.getKey()));
+        players.add(new SimplePlayer(0, Types.TILETYPE.AGENT2.getKey()));
+        players.add(new RandomPlayer(0, Types.TILETYPE.AGENT3.getKey()));
+        long[] seeds = {93988, 19067, 64416};
+
+        String[] outputs = new String[2];
+        int[][] wins = new int[2][];
+        int[] nWorkers = {1, 4};
+        for (int i = 0; i < nWorkers.length; i++) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Tournament tournament = new Tournament(players, Types.GAME_MODE.FFA, Types.BOARD_SIZE, "", nWorkers[i]);
+            tournament.setOutput(new PrintStream(buffer, true));
+            tournament.run(seeds, 3, 42);
+            outputs[i] = buffer.toString();
+            wins[i] = tournament.getWinCount();
+            assertEquals(9, tournament.getTotalGames());
+        }
+        Types.CHECK_DECISION_TIME = checkTime;
+
+        assertEquals(outputs[0], outputs[1]);
+        assertArrayEquals(wins[0], wins[1]);
+        assertTrue(outputs[0].startsWith("42, 93988, 0/9, ["));
+    }
+
+    @Test
+    void customThreadsMatchSequentialRun() {
+        boolean checkTime = Types.CHECK_DECISION_TIME;
+        Types.CHECK_DECISION_TIME = false;
+
+        ArrayList<Player> players = new ArrayList<>();
+        for (int i = 0; i < Types.NUM_PLAYERS; i++) {
+            players.add(new SimplePlayer(0, Types.TILETYPE.AGENT0.getKey() + i));
+        }
+        long[] seeds = {93988, 19067};
+
+        Tournament sequential = new Tournament(players, Types.GAME_MODE.FFA, Types.BOARD_SIZE, "", 1);
+        sequential.setOutput(new PrintStream(new ByteArrayOutputStream(), true));
+        sequential.run(seeds, 2, 7);
+
+        // Workers and players run in threads of the factory
+        AtomicInteger nThreads = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            nThreads.incrementAndGet();
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        };
+        Tournament threaded = new Tournament(players, Types.GAME_MODE.FFA, Types.BOARD_SIZE, "", 16);
+        threaded.setOutput(new PrintStream(new ByteArrayOutputStream(), true));
+        threaded.setThreadFactory(factory);
+        threaded.setSeparateThreads(true);
+        threaded.run(seeds, 2, 7);
+        Types.CHECK_DECISION_TIME = checkTime;
+
+        assertArrayEquals(sequential.getWinCount(), threaded.getWinCount());
+        assertArrayEquals(sequential.getTieCount(), threaded.getTieCount());
+        assertEquals(4 + 4 * Types.NUM_PLAYERS, nThreads.get());  // One worker per game, one thread per player
+    }
+
+    @Test
+    void resumeFromJournal() throws IOException {
+        boolean checkTime = Types.CHECK_DECISION_TIME;
+        Types.CHECK_DECISION_TIME = false;
+
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(new SimplePlayer(0, Types.TILETYPE.AGENT0.getKey()));
+        players.add(new RandomPlayer(0, Types.TILETYPE.AGENT1.getKey()));
+        players.add(new SimplePlayer(0, Types.TILETYPE.AGENT2.getKey()));
+        players.add(new RandomPlayer(0, Types.TILETYPE.AGENT3.getKey()));
+        File journal = File.createTempFile("journal", ".txt");
+        journal.deleteOnExit();
+
+        // Interrupted run: only the games of the first seed were played
+        Tournament first = new Tournament(players, Types.GAME_MODE.FFA, Types.BOARD_SIZE, "id", 2);
+        first.setOutput(new PrintStream(new ByteArrayOutputStream(), true));
+        first.setJournal(journal);
+        first.run(new long[]{93988}, 2, 42);
+
+        // Resumed run, which keeps the player seed of the interrupted run, and the same run from scratch
+        long[] seeds = {93988, 19067};
+        String[] outputs = new String[2];
+        int[][] wins = new int[2][];
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Tournament tournament = new Tournament(players, Types.GAME_MODE.FFA, Types.BOARD_SIZE, "id", 2);
+            tournament.setOutput(new PrintStream(buffer, true));
+            if (i == 0)
+                tournament.setJournal(journal);
+            tournament.run(seeds, 2, i == 0 ? 7 : 42);
+            outputs[i] = buffer.toString().replace(System.lineSeparator(), "\n");
+            wins[i] = tournament.getWinCount();
+        }
+        Types.CHECK_DECISION_TIME = checkTime;
+
+        assertEquals(outputs[1], outputs[0]);
+        assertArrayEquals(wins[1], wins[0]);
+        assertEquals(4, Files.readAllLines(journal.toPath()).size());  // Games of the first seed were not replayed
+
+        TournamentResults fromJournal = Tournament.readJournal(journal, "id", players.size());
+        assertEquals(4, fromJournal.getNumGames());
+        assertArrayEquals(wins[1], fromJournal.getWinCount());
+        assertEquals(0, Tournament.readJournal(journal, "other", players.size()).getNumGames());
+    }
+
+    @Test
+    void stopsWhenComparisonIsDecided() throws IOException {
+        boolean checkTime = Types.CHECK_DECISION_TIME;
+        Types.CHECK_DECISION_TIME = false;
+
+        ArrayList<Player> players = new ArrayList<>();
+        players.add(new SimplePlayer(0, Types.TILETYPE.AGENT0.getKey()));
+        players.add(new RandomPlayer(0, Types.TILETYPE.AGENT1.getKey()));
+        players.add(new RandomPlayer(0, Types.TILETYPE.AGENT2.getKey()));
+        players.add(new RandomPlayer(0, Types.TILETYPE.AGENT3.getKey()));
+        long[] seeds = {93988, 19067, 64416, 83884, 55636};
+
+        String[] outputs = new String[2];
+        int[] nWorkers = {1, 4};
+        for (int i = 0; i < nWorkers.length; i++) {
+            File journal = File.createTempFile("journal", ".txt");
+            journal.deleteOnExit();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Tournament tournament = new Tournament(players, Types.GAME_MODE.FFA, Types.BOARD_SIZE, "", nWorkers[i]);
+            tournament.setOutput(new PrintStream(buffer, true));
+            tournament.setJournal(journal);
+            SequentialTest test = SequentialTest.sprt(0, 1, 0.1, 0.05, 0.05);
+            tournament.setStoppingRule(test);
+            tournament.run(seeds, 10, 42);
+            outputs[i] = buffer.toString();
+
+            // SimplePlayer beats a random player long before the 50 games are played
+            assertEquals(SequentialTest.DECISION.BETTER, test.getDecision());
+            assertEquals(test.getNumGames(), tournament.getTotalGames());
+            assertTrue(tournament.getTotalGames() < 50);
+            // Games still being played when the test decided are not journaled
+            assertEquals(tournament.getTotalGames(), Files.readAllLines(journal.toPath()).size());
+        }
+        Types.CHECK_DECISION_TIME = checkTime;
+
+        assertEquals(outputs[0], outputs[1]);
+    }
+}
@@ -0,0 +1,182 @@
+package core;
+
+import objects.Avatar;
+import objects.Bomb;
+import objects.GameObject;
+import utils.Types;
+import utils.Vector2d;
+
+import java.util.ArrayList;
+
+/**
+ * Journal of the states a GameState went through, used to undo calls to GameState.next().
+ * Each entry records, before the tick is applied, the packed grids of the model and the fields of all objects that
+ * ForwardModel.next() may modify, together with the references to the objects in the bomb, flame and alive agent
+ * lists. Undoing restores those values into the same objects, so no object graph is copied in either direction.
+ * Entries are pooled and reused: once the journal has reached its maximum depth, recording allocates nothing.
+ */
+class UndoJournal {
+
+    // Stack of entries. Only the first 'depth' entries are in use.
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    private int depth = 0;
+
+    /**
+     * @return a clean entry to record a new state into, pushed on top of the journal.
+     */
+    Entry push() {
+        if (depth == entries.size()) {
+            entries.add(new Entry());
+        }
+        return entries.get(depth++);
+    }
+
+    /**
+     * @return the entry on top of the journal, removed from it. Null if the journal is empty.
+     */
+    Entry pop() {
+        if (depth == 0)
+            return null;
+        return entries.get(--depth);
+    }
+
+    /**
+     * @return the number of entries that can be undone.
+     */
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * Removes all entries from the journal. Entries are kept for reuse.
+     */
+    void clear() {
+        depth = 0;
+    }
+
+    /**
+     * A single recorded state.
+     */
+    static class Entry {
+
+        // Integer fields stored per object, and code used for null coordinates.
+        private static final int STRIDE = 7;
+        private static final int NULL_COORD = Integer.MIN_VALUE;
+        private static final Types.RESULT[] RESULTS = Types.RESULT.values();
+
+        // Game state and model tick counters
+        int gsTick;
+        int modelTick;
+
+        // Board, power-ups, bomb life and blast strength grids
+        PackedBoard grids;
+
+        // Hash of the grids, if it had been computed
+        long gridHash;
+        boolean gridHashed;
+
+        // Objects in the lists of the model
+        GameObject[] bombs = new GameObject[8];
+        GameObject[] flames = new GameObject[32];
+        GameObject[] aliveAgents = new GameObject[Types.NUM_PLAYERS];
+        int nBombs, nFlames, nAlive;
+
+        // Fields of the agents, bombs and flames, in this order.
+        private Vector2d[] positions = new Vector2d[64];
+        private int[] values = new int[64 * STRIDE];
+
+        /**
+         * Records the list given into the array given, growing it if needed.
+         * @return the array holding the objects of the list.
+         */
+        static GameObject[] saveList(ArrayList<GameObject> list, GameObject[] array) {
+            if (array.length < list.size()) {
+                array = new GameObject[list.size() * 2];
+            }
+            for (int i = 0; i < list.size(); i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+
+        /**
+         * Restores the contents of a list from the array and number of elements given.
+         */
+        static void restoreList(ArrayList<GameObject> list, GameObject[] array, int n) {
+            list.clear();
+            for (int i = 0; i < n; i++) {
+                list.add(array[i]);
+                array[i] = null;  // Don't keep objects alive through the pool
+            }
+        }
+
+        /**
+         * Makes sure there is room for the given number of objects.
+         */
+        void ensureObjectCapacity(int nObjects) {
+            if (positions.length < nObjects) {
+                positions = new Vector2d[nObjects * 2];
+                values = new int[nObjects * 2 * STRIDE];
+            }
+        }
+
+        /**
+         * Records the fields of an object that may change in a tick.
+         * Positions are stored by reference: the engine replaces position vectors instead of modifying them.
+         * @param slot index of the object in this entry.
+         * @param go object to record.
+         */
+        void saveObject(int slot, GameObject go) {
+            int base = slot * STRIDE;
+            positions[slot] = go.getPosition();
+            Vector2d desired = go.getDesiredCoordinate();
+            values[base] = go.getLife();
+            values[base + 1] = desired != null ? desired.x : NULL_COORD;
+            values[base + 2] = desired != null ? desired.y : NULL_COORD;
+
+            if (go instanceof Avatar) {
+                Avatar a = (Avatar) go;
+                values[base + 3] = a.getAmmo();
+                values[base + 4] = a.getBlastStrength();
+                values[base + 5] = a.canKick() ? 1 : 0;
+                values[base + 6] = a.getWinner().ordinal();
+            } else if (go instanceof Bomb) {
+                Bomb b = (Bomb) go;
+                values[base + 3] = b.getVelocity().x;
+                values[base + 4] = b.getVelocity().y;
+            }
+        }
+
+        /**
+         * Restores the fields of an object recorded with saveObject().
+         * @param slot index of the object in this entry.
+         * @param go object to restore.
+         */
+        void restoreObject(int slot, GameObject go) {
+            int base = slot * STRIDE;
+            Vector2d position = positions[slot];
+            positions[slot] = null;
+            if (position == null) {
+                go.setPositionNull();
+            } else if (!position.equals(go.getPosition())) {
+                go.setPosition(position);
+            }
+            go.setLife(values[base]);
+            if (values[base + 1] == NULL_COORD) {
+                go.setDesiredCoordinateNull();
+            } else {
+                go.setDesiredCoordinate(values[base + 1], values[base + 2]);
+            }
+
+            if (go instanceof Avatar) {
+                Avatar a = (Avatar) go;
+                a.setAmmo(values[base + 3]);
+                a.setBlastStrength(values[base + 4]);
+                a.setCanKick(values[base + 5] == 1);
+                a.setWinner(RESULTS[values[base + 6]]);
+            } else if (go instanceof Bomb) {
+                ((Bomb) go).setVelocity(values[base + 3], values[base + 4]);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package core;
+
+/**
+ * Keys for Zobrist hashing of game states. Instead of tables of random numbers, each key is obtained by mixing the
+ * table, index and value it stands for with the SplitMix64 finalizer. The finalizer is a bijection on 64-bit values,
+ * so every (table, index, value) triple gets a distinct, well distributed key, for any board size and without
+ * allocating tables. Keys are the same on every run, so hashes can be compared across games and processes.
+ */
+final class Zobrist {
+
+    // Tables of keys
+    static final int CELL = 0;    // Packed contents of a board cell (see PackedBoard), by cell index
+    static final int FLAME = 1;   // Life of a flame, by cell index
+    static final int BOMB = 2;    // Velocity and owner of a bomb, by cell index
+    static final int AGENT = 3;   // Properties of an agent, by player index
+    static final int TICK = 4;    // Game tick
+
+    // Fixed seed, so keys don't depend on the run
+    private static final long SEED = 0x5DEECE66DL;
+
+    private Zobrist() {}
+
+    /**
+     * @param table table of keys, one of the constants in this class.
+     * @param index index within the table, in [0, 2^24).
+     * @param value value to get the key for.
+     * @return the key of the given value at the given index of a table.
+     */
+    static long key(int table, int index, int value) {
+        long z = ((long) table << 56) ^ ((long) index << 32) ^ (value & 0xFFFFFFFFL);
+        z += SEED;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -129,6 +129,10 @@ public class Avatar extends GameObject {
         this.canKick = true;
     }
 
+    public void setCanKick(boolean canKick) {
+        this.canKick = canKick;
+    }
+
     public void setWinner(Types.RESULT winner) {
         this.winner = winner;
     }
@@ -1,7 +1,6 @@
 package objects;
 
 import utils.Types;
-import utils.Utils;
 import utils.Vector2d;
 
 import java.util.ArrayList;
@@ -10,6 +9,12 @@ import static utils.Types.*;
 
 public class Bomb extends GameObject {
 
+    // Flames can't be created on top of rigid blocks
+    private static final ArrayList<Types.TILETYPE> FLAME_COLLISIONS = new ArrayList<>();
+    static {
+        FLAME_COLLISIONS.add(Types.TILETYPE.RIGID);
+    }
+
     private int blastStrength;
     private Vector2d velocity;
     private int playerIdx;
@@ -26,12 +31,28 @@ public class Bomb extends GameObject {
         super(Types.TILETYPE.BOMB);
         blastStrength = DEFAULT_BOMB_BLAST;
         life = BOMB_LIFE;
+        velocity = new Vector2d();
+    }
+
+    /**
+     * Resets this bomb to the state of a newly created one, so it can be reused instead of allocating a new one.
+     * The position and desired coordinate are kept, they must be set by the caller.
+     * @param blastStrength blast strength of the bomb.
+     * @param life life of the bomb.
+     * @param pIdx index of the player that placed the bomb.
+     */
+    public void reset(int blastStrength, int life, int pIdx) {
+        this.life = life;
+        this.blastStrength = blastStrength;
+        this.playerIdx = pIdx;
+        this.id = 0;
+        velocity.zero();
     }
 
     @Override
     public void tick() {
         life--;
-        desiredCoordinate = position.add(velocity);
+        setDesiredCoordinate(position.x + velocity.x, position.y + velocity.y);
     }
 
     @Override
@@ -46,23 +67,53 @@ public class Bomb extends GameObject {
 
     public ArrayList<GameObject> explode(boolean forceExplode, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups) {
         ArrayList<GameObject> flames = new ArrayList<>();
+        if (explode(forceExplode, board, powerups, flames)) {
+            return flames;
+        }
+        return null;
+    }
 
+    /**
+     * Explodes this bomb if its life reached 0 or if forced to, adding the flames created to the list given.
+     * @param forceExplode true if the bomb should explode regardless of its life.
+     * @param board board of the game, flames are placed on it.
+     * @param powerups power-ups of the game.
+     * @param flames list to which the new flames are added.
+     * @return true if the bomb exploded, false otherwise.
+     */
+    public boolean explode(boolean forceExplode, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups,
+                           ArrayList<GameObject> flames) {
+        return explode(forceExplode, board, powerups, flames, null);
+    }
+
+    /**
+     * Same as explode(boolean, TILETYPE[][], TILETYPE[][], ArrayList), taking the new flames from a pool of dead
+     * flames before allocating new ones.
+     * @param forceExplode true if the bomb should explode regardless of its life.
+     * @param board board of the game, flames are placed on it.
+     * @param powerups power-ups of the game.
+     * @param flames list to which the new flames are added.
+     * @param flamePool flames that can be reused, taken from the end of the list. May be null.
+     * @return true if the bomb exploded, false otherwise.
+     */
+    public boolean explode(boolean forceExplode, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups,
+                           ArrayList<GameObject> flames, ArrayList<GameObject> flamePool) {
         if (life == 0 || forceExplode) {
             if (VERBOSE)
                 System.out.println("KABOOM at "+position.toString());
 
             // First add the flame at the current position
-            tryToAddFlame(position.x, position.y, board, powerups, flames);
+            tryToAddFlame(position.x, position.y, board, powerups, flames, flamePool);
             boolean advanceP = true;
             boolean advanceM = true;
             for (int i = 1; i < blastStrength; i++) {
                 if (advanceP) {
                     int x1 = position.x + i;
-                    advanceP = tryToAddFlame(x1, position.y, board, powerups, flames);
+                    advanceP = tryToAddFlame(x1, position.y, board, powerups, flames, flamePool);
                 }
                 if (advanceM) {
                     int x2 = position.x - i;
-                    advanceM = tryToAddFlame(x2, position.y, board, powerups, flames);
+                    advanceM = tryToAddFlame(x2, position.y, board, powerups, flames, flamePool);
                 }
             }
             advanceM = true;
@@ -70,32 +121,36 @@ public class Bomb extends GameObject {
             for (int i = 1; i < blastStrength; i++) {
                 if (advanceP) {
                     int y1 = position.y + i;
-                    advanceP = tryToAddFlame(position.x, y1, board, powerups, flames);
+                    advanceP = tryToAddFlame(position.x, y1, board, powerups, flames, flamePool);
                 }
                 if (advanceM) {
                     int y2 = position.y - i;
-                    advanceM = tryToAddFlame(position.x, y2, board, powerups, flames);
+                    advanceM = tryToAddFlame(position.x, y2, board, powerups, flames, flamePool);
                 }
             }
-            return flames;
+            return true;
         }
-        return null;
+        return false;
     }
 
     private boolean tryToAddFlame(int x, int y, Types.TILETYPE[][] board, Types.TILETYPE[][] powerups,
-                                  ArrayList<GameObject> flames) {
+                                  ArrayList<GameObject> flames, ArrayList<GameObject> flamePool) {
         if (x < 0 || y < 0 || x >= board.length || y >= board.length) {
             return false;
         }
-        ArrayList<Types.TILETYPE> flameCollisions = new ArrayList<>();
-        flameCollisions.add(Types.TILETYPE.RIGID);
-
         Types.TILETYPE type = board[y][x];
-        Flame f = new Flame();
-        f.playerIdx = playerIdx;
-        boolean success = Utils.setDesiredCoordinate(f, new Vector2d(x, y), board, flameCollisions);
+        boolean success = !FLAME_COLLISIONS.contains(type);
         if (success) {
-            f.setPosition(f.getDesiredCoordinate());
+            Flame f;
+            if (flamePool != null && !flamePool.isEmpty()) {
+                f = (Flame) flamePool.remove(flamePool.size() - 1);
+                f.reset();
+            } else {
+                f = new Flame();
+            }
+            f.playerIdx = playerIdx;
+            f.setDesiredCoordinate(x, y);
+            f.setPosition(x, y);
             flames.add(f);
 
             // Power-ups are killed by bombs, so this is commented out now.
@@ -115,7 +170,13 @@ public class Bomb extends GameObject {
 
     public Vector2d getVelocity() { return velocity; }
     public void setVelocity(Vector2d vel) {
-        this.velocity = vel;
+        this.velocity.set(vel);
+    }
+    public void setVelocity(int x, int y) {
+        this.velocity.set(x, y);
+    }
+    public void resetVelocity() {
+        this.velocity.zero();
     }
 
     public int getBlastStrength() {
@@ -13,16 +13,27 @@ public class Flame extends GameObject {
         life = FLAME_LIFE;
     }
 
+    /**
+     * Resets this flame to the state of a newly created one, so it can be reused instead of allocating a new one.
+     * The position and desired coordinate are kept, they must be set by the caller.
+     */
+    public void reset() {
+        life = FLAME_LIFE;
+        playerIdx = 0;
+        id = 0;
+    }
+
     @Override
     public void tick(){
         this.life--;
-        desiredCoordinate = position.copy();
+        setDesiredCoordinate(position);
     }
 
     @Override
     public GameObject copy() {
         Flame copy = new Flame();
         copy.life = life;
+        copy.playerIdx = playerIdx;
         if (position != null) {
             copy.position = position.copy();
         }
@@ -89,7 +89,7 @@ public class GameObject {
      * Update the current state of this object
      */
     public void tick(){
-        desiredCoordinate = position.copy();
+        setDesiredCoordinate(position);
     }
 
     /**
@@ -106,7 +106,21 @@ public class GameObject {
 
     public void setDesiredCoordinate(Vector2d desiredCoordinate) {
         if (desiredCoordinate != null) {
-            this.desiredCoordinate = desiredCoordinate.copy();
+            setDesiredCoordinate(desiredCoordinate.x, desiredCoordinate.y);
+        }
+    }
+
+    /**
+     * Sets the desired coordinate of this object. The existing vector is updated in place if there is one,
+     * so the forward model does not allocate new vectors on every tick.
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    public void setDesiredCoordinate(int x, int y) {
+        if (this.desiredCoordinate != null) {
+            this.desiredCoordinate.set(x, y);
+        } else {
+            this.desiredCoordinate = new Vector2d(x, y);
         }
     }
 
@@ -120,6 +134,20 @@ public class GameObject {
         }
     }
 
+    /**
+     * Sets the position of this object, updating the existing vector in place if there is one. Position vectors may
+     * be referenced from outside (e.g. by undo journals), so this is only meant for objects just taken from a pool.
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    public void setPosition(int x, int y) {
+        if (this.position != null) {
+            this.position.set(x, y);
+        } else {
+            this.position = new Vector2d(x, y);
+        }
+    }
+
     public void setPositionNull() {
         this.position = null;
     }
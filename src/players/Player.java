@@ -35,6 +35,16 @@ public abstract class Player {
      */
     public abstract int[] getMessage();
 
+    /**
+     * Function called by the game when the player runs out of time to decide (see Types.ENFORCE_DECISION_TIME),
+     * while act() may still be running in another thread, which has been interrupted. Players that improve their
+     * decision over time may return the best action found so far; it must be safe to call from another thread.
+     * @return - action to play, or null to play ACTION_STOP.
+     */
+    public Types.ACTIONS getActionAtDeadline() {
+        return null;
+    }
+
     /**
      * Function called at the end of the game. May be used by agents for final analysis.
      * @param reward - final reward for this agent.
@@ -3,6 +3,7 @@ package players;
 import core.GameState;
 import objects.Bomb;
 import objects.GameObject;
+import utils.Cell;
 import utils.Types;
 import utils.Vector2d;
 
@@ -53,9 +54,9 @@ public class SimplePlayer extends Player {
     // Container for return values of Dijkstra's pathfinding algorithm.
     public class Container
     {
-        HashMap<Types.TILETYPE, ArrayList<Vector2d> > items;
-        HashMap<Vector2d, Integer> dist;
-        HashMap<Vector2d, Vector2d> prev;
+        HashMap<Types.TILETYPE, ArrayList<Cell> > items;
+        HashMap<Cell, Integer> dist;
+        HashMap<Cell, Cell> prev;
 
         Container() { }
     }
@@ -116,13 +117,15 @@ public class SimplePlayer extends Player {
         // prev: shortest path with previous node and the distance to it
 
         Container from_dijkstra = dijkstra(board, myPosition, bombs, enemies, 10);
-        HashMap<Types.TILETYPE, ArrayList<Vector2d>> items = from_dijkstra.items;
+        HashMap<Types.TILETYPE, ArrayList<Cell>> items = from_dijkstra.items;
         Iterator it;
-        HashMap<Vector2d, Integer> dist = from_dijkstra.dist;
-        HashMap<Vector2d, Vector2d> prev = from_dijkstra.prev;
+        HashMap<Cell, Integer> dist = from_dijkstra.dist;
+        HashMap<Cell, Cell> prev = from_dijkstra.prev;
+        Cell myCell = Cell.of(myPosition, board.length);
 
         // 2) Move if we are in an unsafe place.
-        HashMap<Types.DIRECTIONS, Integer> unsafeDirections = directionsInRangeOfBomb(myPosition, bombs, dist);
+        HashMap<Types.DIRECTIONS, Integer> unsafeDirections = directionsInRangeOfBomb(gs, myPosition, bombs, dist,
+                board.length);
 
         if(!unsafeDirections.isEmpty()){
 
@@ -145,14 +148,14 @@ public class SimplePlayer extends Player {
         // check dist to nearest enemy
         // enemies - list of ArrayList of game objects
         for (GameObject en: enemies){
-            Iterator dist_it = dist.entrySet().iterator(); // <Vector2d, Integer>
+            Iterator dist_it = dist.entrySet().iterator(); // <Cell, Integer>
             while (dist_it.hasNext()){
-                Map.Entry<Vector2d, Integer> entry = (Map.Entry)dist_it.next();
+                Map.Entry<Cell, Integer> entry = (Map.Entry)dist_it.next();
 
-                if (entry.getKey().equals(en.getPosition()) && entry.getValue() == 3){
+                if (entry.getKey().is(en.getPosition()) && entry.getValue() == 3){
                     // pick this direction
-                    Vector2d next_node = entry.getKey();
-                    while (!myPosition.equals(prev.get(next_node))){
+                    Cell next_node = entry.getKey();
+                    while (!myCell.equals(prev.get(next_node))){
                         next_node = prev.get(next_node);
                     }
                     // return node, which had prev_node
@@ -166,14 +169,14 @@ public class SimplePlayer extends Player {
         // 5) Move towards a good item if there is one within two reachable spaces.
         // good items are the pickups
         it = items.entrySet().iterator();
-        Vector2d previousNode = new Vector2d(-1, -1); // placeholder, these values are not actually used
+        Cell previousNode = null; // placeholder, set when distance is updated
         int distance = Integer.MAX_VALUE;
         while (it.hasNext()){
-            Map.Entry<Types.TILETYPE, ArrayList<Vector2d> > entry = (Map.Entry)it.next();
+            Map.Entry<Types.TILETYPE, ArrayList<Cell> > entry = (Map.Entry)it.next();
             // check pickup entries on the board
             if (Types.TILETYPE.getPowerUpTypes().contains(entry.getKey())){
                 // no need to store just get closest
-                for (Vector2d coords: entry.getValue()){
+                for (Cell coords: entry.getValue()){
                     if (dist.get(coords) < distance){
                         distance = dist.get(coords);
                         previousNode = coords;
@@ -183,10 +186,10 @@ public class SimplePlayer extends Player {
         }
         if (distance <= 2){
             // iterate until we get to the immadiate next node
-            if (myPosition.equals(previousNode)){
+            if (myCell.equals(previousNode)){
                 return directionToAction(getDirection(myPosition, previousNode));
             }
-            while (!myPosition.equals(prev.get(previousNode))){ ;
+            while (!myCell.equals(prev.get(previousNode))){ ;
                 previousNode = prev.get(previousNode);
             }
             return directionToAction(getDirection(myPosition, previousNode));
@@ -195,11 +198,11 @@ public class SimplePlayer extends Player {
         // 6) Maybe lay a bomb if we are within a space of a wooden wall.
         it = items.entrySet().iterator();
         while (it.hasNext()) {
-            Map.Entry<Types.TILETYPE, ArrayList<Vector2d>> entry = (Map.Entry) it.next();
+            Map.Entry<Types.TILETYPE, ArrayList<Cell>> entry = (Map.Entry) it.next();
             // check pickup entries on the board
             if (entry.getKey().equals(Types.TILETYPE.WOOD) ) {
                 // check the distance from the wooden planks
-                for (Vector2d coords: entry.getValue()){
+                for (Cell coords: entry.getValue()){
                     if (dist.get(coords) == 1){
                         if( maybeBomb(ammo, blastStrength, items, dist, myPosition)){
                             return Types.ACTIONS.ACTION_BOMB;
@@ -208,18 +211,18 @@ public class SimplePlayer extends Player {
                 }
                 // 7) Move towards a wooden wall if there is one within two reachable spaces and you have a bomb.
                 if (ammo < 1) continue;
-                for (Vector2d coords:entry.getValue()){
+                for (Cell coords:entry.getValue()){
                     // max 2 reachable space
                     if (dist.get(coords) <= 2){
                         previousNode = coords;
-                        while (!myPosition.equals(prev.get(previousNode))){
+                        while (!myCell.equals(prev.get(previousNode))){
                             previousNode = prev.get(previousNode);
                         }
                         Types.DIRECTIONS direction = getDirection(myPosition, previousNode);
                         if (direction != null){
                             ArrayList<Types.DIRECTIONS> dirArray = new ArrayList<>();
                             dirArray.add(direction);
-                            dirArray = filterUnsafeDirections(myPosition, dirArray, bombs);
+                            dirArray = filterUnsafeDirections(gs, dirArray);
 
                             if (dirArray.size() > 0){
                                 return directionToAction(dirArray.get(0));
@@ -239,7 +242,7 @@ public class SimplePlayer extends Player {
         directions.add(Types.DIRECTIONS.LEFT);
         directions.add(Types.DIRECTIONS.RIGHT);
         ArrayList<Types.DIRECTIONS> validDirections = filterInvalidDirections(board, myPosition, directions, enemies);
-        validDirections = filterUnsafeDirections(myPosition, validDirections, bombs );
+        validDirections = filterUnsafeDirections(gs, validDirections);
         validDirections = filterRecentlyVisited(validDirections, myPosition, this.recentlyVisitedPositions);
 
         // 9) Add this position to the recently visited uninteresting positions so we don't return immediately.
@@ -273,16 +276,17 @@ public class SimplePlayer extends Player {
     private Container dijkstra(Types.TILETYPE[][] board, Vector2d myPosition, ArrayList<Bomb> bombs,
                                ArrayList<GameObject> enemies, int depth){
 
-        HashMap<Types.TILETYPE, ArrayList<Vector2d> > items = new HashMap<>();
-        HashMap<Vector2d, Integer> dist = new HashMap<>();
-        HashMap<Vector2d, Vector2d> prev = new HashMap<>();
+        HashMap<Types.TILETYPE, ArrayList<Cell> > items = new HashMap<>();
+        HashMap<Cell, Integer> dist = new HashMap<>();
+        HashMap<Cell, Cell> prev = new HashMap<>();
 
-        Queue<Vector2d> Q = new LinkedList<>();
+        Queue<Cell> Q = new LinkedList<>();
+        Cell myCell = Cell.of(myPosition, board.length);
 
         for(int r = max(0, myPosition.x - depth); r < min(board.length, myPosition.x + depth); r++){
             for(int c = max(0, myPosition.y - depth); c < min(board.length, myPosition.y + depth); c++){
 
-                Vector2d position = new Vector2d(r, c);
+                Cell position = Cell.of(r, c, board.length);
 
                 // Determines if two points are out of range of each other.
                 boolean out_of_range = (abs(c - myPosition.y) + abs(r - myPosition.x)) > depth;
@@ -295,14 +299,14 @@ public class SimplePlayer extends Player {
                 if(positionInItems)
                     continue;
 
-                ArrayList<Vector2d> itemsTempList = items.get(itemType);
+                ArrayList<Cell> itemsTempList = items.get(itemType);
                 if(itemsTempList == null) {
                     itemsTempList = new ArrayList<>();
                 }
                 itemsTempList.add(position);
                 items.put(itemType, itemsTempList);
 
-                if(position.equals(myPosition)){
+                if(position.equals(myCell)){
                     Q.add(position);
                     dist.put(position, 0);
                 }
@@ -314,17 +318,17 @@ public class SimplePlayer extends Player {
 
         for(Bomb bomb : bombs){
             if(bomb.getPosition().equals(myPosition)){
-                ArrayList<Vector2d> itemsTempList = items.get(Types.TILETYPE.BOMB);
+                ArrayList<Cell> itemsTempList = items.get(Types.TILETYPE.BOMB);
                 if(itemsTempList == null) {
                     itemsTempList = new ArrayList<>();
                 }
-                itemsTempList.add(myPosition);
+                itemsTempList.add(myCell);
                 items.put(Types.TILETYPE.BOMB, itemsTempList);
             }
         }
 
         while(!Q.isEmpty()){
-            Vector2d position = Q.remove();
+            Cell position = Q.remove();
 
             if(positionIsPassable(board, position, enemies)){
                 int val = dist.get(position) + 1;
@@ -335,10 +339,9 @@ public class SimplePlayer extends Player {
 
                 for (Types.DIRECTIONS directionToBeChecked : directionsToBeChecked) {
 
-                    Vector2d direction = directionToBeChecked.toVec();
-                    Vector2d new_position = new Vector2d(position.x + direction.x, position.y + direction.y);
+                    Cell new_position = position.neighbour(directionToBeChecked);
 
-                    if(!dist.containsKey(new_position))
+                    if(new_position == null || !dist.containsKey(new_position))
                         continue;
 
                     int dist_val = dist.get(new_position);
@@ -366,22 +369,30 @@ public class SimplePlayer extends Player {
 
     /**
      * Calculates those directions from the agent's posititon that are in the direction of a bob explosion.
+     * Bombs are only checked if the agent is in range of one, as given by the game state (see
+     * GameState.isInRangeOfBomb()).
+     * @param gs - current game state.
      * @param myPosition - Position of this agent.
      * @param bombs - List of bombs in the board now
      * @param dist - The list of distances to all bombs.
+     * @param boardSize - Size of the board.
      * @return A set of directions that would fall in the bomb explosion range.
      */
-    private HashMap<Types.DIRECTIONS, Integer> directionsInRangeOfBomb(Vector2d myPosition, ArrayList<Bomb> bombs,
-            HashMap<Vector2d, Integer> dist) {
+    private HashMap<Types.DIRECTIONS, Integer> directionsInRangeOfBomb(GameState gs, Vector2d myPosition,
+            ArrayList<Bomb> bombs, HashMap<Cell, Integer> dist, int boardSize) {
         HashMap<Types.DIRECTIONS, Integer> ret = new HashMap<>();
 
+        if(!gs.isInRangeOfBomb(myPosition.x, myPosition.y))
+            return ret;
+
         for(Bomb bomb : bombs){
             Vector2d position = bomb.getPosition();
+            Cell cell = Cell.of(position, boardSize);
 
-            if(!dist.containsKey(position))
+            if(!dist.containsKey(cell))
                 continue;
 
-            int distance = dist.get(position);
+            int distance = dist.get(cell);
             int bombBlastStrength = bomb.getBlastStrength();
 
             if(distance > bombBlastStrength)
@@ -587,14 +598,14 @@ public class SimplePlayer extends Player {
      * @return true if an agent is next to this player.
      */
     private boolean isAdjacentEnemy(
-            HashMap<Types.TILETYPE, ArrayList<Vector2d> > objects,
-            HashMap<Vector2d, Integer> dist,
+            HashMap<Types.TILETYPE, ArrayList<Cell> > objects,
+            HashMap<Cell, Integer> dist,
             ArrayList<GameObject> enemies)
     {
         for(GameObject enemy : enemies){
             if(objects.containsKey(enemy.getType())) {
-                ArrayList<Vector2d> items_list = objects.get(enemy.getType());
-                for (Vector2d position : items_list) {
+                ArrayList<Cell> items_list = objects.get(enemy.getType());
+                for (Cell position : items_list) {
                     if (dist.get(position) == 1)
                         return true;
                 }
@@ -612,17 +623,17 @@ public class SimplePlayer extends Player {
      * @param myPosition - our agent's position
      * @return true if if would be a good idea to drop a bomb here
      */
-    private boolean maybeBomb(int ammo, int blastStrength, HashMap<Types.TILETYPE, ArrayList<Vector2d> > objects,
-                              HashMap<Vector2d, Integer> dist, Vector2d myPosition) {
+    private boolean maybeBomb(int ammo, int blastStrength, HashMap<Types.TILETYPE, ArrayList<Cell> > objects,
+                              HashMap<Cell, Integer> dist, Vector2d myPosition) {
         // Do we have ammo?
         if(ammo < 1)
             return false;
 
         if(objects.containsKey(Types.TILETYPE.PASSAGE)){
-            ArrayList<Vector2d> items_list = objects.get(Types.TILETYPE.PASSAGE);
+            ArrayList<Cell> items_list = objects.get(Types.TILETYPE.PASSAGE);
 
             // Will we be stuck?
-            for (Vector2d position : items_list) {
+            for (Cell position : items_list) {
 
                 if(dist.containsKey(position)){
                     if(dist.get(position) > Integer.MAX_VALUE)
@@ -644,27 +655,17 @@ public class SimplePlayer extends Player {
     }
 
     /**
-     * Checks unsafe directions of movements, where a bomb could hit me if exploding
-     * @param myPosition - The position the agent is in
-     * @param directions - Directions I could move towards
-     * @param bombs - current set of bombs in the level
+     * Checks unsafe directions of movements, where a bomb could hit me if exploding, as given by the game state (see
+     * GameState.isInRangeOfBomb()).
+     * @param gs - current game state.
+     * @param directions - Directions I could move towards, which must not leave the board
      * @return The list of safe directions to move to.
      */
-    private ArrayList<Types.DIRECTIONS> filterUnsafeDirections(Vector2d myPosition, ArrayList<Types.DIRECTIONS> directions, ArrayList<Bomb> bombs){
+    private ArrayList<Types.DIRECTIONS> filterUnsafeDirections(GameState gs, ArrayList<Types.DIRECTIONS> directions){
         ArrayList<Types.DIRECTIONS> safeDirections = new ArrayList<>();
         for (Types.DIRECTIONS dir : directions){
-            Vector2d myPos = getNextPosition(myPosition, dir);
-            boolean isBad = false;
-            for (Bomb b: bombs){
-                int bombX = b.getPosition().x;
-                int bombY = b.getPosition().y;
-                int blastStrenght = b.getBlastStrength();
-                if ((myPos.x == bombX && Math.abs(bombY - myPos.y) <= blastStrenght) ||
-                (myPos.y == bombY && Math.abs(bombX - myPos.x) <= blastStrenght)){
-                    isBad = true;
-                    break;
-                }
-            }
+            Vector2d myPos = getNextPosition(gs.getPosition(), dir);
+            boolean isBad = gs.isInRangeOfBomb(myPos.x, myPos.y);
             if (!isBad){
                 safeDirections.add(dir);
             }
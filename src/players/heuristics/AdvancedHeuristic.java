@@ -3,6 +3,7 @@ package players.heuristics;
 import core.GameState;
 import objects.Bomb;
 import objects.GameObject;
+import utils.Cell;
 import utils.Types;
 import utils.Vector2d;
 
@@ -52,7 +53,9 @@ public class AdvancedHeuristic extends StateHeuristic {
         boolean canKick;
         int nWoods;
 
-        static double maxWoods = -1;
+        // Wood walls of a new board, counted as in nWoods, to scale the change in wood walls. Fixed, so that scores
+        // don't depend on the state evaluated from or on the games played before.
+        double maxWoods = Types.BOARD_NUM_WOOD + 1;
         static double maxBlastStrength = 10;
 
         // 0.4
@@ -77,13 +80,14 @@ public class AdvancedHeuristic extends StateHeuristic {
         private Random random;
 
         private Vector2d myPosition;
+        private boolean inRangeOfBomb;  // True if my position is in range of a bomb, see GameState.isInRangeOfBomb()
         private Types.TILETYPE[][] board;
         private ArrayList<Bomb> bombs;
         private ArrayList<GameObject> enemies;
 
-        private HashMap<Types.TILETYPE, ArrayList<Vector2d>> items;
-        private HashMap<Vector2d, Integer> dist;
-        private HashMap<Vector2d, Vector2d> prev;
+        private HashMap<Types.TILETYPE, ArrayList<Cell>> items;
+        private HashMap<Cell, Integer> dist;
+        private HashMap<Cell, Cell> prev;
 
         // Extra state information (to be used as heuristics):
 
@@ -134,11 +138,9 @@ public class AdvancedHeuristic extends StateHeuristic {
                         nWoods++;
                 }
             }
-            if (maxWoods == -1) {
-                maxWoods = nWoods;
-            }
 
             this.myPosition = gs.getPosition();
+            this.inRangeOfBomb = gs.isInRangeOfBomb(myPosition.x, myPosition.y);
             this.board = gs.getBoard();
             int[][] bombBlastStrength = gs.getBombBlastStrength();
             int[][] bombLife = gs.getBombLife();
@@ -230,16 +232,21 @@ public class AdvancedHeuristic extends StateHeuristic {
         }
 
         private HashMap<Types.DIRECTIONS, Integer> computeDirectionsInRangeOfBomb(Vector2d myPosition, ArrayList<Bomb> bombs,
-                                                                                  HashMap<Vector2d, Integer> dist) {
+                                                                                  HashMap<Cell, Integer> dist) {
             HashMap<Types.DIRECTIONS, Integer> ret = new HashMap<>();
 
+            // No bomb can be in range if my position isn't
+            if(!inRangeOfBomb)
+                return ret;
+
             for(Bomb bomb : bombs){
                 Vector2d position = bomb.getPosition();
+                Cell cell = Cell.of(position, board.length);
 
-                if(!dist.containsKey(position))
+                if(!dist.containsKey(cell))
                     continue;
 
-                int distance = dist.get(position);
+                int distance = dist.get(cell);
                 int bombBlastStrength = bomb.getBlastStrength();
 
                 if(distance > bombBlastStrength)
@@ -433,14 +440,14 @@ public class AdvancedHeuristic extends StateHeuristic {
         }
 
         private boolean computeIsAdjacentEnemy(
-                HashMap<Types.TILETYPE, ArrayList<Vector2d> > items,
-                HashMap<Vector2d, Integer> dist,
+                HashMap<Types.TILETYPE, ArrayList<Cell> > items,
+                HashMap<Cell, Integer> dist,
                 ArrayList<GameObject> enemies)
         {
             for(GameObject enemy : enemies){
                 if(items.containsKey(enemy.getType())) {
-                    ArrayList<Vector2d> items_list = items.get(enemy.getType());
-                    for (Vector2d position : items_list) {
+                    ArrayList<Cell> items_list = items.get(enemy.getType());
+                    for (Cell position : items_list) {
                         if (dist.get(position) == 1)
                             return true;
                     }
@@ -457,15 +464,15 @@ public class AdvancedHeuristic extends StateHeuristic {
         }
 
         private int computeDistanceToNearestEnemy(
-                HashMap<Types.TILETYPE, ArrayList<Vector2d> > items,
-                HashMap<Vector2d, Integer> dist,
+                HashMap<Types.TILETYPE, ArrayList<Cell> > items,
+                HashMap<Cell, Integer> dist,
                 ArrayList<GameObject> enemies)
         {
             int distance = 1000; // TODO: Max distance/Infinity
             for(GameObject enemy : enemies){
                 if(items.containsKey(enemy.getType())) {
-                    ArrayList<Vector2d> items_list = items.get(enemy.getType());
-                    for (Vector2d position : items_list) {
+                    ArrayList<Cell> items_list = items.get(enemy.getType());
+                    for (Cell position : items_list) {
                         if(dist.get(position) < distance)
                             distance = dist.get(position);
                     }
@@ -483,17 +490,17 @@ public class AdvancedHeuristic extends StateHeuristic {
             return this.distanceToNearestPowerUp;
         }
 
-        private int computeDistanceToNearestPowerUp(HashMap<Types.TILETYPE, ArrayList<Vector2d> > items)
+        private int computeDistanceToNearestPowerUp(HashMap<Types.TILETYPE, ArrayList<Cell> > items)
         {
-            Vector2d previousNode = new Vector2d(-1, -1); // placeholder, these values are not actually used
+            Cell previousNode = null; // placeholder, these values are not actually used
             int distance = 1000; // TODO: Max distance/Infinity
-            for (Map.Entry<Types.TILETYPE, ArrayList<Vector2d>> entry : items.entrySet()) {
+            for (Map.Entry<Types.TILETYPE, ArrayList<Cell>> entry : items.entrySet()) {
                 // check pickup entries on the board
                 if (entry.getKey().equals(Types.TILETYPE.EXTRABOMB) ||
                         entry.getKey().equals(Types.TILETYPE.KICK) ||
                         entry.getKey().equals(Types.TILETYPE.INCRRANGE)){
                     // no need to store just get closest
-                    for (Vector2d coords: entry.getValue()){
+                    for (Cell coords: entry.getValue()){
                         if (dist.get(coords) < distance){
                             distance = dist.get(coords);
                             previousNode = coords;
@@ -518,16 +525,17 @@ public class AdvancedHeuristic extends StateHeuristic {
         private Container dijkstra(Types.TILETYPE[][] board, Vector2d myPosition, ArrayList<Bomb> bombs,
                                    ArrayList<GameObject> enemies, int depth){
 
-            HashMap<Types.TILETYPE, ArrayList<Vector2d> > items = new HashMap<>();
-            HashMap<Vector2d, Integer> dist = new HashMap<>();
-            HashMap<Vector2d, Vector2d> prev = new HashMap<>();
+            HashMap<Types.TILETYPE, ArrayList<Cell> > items = new HashMap<>();
+            HashMap<Cell, Integer> dist = new HashMap<>();
+            HashMap<Cell, Cell> prev = new HashMap<>();
 
-            Queue<Vector2d> Q = new LinkedList<>();
+            Queue<Cell> Q = new LinkedList<>();
+            Cell myCell = Cell.of(myPosition, board.length);
 
             for(int r = max(0, myPosition.x - depth); r < min(board.length, myPosition.x + depth); r++){
                 for(int c = max(0, myPosition.y - depth); c < min(board.length, myPosition.y + depth); c++){
 
-                    Vector2d position = new Vector2d(r, c);
+                    Cell position = Cell.of(r, c, board.length);
 
                     // Determines if two points are out of range of each other.
                     boolean out_of_range = (abs(c - myPosition.y) + abs(r - myPosition.x)) > depth;
@@ -540,14 +548,14 @@ public class AdvancedHeuristic extends StateHeuristic {
                     if(positionInItems)
                         continue;
 
-                    ArrayList<Vector2d> itemsTempList = items.get(itemType);
+                    ArrayList<Cell> itemsTempList = items.get(itemType);
                     if(itemsTempList == null) {
                         itemsTempList = new ArrayList<>();
                     }
                     itemsTempList.add(position);
                     items.put(itemType, itemsTempList);
 
-                    if(position.equals(myPosition)){
+                    if(position.equals(myCell)){
                         Q.add(position);
                         dist.put(position, 0);
                     }
@@ -559,17 +567,17 @@ public class AdvancedHeuristic extends StateHeuristic {
 
             for(Bomb bomb : bombs){
                 if(bomb.getPosition().equals(myPosition)){
-                    ArrayList<Vector2d> itemsTempList = items.get(Types.TILETYPE.BOMB);
+                    ArrayList<Cell> itemsTempList = items.get(Types.TILETYPE.BOMB);
                     if(itemsTempList == null) {
                         itemsTempList = new ArrayList<>();
                     }
-                    itemsTempList.add(myPosition);
+                    itemsTempList.add(myCell);
                     items.put(Types.TILETYPE.BOMB, itemsTempList);
                 }
             }
 
             while(!Q.isEmpty()){
-                Vector2d position = Q.remove();
+                Cell position = Q.remove();
 
                 if(positionIsPassable(board, position, enemies)){
                     int val = dist.get(position) + 1;
@@ -578,10 +586,9 @@ public class AdvancedHeuristic extends StateHeuristic {
 
                     for (Types.DIRECTIONS directionToBeChecked : directionsToBeChecked) {
 
-                        Vector2d direction = directionToBeChecked.toVec();
-                        Vector2d new_position = new Vector2d(position.x + direction.x, position.y + direction.y);
+                        Cell new_position = position.neighbour(directionToBeChecked);
 
-                        if(!dist.containsKey(new_position))
+                        if(new_position == null || !dist.containsKey(new_position))
                             continue;
 
                         int dist_val = dist.get(new_position);
@@ -607,9 +614,9 @@ public class AdvancedHeuristic extends StateHeuristic {
 
         // Container for return values of Dijkstra's pathfinding algorithm.
         private class Container {
-            HashMap<Types.TILETYPE, ArrayList<Vector2d> > items;
-            HashMap<Vector2d, Integer> dist;
-            HashMap<Vector2d, Vector2d> prev;
+            HashMap<Types.TILETYPE, ArrayList<Cell> > items;
+            HashMap<Cell, Integer> dist;
+            HashMap<Cell, Cell> prev;
             Container() { }
         }
 
@@ -33,7 +33,7 @@ public class CustomHeuristic extends StateHeuristic {
         int tick, nTeammates, nEnemies, blastStrength;
         boolean canKick;
         int nWoods;
-        static double maxWoods = -1;
+        double maxWoods = Types.BOARD_NUM_WOOD + 1;  // Wood walls of a new board, as counted in nWoods
         static double maxBlastStrength = 10;
 
         double FACTOR_ENEMY;
@@ -69,9 +69,6 @@ public class CustomHeuristic extends StateHeuristic {
                         nWoods++;
                 }
             }
-            if (maxWoods == -1) {
-                maxWoods = nWoods;
-            }
         }
 
         /**
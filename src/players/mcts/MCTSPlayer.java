@@ -26,6 +26,12 @@ public class MCTSPlayer extends ParameterizedPlayer {
      */
     public MCTSParams params;
 
+    /**
+     * Root of the tree of the search in progress, read by the game if the search misses its deadline. Null if not
+     * searching, so that a search that hasn't started yet doesn't give the action of the previous one.
+     */
+    private volatile SingleTreeNode m_searchRoot;
+
     public MCTSPlayer(long seed, int id) {
         this(seed, id, new MCTSParams());
     }
@@ -71,12 +77,14 @@ public class MCTSPlayer extends ParameterizedPlayer {
         // Root of the tree
         SingleTreeNode m_root = new SingleTreeNode(params, m_rnd, num_actions, actions);
         m_root.setRootGameState(gs);
+        m_searchRoot = m_root;
 
         //Determine the action using MCTS...
         m_root.mctsSearch(ect);
 
         //Determine the best action to take and return it.
         int action = m_root.mostVisitedAction();
+        m_searchRoot = null;
 
         // TODO update message memory
 
@@ -84,6 +92,14 @@ public class MCTSPlayer extends ParameterizedPlayer {
         return actions[action];
     }
 
+    @Override
+    public Types.ACTIONS getActionAtDeadline() {
+        // Most visited action so far, as the search may not have ended
+        SingleTreeNode root = m_searchRoot;
+        int action = root != null ? root.mostVisitedActionSoFar() : -1;
+        return action >= 0 ? actions[action] : null;
+    }
+
     @Override
     public int[] getMessage() {
         // default message
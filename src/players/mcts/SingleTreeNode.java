@@ -7,9 +7,7 @@ import players.heuristics.StateHeuristic;
 import utils.ElapsedCpuTimer;
 import utils.Types;
 import utils.Utils;
-import utils.Vector2d;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 public class SingleTreeNode
@@ -24,6 +22,10 @@ public class SingleTreeNode
     private int m_depth;
     private double[] bounds = new double[]{Double.MAX_VALUE, -Double.MAX_VALUE};
     private int childIdx;
+
+    // Child of the root visited most so far in the search, -1 before the first iteration. Read by other threads
+    // while searching (see MCTSPlayer.getActionAtDeadline()).
+    private volatile int mostVisitedSoFar = -1;
     private int fmCallsCount;
 
     private int num_actions;
@@ -75,13 +77,26 @@ public class SingleTreeNode
         int remainingLimit = 5;
         boolean stop = false;
 
+        // A single working copy of the root is used for all iterations. Every tick rolled is recorded,
+        // so the state can be brought back to the root at the end of an iteration instead of copying it again.
+        GameState state = rootState.copy();
+        state.setUndoEnabled(true);
+
         while(!stop){
 
-            GameState state = rootState.copy();
             ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
             SingleTreeNode selected = treePolicy(state);
             double delta = selected.rollOut(state);
             backUp(selected, delta);
+            state.undoAll();
+
+            // Keep track of the most visited action, in case the best action so far is asked for before the end
+            SingleTreeNode child = selected;
+            while (child.parent != null && child.parent != this) {
+                child = child.parent;
+            }
+            if (child != this && (mostVisitedSoFar == -1 || child.nVisits > children[mostVisitedSoFar].nVisits))
+                mostVisitedSoFar = child.childIdx;
 
             //Stopping condition
             if(params.stop_type == params.STOP_TIME) {
@@ -98,6 +113,9 @@ public class SingleTreeNode
                 fmCallsCount+=params.rollout_depth;
                 stop = (fmCallsCount + params.rollout_depth) > params.num_fmcalls;
             }
+
+            // The game interrupts players that miss their deadline
+            stop |= Thread.currentThread().isInterrupted();
         }
         //System.out.println(" ITERS " + numIters);
     }
@@ -212,26 +230,25 @@ public class SingleTreeNode
 
     private int safeRandomAction(GameState state)
     {
-        Types.TILETYPE[][] board = state.getBoard();
-        ArrayList<Types.ACTIONS> actionsToTry = Types.ACTIONS.all();
-        int width = board.length;
-        int height = board[0].length;
+        // Actions left to try are sampled by their index among the remaining ones, in key order
+        int safeActions = state.getSafeActionMask();
+        int actionsToTry = (1 << Types.NUM_ACTIONS) - 1;
+        int nActionsToTry = Types.NUM_ACTIONS;
 
-        while(actionsToTry.size() > 0) {
+        while(nActionsToTry > 0) {
 
-            int nAction = m_rnd.nextInt(actionsToTry.size());
-            Types.ACTIONS act = actionsToTry.get(nAction);
-            Vector2d dir = act.getDirection().toVec();
-
-            Vector2d pos = state.getPosition();
-            int x = pos.x + dir.x;
-            int y = pos.y + dir.y;
+            int nAction = m_rnd.nextInt(nActionsToTry);
+            int act = actionsToTry;
+            for (int i = 0; i < nAction; i++) {
+                act &= act - 1;  // Skip to the nAction-th remaining action
+            }
+            int actionBit = Integer.lowestOneBit(act);
 
-            if (x >= 0 && x < width && y >= 0 && y < height)
-                if(board[y][x] != Types.TILETYPE.FLAMES)
-                    return nAction;
+            if ((safeActions & actionBit) != 0)
+                return nAction;
 
-            actionsToTry.remove(nAction);
+            actionsToTry &= ~actionBit;
+            nActionsToTry--;
         }
 
         //Uh oh...
@@ -268,6 +285,15 @@ public class SingleTreeNode
     }
 
 
+    /**
+     * Action of the child of the root visited most so far in the search. Safe to call from other threads while
+     * searching, unlike mostVisitedAction(), and doesn't break ties at random.
+     * @return index of the action, -1 if no iteration has ended yet.
+     */
+    int mostVisitedActionSoFar() {
+        return mostVisitedSoFar;
+    }
+
     int mostVisitedAction() {
         int selected = -1;
         double bestValue = -Double.MAX_VALUE;
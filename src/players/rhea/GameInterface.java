@@ -367,6 +367,9 @@ public class GameInterface {
      * @return true if enough budget, false otherwise
      */
     public boolean budget(ElapsedCpuTimer elapsedCpuTimer, int iterationsRemaining, FMBudget fmBudget) {
+        if (Thread.currentThread().isInterrupted()) {
+            return false;  // Deadline missed, the game interrupts the player
+        }
         boolean gotBudget = true;
         if (params.budget_type == TIME_BUDGET) {
             gotBudget = elapsedCpuTimer.enoughBudgetIteration(break_ms);
@@ -56,6 +56,11 @@ public class RHEAPlayer extends ParameterizedPlayer {
         return gInterface.translate(player.getAction(elapsedTimer, gs.nActions()));
     }
 
+    @Override
+    public Types.ACTIONS getActionAtDeadline() {
+        return player.getBestActionSoFar();
+    }
+
     @Override
     public int[] getMessage() {
         // default message
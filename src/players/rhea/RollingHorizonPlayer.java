@@ -3,6 +3,7 @@ package players.rhea;
 import players.rhea.evo.Evolution;
 import players.rhea.utils.RHEAParams;
 import utils.ElapsedCpuTimer;
+import utils.Types;
 
 import java.util.*;
 
@@ -18,6 +19,11 @@ class RollingHorizonPlayer {
 
     private Evolution ea;
 
+    // Action that would be played if the search ended now, null before the first iteration and when not searching, so
+    // that a search that hasn't started yet doesn't give the action of the previous one. Read by other threads while
+    // searching (see RHEAPlayer.getActionAtDeadline()).
+    private volatile Types.ACTIONS bestSoFar;
+
 
     RollingHorizonPlayer(Random randomGenerator, RHEAParams params, GameInterface gInterface) {
         this.gameInterface = gInterface;
@@ -36,14 +42,24 @@ class RollingHorizonPlayer {
         }
 
 //        System.out.println();
+        // Actions left in the buffer are played before the action found now
+        int buffered = -1;
+        for (int i = 0; i < params.frame_skip && buffered == -1; i++) {
+            buffered = actionBuffer[i];
+        }
+        bestSoFar = buffered != -1 ? gameInterface.translate(buffered) : null;
+
         // Find best next action within the allowed budget
         int action = max_actions;
         while (gameInterface.budget(elapsedTimer, params.iteration_budget - ea.getNIterations(),
                 null)) {
             action = ea.iteration();
             gameInterface.endIteration(elapsedTimer, null);
+            if (buffered == -1)
+                bestSoFar = gameInterface.translate(action);
         }
 //        System.out.println(Arrays.toString(ea.population));
+        bestSoFar = null;
 
         // Play next action in the action buffer
         for (int i = 0; i < params.frame_skip; i++) {
@@ -73,6 +89,13 @@ class RollingHorizonPlayer {
         return action;
     }
 
+    /**
+     * @return the action that getAction() would return if it ended now, or null if not known yet or not searching.
+     */
+    Types.ACTIONS getBestActionSoFar() {
+        return bestSoFar;
+    }
+
     private int getBestAction(int idx) {
         return ea.getBestAction(idx);
     }
@@ -0,0 +1,134 @@
+package utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable position of a cell in the board. Cells are interned: there is a single instance per cell and board
+ * size, so they can be used as keys or stored in paths without allocating, and compared with ==. Cells of a board
+ * are indexed by 'y * size + x', the same index used by PackedBoard and VisionMask.
+ * Get them with Cell.of() or Cell.at(). Vector2d is still used by game objects, which need mutable positions;
+ * toVector() and Cell.of(Vector2d, int) convert between the two.
+ */
+public final class Cell {
+
+    // Cells per board size, indexed by 'y * size + x'.
+    private static final ConcurrentHashMap<Integer, Cell[]> cache = new ConcurrentHashMap<>();
+
+    // Coordinates of this cell.
+    public final int x, y;
+
+    // Index of this cell in the board, 'y * size + x'.
+    public final int index;
+
+    // All cells of the board this cell belongs to, to find neighbours.
+    private final Cell[] board;
+    private final int size;
+
+    private Cell(int x, int y, int size, Cell[] board) {
+        this.x = x;
+        this.y = y;
+        this.index = y * size + x;
+        this.size = size;
+        this.board = board;
+    }
+
+    /**
+     * Returns all the cells of a board.
+     * @param size - size of the board.
+     * @return the cells, indexed by 'y * size + x'. The array is shared and must not be modified.
+     */
+    public static Cell[] all(int size) {
+        return cache.computeIfAbsent(size, Cell::createBoard);
+    }
+
+    /**
+     * @param x - x coordinate.
+     * @param y - y coordinate.
+     * @param size - size of the board.
+     * @return the cell at the given coordinates, or null if they are not in the board.
+     */
+    public static Cell of(int x, int y, int size) {
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            return null;
+        return all(size)[y * size + x];
+    }
+
+    /**
+     * @param position - position, may be null.
+     * @param size - size of the board.
+     * @return the cell at the given position, or null if the position is null or not in the board.
+     */
+    public static Cell of(Vector2d position, int size) {
+        if (position == null)
+            return null;
+        return of(position.x, position.y, size);
+    }
+
+    /**
+     * @param index - index of the cell, 'y * size + x'.
+     * @param size - size of the board.
+     * @return the cell with the given index.
+     */
+    public static Cell at(int index, int size) {
+        return all(size)[index];
+    }
+
+    /**
+     * @param direction - direction to move towards.
+     * @return the cell next to this one in the given direction, or null if it's out of the board.
+     */
+    public Cell neighbour(Types.DIRECTIONS direction) {
+        int nx = x + direction.x();
+        int ny = y + direction.y();
+        if (nx < 0 || ny < 0 || nx >= size || ny >= size)
+            return null;
+        return board[ny * size + nx];
+    }
+
+    /**
+     * @param position - position to compare with, may be null.
+     * @return true if the position has the coordinates of this cell.
+     */
+    public boolean is(Vector2d position) {
+        return position != null && position.x == x && position.y == y;
+    }
+
+    /**
+     * @return a new, mutable, vector with the coordinates of this cell.
+     */
+    public Vector2d toVector() {
+        return new Vector2d(x, y);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Cell)) return false;
+        Cell c = (Cell) o;
+        return x == c.x && y == c.y;
+    }
+
+    /**
+     * Same hash code as Vector2d, so hash maps keyed by cells are iterated in the same order as if they were keyed
+     * by vectors.
+     */
+    @Override
+    public int hashCode() {
+        return x * 20 + y;
+    }
+
+    @Override
+    public String toString() {
+        return x + " : " + y;
+    }
+
+    private static Cell[] createBoard(int size) {
+        Cell[] cells = new Cell[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                cells[y * size + x] = new Cell(x, y, size, cells);
+            }
+        }
+        return cells;
+    }
+}
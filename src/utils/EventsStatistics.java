@@ -1,15 +1,55 @@
 package utils;
 
 import java.io.*;
-import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 
+/**
+ * Events of a game (bombs placed and exploded, power-ups taken, agents killed) and counters per agent, recorded by
+ * the true forward model when Types.LOGGING_STATISTICS is on.
+ * Events are stored as fixed-size records of ints (tick, type, agent, x, y, cause) in a preallocated buffer, and
+ * are only formatted as text when saved with saveToTextFile(). Listeners receive every event as it is recorded.
+ */
 public class EventsStatistics {
 
 
     final static String experimentsFolderPath = "res/gamelogs/";
 
-    public ArrayList<String> events;
+    /**
+     * Types of events. The cause of an event depends on its type:
+     *   - BOMB_TRIGGERED and AGENT_DIED: bit mask of the indices of the agents that owned the flames responsible,
+     *     plus WAS_STUCK for agents that died stuck.
+     *   - POWER_UP: key of the power-up type taken.
+     *   - Others: 0.
+     */
+    public enum EVENT {
+        BOMB_PLACED,
+        BOMB_NOT_PLACED,
+        BOMB_EXPLODED,
+        BOMB_TRIGGERED,
+        POWER_UP,
+        AGENT_DIED
+    }
+
+    /**
+     * Receives the events of a game as they are recorded.
+     */
+    public interface EventListener {
+        void onEvent(int tick, EVENT type, int agent, int x, int y, int cause);
+    }
+
+    // Flag in the cause of AGENT_DIED events, for agents that were stuck when they died.
+    public static final int WAS_STUCK = 1 << 16;
+
+    // Fields of each record, in this order.
+    private static final int TICK = 0, TYPE = 1, AGENT = 2, X = 3, Y = 4, CAUSE = 5, STRIDE = 6;
+    private static final EVENT[] EVENTS = EVENT.values();
+
+    // Event records, 'STRIDE' ints per event. Grown when full, so no event is lost before the game is saved.
+    private int[] records = new int[256 * STRIDE];
+    private int nEvents = 0;
+
+    private final ArrayList<EventListener> listeners = new ArrayList<>();
 
     // TODO: Configured for 4 agents by default
     public int[] bombPlacementsAttempted = {0, 0, 0, 0};
@@ -21,10 +61,165 @@ public class EventsStatistics {
     public static int REP = 0;
 
     public EventsStatistics(){
-        events = new ArrayList<>();
+    }
+
+    /**
+     * Adds a listener that receives all events recorded from now on.
+     * @param listener - listener to add.
+     */
+    public void addListener(EventListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Records an event and updates the counters of the agents involved.
+     * @param tick - game tick.
+     * @param type - type of event.
+     * @param agent - index of the agent the event is about.
+     * @param x - x coordinate of the event.
+     * @param y - y coordinate of the event.
+     * @param cause - cause of the event, see EVENT.
+     */
+    public void record(int tick, EVENT type, int agent, int x, int y, int cause) {
+        if (records.length < (nEvents + 1) * STRIDE) {
+            records = Arrays.copyOf(records, records.length * 2);
+        }
+        int base = nEvents * STRIDE;
+        records[base + TICK] = tick;
+        records[base + TYPE] = type.ordinal();
+        records[base + AGENT] = agent;
+        records[base + X] = x;
+        records[base + Y] = y;
+        records[base + CAUSE] = cause;
+        nEvents++;
+
+        switch (type) {
+            case BOMB_PLACED:
+                bombsPlaced[agent]++;
+                bombPlacementsAttempted[agent]++;
+                break;
+            case BOMB_NOT_PLACED:
+                bombPlacementsAttempted[agent]++;
+                break;
+            case BOMB_TRIGGERED:
+                for (int id = 0; id < bombsTriggered.length; id++) {
+                    if ((cause & (1 << id)) != 0) bombsTriggered[id]++;
+                }
+                break;
+            case POWER_UP:
+                powerUpsTaken[agent]++;
+                break;
+        }
+
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onEvent(tick, type, agent, x, y, cause);
+        }
+    }
+
+    /**
+     * @return the number of events recorded.
+     */
+    public int getNumEvents() {
+        return nEvents;
+    }
+
+    public int getTick(int event) {
+        return records[event * STRIDE + TICK];
+    }
+
+    public EVENT getType(int event) {
+        return EVENTS[records[event * STRIDE + TYPE]];
+    }
+
+    public int getAgent(int event) {
+        return records[event * STRIDE + AGENT];
+    }
+
+    public int getX(int event) {
+        return records[event * STRIDE + X];
+    }
+
+    public int getY(int event) {
+        return records[event * STRIDE + Y];
+    }
+
+    public int getCause(int event) {
+        return records[event * STRIDE + CAUSE];
+    }
+
+    /**
+     * Formats an event as a line of the events file.
+     * @param event - index of the event.
+     * @param sb - builder to append the line to.
+     */
+    public void formatEvent(int event, StringBuilder sb) {
+        int base = event * STRIDE;
+        int agent = records[base + AGENT];
+        int cause = records[base + CAUSE];
+        sb.append(records[base + TICK]).append(" | [").append(agent).append("]");
+
+        switch (EVENTS[records[base + TYPE]]) {
+            case BOMB_PLACED:
+                sb.append(" placed a bomb at ");
+                break;
+            case BOMB_NOT_PLACED:
+                sb.append(" failed to place a bomb at ");
+                break;
+            case BOMB_EXPLODED:
+            case BOMB_TRIGGERED:
+                sb.append("'s bomb exploded at ");
+                break;
+            case POWER_UP:
+                sb.append(" picked up ").append(powerUpName(cause)).append(" at ");
+                break;
+            case AGENT_DIED:
+                sb.append(" died at ");
+                break;
+        }
+        sb.append("(").append(records[base + X]).append(", ").append(records[base + Y]).append(")");
+
+        switch (EVENTS[records[base + TYPE]]) {
+            case BOMB_TRIGGERED:
+                sb.append(" triggered by ");
+                appendAgents(sb, cause);
+                break;
+            case AGENT_DIED:
+                sb.append(" by ");
+                appendAgents(sb, cause);
+                sb.append("'s flame(s)");
+                if ((cause & WAS_STUCK) != 0) {
+                    sb.append(" (was stuck)");
+                }
+                break;
+        }
+        sb.append("\n");
+    }
+
+    private static void appendAgents(StringBuilder sb, int mask) {
+        for (int id = 0; id < 16; id++) {
+            if ((mask & (1 << id)) != 0) {
+                sb.append("[").append(id).append("]");
+            }
+        }
+    }
+
+    private static String powerUpName(int key) {
+        if (key == Types.TILETYPE.EXTRABOMB.getKey()) return "AMMO";
+        if (key == Types.TILETYPE.INCRRANGE.getKey()) return "BLAST STRENGTH";
+        return "CAN KICK";
     }
 
     public void saveToTextFile(String gameIdStr, long seed){
+        saveToTextFile(gameIdStr, seed, REP);
+    }
+
+    /**
+     * Appends the events of the game to its events file, one line per event.
+     * @param gameIdStr - identifier of the configuration played, the folder of the file.
+     * @param seed - seed of the game.
+     * @param rep - repetition number of the game with this seed.
+     */
+    public void saveToTextFile(String gameIdStr, long seed, int rep){
 
         File file = new File(experimentsFolderPath+ gameIdStr + "/");
         if (! file.exists()){
@@ -35,12 +230,15 @@ public class EventsStatistics {
             throw new Error("Folder specified at " + experimentsFolderPath + " does not exist nor could be created.");
         }
 
-        String path = experimentsFolderPath + gameIdStr + "/" + seed + "_" + REP + "_events.txt";
+        String path = experimentsFolderPath + gameIdStr + "/" + seed + "_" + rep + "_events.txt";
 
         try {
-            FileWriter writer = new FileWriter(path, true);
-            for (String event : events){
-                writer.write(event);
+            Writer writer = new BufferedWriter(new FileWriter(path, true));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < nEvents; i++) {
+                sb.setLength(0);
+                formatEvent(i, sb);
+                writer.append(sb);
             }
             writer.close();
 
@@ -0,0 +1,41 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventsStatisticsTest {
+
+    @Test
+    void recordsAndFormatsEvents() {
+        EventsStatistics es = new EventsStatistics();
+        StringBuilder heard = new StringBuilder();
+        es.addListener((tick, type, agent, x, y, cause) -> heard.append(type).append(' '));
+
+        es.record(3, EventsStatistics.EVENT.BOMB_PLACED, 1, 2, 4, 0);
+        es.record(4, EventsStatistics.EVENT.BOMB_NOT_PLACED, 1, 2, 4, 0);
+        es.record(5, EventsStatistics.EVENT.POWER_UP, 2, 7, 1, Types.TILETYPE.INCRRANGE.getKey());
+        es.record(12, EventsStatistics.EVENT.BOMB_TRIGGERED, 1, 2, 4, (1 << 0) | (1 << 3));
+        es.record(12, EventsStatistics.EVENT.AGENT_DIED, 0, 2, 5, (1 << 1) | EventsStatistics.WAS_STUCK);
+
+        assertEquals(5, es.getNumEvents());
+        assertEquals(EventsStatistics.EVENT.POWER_UP, es.getType(2));
+        assertEquals(7, es.getX(2));
+        assertEquals("BOMB_PLACED BOMB_NOT_PLACED POWER_UP BOMB_TRIGGERED AGENT_DIED ", heard.toString());
+
+        assertArrayEquals(new int[]{0, 1, 0, 0}, es.bombsPlaced);
+        assertArrayEquals(new int[]{0, 2, 0, 0}, es.bombPlacementsAttempted);
+        assertArrayEquals(new int[]{0, 0, 1, 0}, es.powerUpsTaken);
+        assertArrayEquals(new int[]{1, 0, 0, 1}, es.bombsTriggered);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < es.getNumEvents(); i++) {
+            es.formatEvent(i, sb);
+        }
+        assertEquals("3 | [1] placed a bomb at (2, 4)\n" +
+                "4 | [1] failed to place a bomb at (2, 4)\n" +
+                "5 | [2] picked up BLAST STRENGTH at (7, 1)\n" +
+                "12 | [1]'s bomb exploded at (2, 4) triggered by [0][3]\n" +
+                "12 | [0] died at (2, 5) by [1]'s flame(s) (was stuck)\n", sb.toString());
+    }
+}
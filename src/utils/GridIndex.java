@@ -0,0 +1,109 @@
+package utils;
+
+import objects.GameObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of game objects by the cell of the board they are in, or want to move to. Objects at a given cell are found
+ * without going through the whole list, which keeps collision checks linear in the number of objects.
+ * Objects are identified by their index in the list or array indexed, and the objects on the same cell are
+ * visited in that order:
+ *
+ *     for (int i = index.first(x, y); i >= 0; i = index.next(i)) { ... list.get(i) ... }
+ *
+ * The index is a snapshot: it is not updated when objects move. It can be rebuilt as many times as needed without
+ * allocating, so a single instance can be kept for every tick of a game.
+ */
+public class GridIndex {
+
+    // Size of the board.
+    private final int width, height;
+
+    // Index of the first object per cell, indexed by 'y * width + x'. -1 if there are no objects at the cell.
+    private final int[] first;
+
+    // Index of the next object on the same cell, by object index. -1 if it's the last one.
+    private int[] next = new int[16];
+
+    /**
+     * Creates an empty index.
+     * @param width - width of the board.
+     * @param height - height of the board.
+     */
+    public GridIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.first = new int[width * height];
+        Arrays.fill(first, -1);
+    }
+
+    /**
+     * Indexes the given objects by their current positions. Objects with no position are left out.
+     * @param objects - objects to index.
+     */
+    public void indexPositions(List<GameObject> objects) {
+        clear(objects.size());
+        for (int i = objects.size() - 1; i >= 0; i--) {  // Backwards, so cells are linked in list order
+            add(i, objects.get(i).getPosition());
+        }
+    }
+
+    /**
+     * Indexes the given objects by their desired coordinates. Objects with no desired coordinate are left out.
+     * @param objects - objects to index.
+     */
+    public void indexDesiredCoordinates(GameObject[] objects) {
+        clear(objects.length);
+        for (int i = objects.length - 1; i >= 0; i--) {
+            add(i, objects[i].getDesiredCoordinate());
+        }
+    }
+
+    /**
+     * @param cell - cell to look up, may be null.
+     * @return the index of the first object at the given cell, or -1 if there are none.
+     */
+    public int first(Vector2d cell) {
+        if (cell == null)
+            return -1;
+        return first(cell.x, cell.y);
+    }
+
+    /**
+     * @param x - x coordinate of the cell.
+     * @param y - y coordinate of the cell.
+     * @return the index of the first object at the given cell, or -1 if there are none.
+     */
+    public int first(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            return -1;
+        return first[y * width + x];
+    }
+
+    /**
+     * @param i - index of an object in the index.
+     * @return the index of the next object on the same cell, or -1 if there are none.
+     */
+    public int next(int i) {
+        return next[i];
+    }
+
+    private void clear(int nObjects) {
+        Arrays.fill(first, -1);
+        if (next.length < nObjects) {
+            next = new int[nObjects * 2];
+        }
+    }
+
+    private void add(int i, Vector2d cell) {
+        if (cell == null || cell.x < 0 || cell.y < 0 || cell.x >= width || cell.y >= height) {
+            next[i] = -1;
+            return;
+        }
+        int c = cell.y * width + cell.x;
+        next[i] = first[c];
+        first[c] = i;
+    }
+}
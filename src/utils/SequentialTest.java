@@ -0,0 +1,172 @@
+package utils;
+
+/**
+ * Sequential test of whether a player is better than another, updated with the results of each game they play
+ * together, so that a tournament can stop as soon as the answer is known (see core.Tournament.setStoppingRule()).
+ * Each game scores 1 for player A if its result is better than B's (WIN better than TIE better than LOSS), 0 if
+ * it's worse and 0.5 if they're the same. Two rules decide when to stop:
+ *   - SPRT (sequential probability ratio test): from the games with different results, tests whether the
+ *     probability of A doing better than B is 0.5 + delta (A is better) or 0.5 - delta (A is worse), with error
+ *     rates alpha and beta. Stops as soon as the log-likelihood ratio crosses one of the bounds.
+ *   - Confidence interval: stops after a minimum number of games when the confidence interval of the average score
+ *     doesn't include 0.5. As the interval is checked after every game, a fixed-level interval (mean +- 1.96
+ *     standard errors) would be wrong far more often than 5% of the time, so the level is spent across game counts:
+ *     after n games, the interval is a Hoeffding bound at level alpha / (n * (n + 1)), and these add up to alpha.
+ *     This needs no estimate of the variance, and is wider than a fixed-level interval, so it needs more games.
+ * Lopsided comparisons are decided in a few games, while close ones keep playing until the tournament ends.
+ */
+public class SequentialTest {
+
+    public enum DECISION {
+        UNDECIDED,
+        BETTER,
+        WORSE
+    }
+
+    // Players compared, by index.
+    private final int playerA, playerB;
+
+    // SPRT: log-likelihood ratio increments for games won and lost by A, and bounds to accept that A is worse
+    // (lower) or better (upper). Not used if 'sprt' is false.
+    private final boolean sprt;
+    private final double winStep, lossStep;
+    private final double lowerBound, upperBound;
+    private double llr = 0;
+
+    // Confidence interval: probability of a wrong decision over all games, and minimum number of games.
+    private final double ciAlpha;
+    private final int minGames;
+
+    // Scores of A against B.
+    private final StatSummary scores = new StatSummary("Player A vs B");
+
+    private DECISION decision = DECISION.UNDECIDED;
+
+    private SequentialTest(int playerA, int playerB, boolean sprt, double delta, double alpha, double beta,
+                           double ciAlpha, int minGames) {
+        this.playerA = playerA;
+        this.playerB = playerB;
+        this.sprt = sprt;
+        if (sprt && (delta <= 0 || delta >= 0.5 || alpha <= 0 || beta <= 0 || alpha + beta >= 1))
+            throw new IllegalArgumentException("Invalid SPRT parameters: delta " + delta + ", alpha " + alpha +
+                    ", beta " + beta);
+        double p0 = 0.5 - delta, p1 = 0.5 + delta;
+        winStep = Math.log(p1 / p0);
+        lossStep = Math.log((1 - p1) / (1 - p0));
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+        if (!sprt && (ciAlpha <= 0 || ciAlpha >= 1))
+            throw new IllegalArgumentException("Invalid confidence interval alpha " + ciAlpha);
+        this.ciAlpha = ciAlpha;
+        this.minGames = minGames;
+    }
+
+    /**
+     * Creates a test that stops with an SPRT.
+     * @param playerA - index of player A.
+     * @param playerB - index of player B.
+     * @param delta - difference from 0.5 of the probability of A doing better than B that must be detected, i.e. 0.1
+     *              to tell 0.6 from 0.4.
+     * @param alpha - probability of deciding A is better when it's worse.
+     * @param beta - probability of deciding A is worse when it's better.
+     * @return the test.
+     */
+    public static SequentialTest sprt(int playerA, int playerB, double delta, double alpha, double beta) {
+        return new SequentialTest(playerA, playerB, true, delta, alpha, beta, 0, 0);
+    }
+
+    /**
+     * Creates a test that stops when the confidence interval of the average score excludes 0.5.
+     * @param playerA - index of player A.
+     * @param playerB - index of player B.
+     * @param alpha - probability of ever deciding when both players are equally good, i.e. 0.05.
+     * @param minGames - minimum number of games before stopping.
+     * @return the test.
+     */
+    public static SequentialTest confidenceInterval(int playerA, int playerB, double alpha, int minGames) {
+        return new SequentialTest(playerA, playerB, false, 0.1, 0.05, 0.05, alpha, Math.max(1, minGames));
+    }
+
+    /**
+     * Updates the test with the results of a game. Games added after a decision is made don't change it.
+     * @param results - result of each player in the game.
+     * @return the decision after this game.
+     */
+    public DECISION add(Types.RESULT[] results) {
+        if (decision != DECISION.UNDECIDED)
+            return decision;
+
+        int a = rank(results[playerA]), b = rank(results[playerB]);
+        double score = a > b ? 1 : a < b ? 0 : 0.5;
+        scores.add(score);
+
+        if (sprt) {
+            if (score == 1)
+                llr += winStep;
+            else if (score == 0)
+                llr += lossStep;
+
+            if (llr >= upperBound)
+                decision = DECISION.BETTER;
+            else if (llr <= lowerBound)
+                decision = DECISION.WORSE;
+        } else if (scores.n() >= minGames) {
+            double halfWidth = halfWidth();
+            if (scores.mean() - halfWidth > 0.5)
+                decision = DECISION.BETTER;
+            else if (scores.mean() + halfWidth < 0.5)
+                decision = DECISION.WORSE;
+        }
+        return decision;
+    }
+
+    /**
+     * @return half the width of the confidence interval of the average score after the games added so far: a
+     * Hoeffding bound for scores in [0, 1] at level alpha / (n * (n + 1)).
+     */
+    private double halfWidth() {
+        int n = scores.n();
+        return Math.sqrt(Math.log(2.0 * n * (n + 1) / ciAlpha) / (2.0 * n));
+    }
+
+    private static int rank(Types.RESULT result) {
+        return result == Types.RESULT.WIN ? 2 : result == Types.RESULT.TIE ? 1 : 0;
+    }
+
+    /**
+     * @return the decision so far: whether A is better or worse than B, or undecided if more games are needed.
+     */
+    public DECISION getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return scores of A against B in the games added.
+     */
+    public StatSummary getScores() {
+        return scores;
+    }
+
+    /**
+     * @return the log-likelihood ratio of the SPRT, 0 if this test uses a confidence interval.
+     */
+    public double getLogLikelihoodRatio() {
+        return llr;
+    }
+
+    /**
+     * @return the number of games added before the decision was made, or so far if undecided.
+     */
+    public int getNumGames() {
+        return scores.n();
+    }
+
+    @Override
+    public String toString() {
+        String s = "Player " + playerA + " vs " + playerB + ": " + decision + " after " + scores.n() +
+                " games, average score " + scores.mean();
+        if (sprt)
+            return s + " (LLR " + llr + " in [" + lowerBound + ", " + upperBound + "])";
+        return s + " +- " + halfWidth();
+    }
+}
@@ -0,0 +1,86 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequentialTestTest {
+
+    private static final Types.RESULT[] A_WINS = {Types.RESULT.WIN, Types.RESULT.LOSS, Types.RESULT.LOSS, Types.RESULT.LOSS};
+    private static final Types.RESULT[] B_WINS = {Types.RESULT.LOSS, Types.RESULT.WIN, Types.RESULT.LOSS, Types.RESULT.LOSS};
+    private static final Types.RESULT[] BOTH_LOSE = {Types.RESULT.LOSS, Types.RESULT.LOSS, Types.RESULT.WIN, Types.RESULT.LOSS};
+
+    @Test
+    void sprtDecidesLopsidedComparisons() {
+        SequentialTest test = SequentialTest.sprt(0, 1, 0.1, 0.05, 0.05);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(SequentialTest.DECISION.UNDECIDED, test.add(BOTH_LOSE));  // Same results don't count
+        }
+        int n = 0;
+        while (test.add(A_WINS) == SequentialTest.DECISION.UNDECIDED) {
+            n++;
+        }
+        // log(19) / log(0.6 / 0.4) = 7.26
+        assertEquals(7, n);
+        assertEquals(SequentialTest.DECISION.BETTER, test.add(B_WINS));  // Decision is kept
+
+        test = SequentialTest.sprt(0, 1, 0.1, 0.05, 0.05);
+        for (int i = 0; i < 8; i++) {
+            test.add(B_WINS);
+        }
+        assertEquals(SequentialTest.DECISION.WORSE, test.getDecision());
+    }
+
+    @Test
+    void sprtNeedsMoreGamesForCloseComparisons() {
+        SequentialTest test = SequentialTest.sprt(0, 1, 0.1, 0.05, 0.05);
+        for (int i = 0; i < 50; i++) {
+            test.add(i % 2 == 0 ? A_WINS : B_WINS);
+        }
+        assertEquals(SequentialTest.DECISION.UNDECIDED, test.getDecision());
+        assertEquals(0.5, test.getScores().mean(), 1e-9);
+    }
+
+    @Test
+    void confidenceIntervalWaitsForMinimumGames() {
+        SequentialTest test = SequentialTest.confidenceInterval(0, 1, 0.05, 30);
+        for (int i = 0; i < 29; i++) {
+            assertEquals(SequentialTest.DECISION.UNDECIDED, test.add(B_WINS));
+        }
+        assertEquals(SequentialTest.DECISION.WORSE, test.add(B_WINS));
+        assertEquals(30, test.getNumGames());
+
+        // Without variance, the interval still needs enough games: sqrt(log(40 * n * (n + 1)) / (2 * n)) < 0.5
+        test = SequentialTest.confidenceInterval(0, 1, 0.05, 1);
+        while (test.add(A_WINS) == SequentialTest.DECISION.UNDECIDED) {
+            assertTrue(test.getNumGames() < 20);
+        }
+        assertEquals(SequentialTest.DECISION.BETTER, test.getDecision());
+        assertEquals(20, test.getNumGames());
+
+        test = SequentialTest.confidenceInterval(0, 1, 0.05, 10);
+        for (int i = 0; i < 30; i++) {
+            test.add(i % 3 == 0 ? BOTH_LOSE : i % 3 == 1 ? A_WINS : B_WINS);
+        }
+        assertEquals(SequentialTest.DECISION.UNDECIDED, test.getDecision());
+    }
+
+    @Test
+    void confidenceIntervalRarelyDecidesBetweenEqualPlayers() {
+        // Checked after every game of long tournaments, a wrong decision must still be rare
+        Random rnd = new Random(1);
+        int wrong = 0;
+        for (int t = 0; t < 200; t++) {
+            SequentialTest test = SequentialTest.confidenceInterval(0, 1, 0.05, 1);
+            for (int i = 0; i < 1000 && test.getDecision() == SequentialTest.DECISION.UNDECIDED; i++) {
+                int r = rnd.nextInt(3);
+                test.add(r == 0 ? A_WINS : r == 1 ? B_WINS : BOTH_LOSE);
+            }
+            if (test.getDecision() != SequentialTest.DECISION.UNDECIDED)
+                wrong++;
+        }
+        assertTrue(wrong <= 10, wrong + " wrong decisions in 200 tournaments");
+    }
+}
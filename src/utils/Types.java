@@ -59,6 +59,9 @@ public class Types {
     // Decision time limit
     public static boolean CHECK_DECISION_TIME = true;
     public static int DECISION_TIME_LIMIT = 100; // ms to decide an action
+    // In games run with separate threads, stop waiting for players at the deadline instead of checking afterwards.
+    // Late players are interrupted and play the action they give at the deadline (Player.getActionAtDeadline()).
+    public static boolean ENFORCE_DECISION_TIME = false;
     public static boolean SAVE_GAME_REPLAY = false;
 
 
@@ -141,6 +144,20 @@ public class Types {
             return types;
         }
 
+        /**
+         * @return true if this type is one of the agents.
+         */
+        public boolean isAgent() {
+            return this == AGENT0 || this == AGENT1 || this == AGENT2 || this == AGENT3;
+        }
+
+        /**
+         * @return true if this type is one of the power-ups.
+         */
+        public boolean isPowerUp() {
+            return this == EXTRABOMB || this == INCRRANGE || this == KICK;
+        }
+
         /**
          * Checks if two boards (arrays of tiletypes) are the same
          * @param board1 one board to check
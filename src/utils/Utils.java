@@ -11,6 +11,13 @@ import static utils.Types.FLAME_LIFE;
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class Utils
 {
+    // Default types that block the movement of game objects
+    private static final ArrayList<Types.TILETYPE> DEFAULT_COLLISIONS = new ArrayList<>();
+    static {
+        DEFAULT_COLLISIONS.add(Types.TILETYPE.RIGID);
+        DEFAULT_COLLISIONS.add(Types.TILETYPE.WOOD);
+    }
+
     // Takes an object from an array at random
     public static Object choice(Object[] elements, Random rnd)
     {
@@ -141,10 +148,19 @@ public class Utils
      * @return true if new position set successfully, false otherwise
      */
     public static boolean setDesiredCoordinate(GameObject gameObject, Vector2d pos, Types.TILETYPE[][] board) {
-        ArrayList<Types.TILETYPE> defaultCollisions = new ArrayList<>();
-        defaultCollisions.add(Types.TILETYPE.RIGID);
-        defaultCollisions.add(Types.TILETYPE.WOOD);
-        return setDesiredCoordinate(gameObject, pos, board, defaultCollisions);
+        return setDesiredCoordinate(gameObject, pos, board, DEFAULT_COLLISIONS);
+    }
+
+    /**
+     * Same as setDesiredCoordinate(GameObject, Vector2d, TILETYPE[][]), taking the new position as coordinates.
+     * @param gameObject - game object to check
+     * @param x - x coordinate of the new position
+     * @param y - y coordinate of the new position
+     * @param board - board state to check legal positions on
+     * @return true if new position set successfully, false otherwise
+     */
+    public static boolean setDesiredCoordinate(GameObject gameObject, int x, int y, Types.TILETYPE[][] board) {
+        return setDesiredCoordinate(gameObject, x, y, board, DEFAULT_COLLISIONS);
     }
 
     /**
@@ -157,8 +173,29 @@ public class Utils
      */
     public static boolean setDesiredCoordinate(GameObject gameObject, Vector2d pos, Types.TILETYPE[][] board,
                                                ArrayList<Types.TILETYPE> collisions) {
-        if (_checkLegalPosition(board, pos, collisions)) {
-            gameObject.setDesiredCoordinate(pos);
+        if (pos == null) {
+            // Revert to current position if new position is illegal
+            if (gameObject.getPosition() != null) {
+                gameObject.setDesiredCoordinate(gameObject.getPosition());
+            }
+            return false;
+        }
+        return setDesiredCoordinate(gameObject, pos.x, pos.y, board, collisions);
+    }
+
+    /**
+     * Optionally specify collisions, taking the new position as coordinates.
+     * @param gameObject - game object to check
+     * @param x - x coordinate of the new position
+     * @param y - y coordinate of the new position
+     * @param board - board state to check legal positions on
+     * @param collisions - list of types which would make the position of a sprite illegal
+     * @return true if new position set successfully, false otherwise
+     */
+    public static boolean setDesiredCoordinate(GameObject gameObject, int x, int y, Types.TILETYPE[][] board,
+                                               ArrayList<Types.TILETYPE> collisions) {
+        if (_checkLegalPosition(board, x, y, collisions)) {
+            gameObject.setDesiredCoordinate(x, y);
             return true;
         } else {
             // Revert to current position if new position is illegal
@@ -173,13 +210,14 @@ public class Utils
      * Checks if a given position is legal on the current board. This is defined as both x and y are within the limits
      * of the given board, and the position indicated is not a wall type.
      * @param board - given board to check position on
-     * @param pos - given position
+     * @param x - x coordinate of the given position
+     * @param y - y coordinate of the given position
      * @return true if position is legal, false otherwise
      */
-    private static boolean _checkLegalPosition(Types.TILETYPE[][] board, Vector2d pos,
+    private static boolean _checkLegalPosition(Types.TILETYPE[][] board, int x, int y,
                                                ArrayList<Types.TILETYPE> collisions) {
-        return pos != null && pos.x >= 0 && pos.y >= 0 && pos.y < board.length && pos.x < board[0].length &&
-                (board[pos.y][pos.x] == null || !collisions.contains(board[pos.y][pos.x]));
+        return x >= 0 && y >= 0 && y < board.length && x < board[0].length &&
+                (board[y][x] == null || !collisions.contains(board[y][x]));
     }
 
     /**
@@ -204,8 +242,25 @@ public class Utils
      */
     public static void checkPositionSwap(ArrayList<GameObject> golist1, ArrayList<GameObject> golist2,
                                          Types.TILETYPE[][] board, boolean revertOnlySecond, boolean verbose) {
-        for (GameObject g1: golist1) {
-            for (GameObject g2: golist2) {
+        GridIndex positions2 = new GridIndex(board[0].length, board.length);
+        positions2.indexPositions(golist2);
+        checkPositionSwap(golist1, golist2, board, revertOnlySecond, positions2, verbose);
+    }
+
+    /**
+     * Same as checkPositionSwap(ArrayList, ArrayList, TILETYPE[][], boolean, boolean), using an index of the objects
+     * in the second list by position. Only the objects of the second list that are where an object of the first list
+     * wants to move to are checked against it, in list order, so the check is linear in the number of objects.
+     * @param positions2 - index of the objects in the second list by their current positions.
+     */
+    public static void checkPositionSwap(ArrayList<GameObject> golist1, ArrayList<GameObject> golist2,
+                                         Types.TILETYPE[][] board, boolean revertOnlySecond, GridIndex positions2,
+                                         boolean verbose) {
+        for (int i = 0; i < golist1.size(); i++) {
+            GameObject g1 = golist1.get(i);
+            // Only objects currently where g1 wants to go can swap with it. Positions don't change here.
+            for (int j = positions2.first(g1.getDesiredCoordinate()); j >= 0; j = positions2.next(j)) {
+                GameObject g2 = golist2.get(j);
                 if (!g1.equals(g2)) {
                     if (g1.getDesiredCoordinate() != null && g1.getPosition() != null &&
                             g2.getDesiredCoordinate() != null && g2.getPosition() != null &&
@@ -236,12 +291,33 @@ public class Utils
      * @param golist - list of game objects to check.
      */
     public static void checkPositionOverlap(ArrayList<GameObject> golist, Types.TILETYPE[][] board, boolean verbose) {
+        checkPositionOverlap(golist, board, new int[board.length * board[0].length], verbose);
+    }
+
+    /**
+     * Checks if more than 1 object wants to move to the same position. Bounce all back.
+     * Counts are kept in a grid indexed by 'y * width + x' instead of a map, so the grid can be reused.
+     * @param golist - list of game objects to check.
+     * @param occupancy - scratch grid of size 'width * height', overwritten by this method.
+     */
+    public static void checkPositionOverlap(ArrayList<GameObject> golist, Types.TILETYPE[][] board, int[] occupancy,
+                                            boolean verbose) {
+        int width = board[0].length;
+        Arrays.fill(occupancy, 0);
+
         // Count how many objects are in the same position.
-        HashMap<Vector2d, Integer> countList = checkOccupancy(golist);
+        for (int i = 0; i < golist.size(); i++) {
+            Vector2d desired = golist.get(i).getDesiredCoordinate();
+            if (desired != null) {
+                occupancy[desired.y * width + desired.x]++;
+            }
+        }
 
         // If more than 1 object are at a position, revert all to previous position.
-        for (GameObject g: golist) {
-            if (countList.get(g.getDesiredCoordinate()) > 1) {
+        for (int i = 0; i < golist.size(); i++) {
+            GameObject g = golist.get(i);
+            Vector2d desired = g.getDesiredCoordinate();
+            if (desired != null && occupancy[desired.y * width + desired.x] > 1) {
                 if (verbose) {
                     System.out.println("Reverting " + g.getType() + " overlap");
                 }
@@ -297,18 +373,43 @@ public class Utils
 
             // Check if the object is in range. If it is, add a copy of the object to the copy list.
             if (range == -1 || posG != null && refPosition != null && refPosition.custom_dist(posG) <= range) {
-                GameObject ob = g.copy();
-                if (ob.getType() == Types.TILETYPE.FLAMES) ob.setLife(FLAME_LIFE);
-                else if (ob.getType() == Types.TILETYPE.BOMB) {
-                    Bomb b = (Bomb)ob;
-                    b.setVelocity(new Vector2d());
-                    b.setPlayerIdx(-1);
-                }
-                copyList.add(ob);
+                copyList.add(reducedCopy(g));
+            }
+        }
+    }
+
+    /**
+     * Adds copies of game objects to a new list, given original list, where items are visible in the given mask.
+     * @param originalList - original list of game objects to check.
+     * @param copyList - list which will contain the new objects.
+     * @param vision - cells visible. May be null, which means all objects should be included.
+     */
+    public static void _reduceHiddenList(ArrayList<GameObject> originalList, ArrayList<GameObject> copyList,
+                                         VisionMask vision) {
+        for (GameObject g: originalList) {
+
+            // Check if the object is in range. If it is, add a copy of the object to the copy list.
+            if (vision == null || vision.isVisible(g.getPosition())) {
+                copyList.add(reducedCopy(g));
             }
         }
     }
 
+    /**
+     * @return a copy of a game object without the information players don't know: life of flames, velocity and
+     * owner of bombs.
+     */
+    private static GameObject reducedCopy(GameObject g) {
+        GameObject ob = g.copy();
+        if (ob.getType() == Types.TILETYPE.FLAMES) ob.setLife(FLAME_LIFE);
+        else if (ob.getType() == Types.TILETYPE.BOMB) {
+            Bomb b = (Bomb)ob;
+            b.setVelocity(new Vector2d());
+            b.setPlayerIdx(-1);
+        }
+        return ob;
+    }
+
     /**
      * Finds all agents which are still alive (win status INCOMPLETE), given list of all agents.
      * @param allAgents - list of all agents, including those that died already.
@@ -331,25 +432,40 @@ public class Utils
      * @return determined direction.
      */
     public static Types.DIRECTIONS getDirection(Vector2d position, Vector2d nextPosition) {
+        return getDirection(position, nextPosition.x, nextPosition.y);
+    }
 
-        if(position.x == nextPosition.x){
-            if(position.y < nextPosition.y)
+    /**
+     * Determines the direction of an adjacent cell (nextCell) in reference to a position (position).
+     * @param position - given position
+     * @param nextCell - adjacent cell
+     * @return determined direction.
+     */
+    public static Types.DIRECTIONS getDirection(Vector2d position, Cell nextCell) {
+        return getDirection(position, nextCell.x, nextCell.y);
+    }
+
+    private static Types.DIRECTIONS getDirection(Vector2d position, int nextX, int nextY) {
+
+        if(position.x == nextX){
+            if(position.y < nextY)
                 return Types.DIRECTIONS.DOWN;
-            else if(position.y > nextPosition.y)
+            else if(position.y > nextY)
                 return Types.DIRECTIONS.UP;
             else
                 return Types.DIRECTIONS.NONE;
         }
-        else if(position.y == nextPosition.y){
-            if(position.x < nextPosition.x)
+        else if(position.y == nextY){
+            if(position.x < nextX)
                 return Types.DIRECTIONS.RIGHT;
-            else if(position.x > nextPosition.x)
+            else if(position.x > nextX)
                 return Types.DIRECTIONS.LEFT;
             else
                 return Types.DIRECTIONS.NONE;
         }
 
-        throw new IllegalArgumentException("Invalid position transition received: " + position + " to " + nextPosition);
+        throw new IllegalArgumentException("Invalid position transition received: " + position + " to "
+                + nextX + " : " + nextY);
     }
 
     /**
@@ -393,7 +509,22 @@ public class Utils
      * @return the result as boolean
      */
     public static boolean positionIsPassable(Types.TILETYPE[][] board, Vector2d position, ArrayList<GameObject> enemies) {
-        Types.TILETYPE tileType = board[position.y][position.x];
+        return positionIsPassable(board, position.x, position.y, enemies);
+    }
+
+    /**
+     * Checks if the given cell is passable, see positionIsPassable(Types.TILETYPE[][], Vector2d, ArrayList).
+     * @param board - game board
+     * @param cell - the cell to be checked
+     * @param enemies - array of enemy agents
+     * @return the result as boolean
+     */
+    public static boolean positionIsPassable(Types.TILETYPE[][] board, Cell cell, ArrayList<GameObject> enemies) {
+        return positionIsPassable(board, cell.x, cell.y, enemies);
+    }
+
+    private static boolean positionIsPassable(Types.TILETYPE[][] board, int x, int y, ArrayList<GameObject> enemies) {
+        Types.TILETYPE tileType = board[y][x];
 
         boolean positionIsPassable = false;
         if(Types.TILETYPE.getAgentTypes().contains(tileType) || Types.TILETYPE.getPowerUpTypes().contains(tileType) ||
@@ -500,6 +631,22 @@ public class Utils
         return gos;
     }
 
+    /**
+     * Finds all objects in a list at a given cell.
+     * @param cell - cell to look for objects in.
+     * @param objList - list to search for objects in.
+     * @return - list of objects from list at given cell.
+     */
+    public static ArrayList<GameObject> findObjectInList(Cell cell, ArrayList<GameObject> objList) {
+        ArrayList<GameObject> gos = new ArrayList<>();
+        for (GameObject go : objList) {
+            if (cell.is(go.getPosition())) {
+                gos.add(go);
+            }
+        }
+        return gos;
+    }
+
     /**
      * Checks if a given avatar is stuck in a single cell.
      * @param board - given board to check position on
@@ -508,7 +655,8 @@ public class Utils
      */
     public static boolean isStuck(Types.TILETYPE[][] board, Avatar avatar) {
         for (Types.DIRECTIONS d: Types.DIRECTIONS.values()) {
-            if (isPassable(board, avatar.getPosition().add(d.toVec()), avatar)) return false;
+            Vector2d pos = avatar.getPosition();
+            if (isPassable(board, pos.x + d.x(), pos.y + d.y(), avatar)) return false;
         }
         return true;
     }
@@ -522,9 +670,13 @@ public class Utils
      * @return the result as boolean
      */
     public static boolean isPassable(Types.TILETYPE[][] board, Vector2d pos, Avatar avatar){
-        if (pos != null && pos.x >= 0 && pos.y >= 0 && pos.x < board[0].length && pos.y < board.length &&
-                (board[pos.y][pos.x] != null)){ // Tiletype is valid and the position is on board.
-            Types.TILETYPE tiletype = board[pos.y][pos.x];
+        return pos != null && isPassable(board, pos.x, pos.y, avatar);
+    }
+
+    private static boolean isPassable(Types.TILETYPE[][] board, int x, int y, Avatar avatar){
+        if (x >= 0 && y >= 0 && x < board[0].length && y < board.length &&
+                (board[y][x] != null)){ // Tiletype is valid and the position is on board.
+            Types.TILETYPE tiletype = board[y][x];
             return tiletype == Types.TILETYPE.PASSAGE ||
                     tiletype == Types.TILETYPE.BOMB ||
                     Types.TILETYPE.getPowerUpTypes().contains(tiletype);
@@ -0,0 +1,91 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cells of the board visible from a position with a given vision range, used to reduce game states under partial
+ * observability. A cell is visible if its distance to the position (Vector2d.custom_dist, the maximum of the
+ * distances on each axis) is at most the vision range, so the visible cells always form a square clipped to the
+ * board, and a mask is stored as the bounds of that square.
+ * Masks are immutable and cached per board size, vision range and position, so reducing a state doesn't compute
+ * any distance: get them with VisionMask.get().
+ */
+public final class VisionMask {
+
+    // Mask with no visible cells, for observers with no position.
+    public static final VisionMask NONE = new VisionMask(0, 0, -1, -1);
+
+    // Masks per board size and vision range, indexed by 'y * size + x'. Entries are created on first use.
+    private static final ConcurrentHashMap<Long, VisionMask[]> cache = new ConcurrentHashMap<>();
+
+    // Visible cells, bounds included.
+    private final int minX, minY, maxX, maxY;
+
+    private VisionMask(int minX, int minY, int maxX, int maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Returns the mask of cells visible from a position.
+     * @param position - position of the observer. May be null, in which case nothing is visible.
+     * @param range - vision range, >= 0.
+     * @param size - size of the board.
+     * @return the cached mask.
+     */
+    public static VisionMask get(Vector2d position, int range, int size) {
+        if (position == null)
+            return NONE;
+
+        VisionMask[] masks = cache.computeIfAbsent(((long) size << 32) | range, k -> new VisionMask[size * size]);
+        int idx = position.y * size + position.x;
+        VisionMask mask = masks[idx];
+        if (mask == null) {
+            // Masks are immutable, so it doesn't matter if another thread creates the same one at the same time.
+            mask = new VisionMask(Math.max(0, position.x - range), Math.max(0, position.y - range),
+                    Math.min(size - 1, position.x + range), Math.min(size - 1, position.y + range));
+            masks[idx] = mask;
+        }
+        return mask;
+    }
+
+    /**
+     * @param x - x coordinate of the cell.
+     * @param y - y coordinate of the cell.
+     * @return true if the cell is visible.
+     */
+    public boolean isVisible(int x, int y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * @param position - position to check, may be null.
+     * @return true if the position is not null and is visible.
+     */
+    public boolean isVisible(Vector2d position) {
+        return position != null && isVisible(position.x, position.y);
+    }
+
+    /**
+     * Copies the visible cells of a grid into another one of the same size, and fills the rest with a default value.
+     * Visible parts of rows are copied in bulk.
+     * @param source - grid to copy from.
+     * @param target - grid to copy into.
+     * @param hidden - value for the cells that are not visible.
+     */
+    public <T> void copyVisible(T[][] source, T[][] target, T hidden) {
+        for (int y = 0; y < target.length; y++) {
+            T[] row = target[y];
+            if (y < minY || y > maxY) {
+                Arrays.fill(row, hidden);
+                continue;
+            }
+            Arrays.fill(row, 0, minX, hidden);
+            System.arraycopy(source[y], minX, row, minX, maxX - minX + 1);
+            Arrays.fill(row, maxX + 1, row.length, hidden);
+        }
+    }
+}